@@ -1,5 +1,6 @@
 package frc.lib.Items.SparkMax;
 
+import com.revrobotics.CANSparkBase;
 import com.revrobotics.CANSparkLowLevel;
 import com.revrobotics.CANSparkMax;
 import com.revrobotics.RelativeEncoder;
@@ -9,6 +10,7 @@ import com.revrobotics.CANSparkBase.SoftLimitDirection;
 import com.revrobotics.CANSparkLowLevel.MotorType;
 
 import frc.lib.configs.Sparkmax.SparkControllerInfo;
+import frc.lib.util.BatteryMonitor;
 import frc.lib.util.CANSparkMaxUtil;
 import frc.lib.util.CANSparkMaxUtil.Usage;
 
@@ -25,6 +27,9 @@ public class SparkController {
     private final double velConversion;
     private final double[] pidList;
     private final double voltageComp;
+    private final double[] smartMotion;
+    private final double[] positionPID;
+    private final double positionMaxOutput;
     private double max = 1;
     private double min = -1;
     public double fLim = 0;
@@ -44,6 +49,9 @@ public class SparkController {
         this.velConversion = Info.velConversion;
         this.pidList = Info.pidList;
         this.voltageComp = Info.voltageComp;
+        this.smartMotion = Info.smartMotion;
+        this.positionPID = Info.positionPID;
+        this.positionMaxOutput = Info.positionMaxOutput;
         spark = new CANSparkMax(canbusNumber, MotorType.kBrushless);
         sparkEncode = spark.getEncoder();
         sparkControl = spark.getPIDController();
@@ -61,6 +69,9 @@ public class SparkController {
     this.velConversion = Info.velConversion;
     this.pidList = Info.pidList;
     this.voltageComp = Info.voltageComp;
+    this.smartMotion = Info.smartMotion;
+    this.positionPID = Info.positionPID;
+    this.positionMaxOutput = Info.positionMaxOutput;
     
     if(max != null){
         this.max = max;
@@ -102,8 +113,36 @@ public class SparkController {
         spark.setSoftLimit(SoftLimitDirection.kReverse, ((float)bLim));
         spark.enableSoftLimit(SoftLimitDirection.kForward, fEnable);
         spark.enableSoftLimit(SoftLimitDirection.kReverse, bEnable);
+        if(smartMotion != null){
+            sparkControl.setSmartMotionMaxVelocity(smartMotion[0], 0);
+            sparkControl.setSmartMotionMaxAccel(smartMotion[1], 0);
+            sparkControl.setSmartMotionMinOutputVelocity(0, 0);
+            sparkControl.setSmartMotionAllowedClosedLoopError(smartMotion[2], 0);
+        }
+        if(positionPID != null){
+            setPID(positionPID, 1);
+            sparkControl.setOutputRange(-positionMaxOutput, positionMaxOutput, 1);
+        }
         spark.burnFlash();
         sparkEncode.setPosition(0.0);    
     }
+
+    /* Voltage control, limited to what the battery can currently deliver */
+    public void setVoltage(double volts){
+        sparkControl.setReference(BatteryMonitor.limit(volts), CANSparkBase.ControlType.kVoltage, 0);
+    }
+
+    /* Pushes new gains to PID slot 0 without reflashing, for live tuning. Format {P, I, D, FF} */
+    public void setPID(double[] gains){
+        setPID(gains, 0);
+    }
+
+    /* Same for another slot, e.g. a position slot next to the velocity gains in slot 0 */
+    public void setPID(double[] gains, int slot){
+        sparkControl.setP(gains[0], slot);
+        sparkControl.setI(gains[1], slot);
+        sparkControl.setD(gains[2], slot);
+        sparkControl.setFF(gains[3], slot);
+    }
     
 }
@@ -14,6 +14,9 @@ public class SparkControllerInfo {
     public double velConversion;
     public double[] pidList;
     public double voltageComp;
+    public double[] smartMotion;   // {max velocity, max acceleration, allowed error}, null if unused
+    public double[] positionPID;   // slot 1 gains {P, I, D, FF} for a position loop next to slot 0, null if unused
+    public double positionMaxOutput = 1;   // slot 1 output limit, duty cycle
 
     public SparkControllerInfo drive(){
         canbusUse = Usages.driveUsage;
@@ -44,8 +47,12 @@ public class SparkControllerInfo {
         currentLim = Electical.feederCurrentLim;
         invert = Setup.feederInvert;
         idleMode = IdleModes.feeder;
+        posConversion = ConversionFactors.feederPositionFactor;
+        velConversion = ConversionFactors.feederVelocityFactor;
         pidList = PID.feederRollerPID;
         voltageComp = Electical.voltageComp;
+        positionPID = PID.feederPositionPID;
+        positionMaxOutput = Feeder.maxVoltage / Electical.voltageComp;
         return this;
     }
 
@@ -88,6 +95,7 @@ public class SparkControllerInfo {
         idleMode = IdleModes.elevatorMotor;
         pidList = PID.elevatorPID;
         voltageComp = Electical.voltageComp;
+        smartMotion = new double[] {Elevator.smartMotionMaxVelocity, Elevator.smartMotionMaxAcceleration, Elevator.smartMotionAllowedError};
         return this;
     }
 
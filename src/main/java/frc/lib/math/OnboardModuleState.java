@@ -32,7 +32,7 @@ public class OnboardModuleState {
    * @param newAngle Target Angle
    * @return Closest angle within scope
    */
-  private static double placeInAppropriate0To360Scope(double scopeReference, double newAngle) {
+  static double placeInAppropriate0To360Scope(double scopeReference, double newAngle) {
     double lowerBound;
     double upperBound;
     double lowerOffset = scopeReference % 360;
@@ -0,0 +1,84 @@
+package frc.lib.math;
+
+import edu.wpi.first.math.MathUtil;
+import frc.robot.Constants;
+
+/**
+ * Solves for a shot while the robot is moving. The note leaves with the robot's field velocity added
+ * to it, so instead of aiming at the speaker we aim at a virtual target offset by -velocity * time of
+ * flight. Time of flight depends on the distance to that virtual target, so the solve iterates a
+ * fixed maximum number of times. Results are plain fields so a solve doesn't allocate.
+ */
+public class ShotSolver {
+  /* Field frame heading to shoot along, radians */
+  public double heading;
+  /* How fast that heading changes as the robot moves, radians per second */
+  public double headingRate;
+  /* Pivot encoder angle in degrees */
+  public double pivotAngle;
+  /* Flywheel voltage setpoint */
+  public double flywheelVoltage;
+  /* Distance to the virtual target in meters */
+  public double distance;
+  /* Time of flight in seconds */
+  public double timeOfFlight;
+  /* Iterations used by the last solve */
+  public int iterations;
+
+  /**
+   * @param robotX Robot field x (m)
+   * @param robotY Robot field y (m)
+   * @param robotVx Robot field relative x velocity (m/s)
+   * @param robotVy Robot field relative y velocity (m/s)
+   * @param targetX Speaker opening field x (m)
+   * @param targetY Speaker opening field y (m)
+   */
+  public void solve(double robotX, double robotY, double robotVx, double robotVy, double targetX, double targetY) {
+    double virtualX = targetX;
+    double virtualY = targetY;
+    double dx = 0;
+    double dy = 0;
+
+    iterations = 0;
+    while (iterations < Constants.Shooter.solverMaxIterations) {
+      iterations++;
+      dx = virtualX - robotX;
+      dy = virtualY - robotY;
+      distance = Math.hypot(dx, dy);
+      setpointsForDistance(distance);
+
+      double nextX = targetX - robotVx * timeOfFlight;
+      double nextY = targetY - robotVy * timeOfFlight;
+      double moved = Math.hypot(nextX - virtualX, nextY - virtualY);
+      virtualX = nextX;
+      virtualY = nextY;
+      if (moved < Constants.Shooter.solverTolerance) {
+        break;
+      }
+    }
+
+    dx = virtualX - robotX;
+    dy = virtualY - robotY;
+    distance = Math.hypot(dx, dy);
+    setpointsForDistance(distance);
+
+    heading = Math.atan2(dy, dx) + Constants.Shooter.shotHeadingOffset;
+    // d/dt of atan2(dy, dx) when the robot moves and the virtual target doesn't
+    headingRate = distance > 1e-6 ? (dy * robotVx - dx * robotVy) / (distance * distance) : 0;
+  }
+
+  /* Pivot angle, flywheel voltage and time of flight for a static shot at this distance */
+  private void setpointsForDistance(double distance) {
+    double elevation = Math.atan2(Constants.Field.speakerHeight - Constants.Shooter.exitHeight, distance);
+
+    pivotAngle = MathUtil.clamp(Math.toDegrees(elevation) + Constants.Pivot.horizontalAngle,
+        Constants.Pivot.minimumAngle, Constants.Pivot.maximumAngle);
+
+    flywheelVoltage = MathUtil.clamp(
+        Constants.Shooter.speakershotVoltage + (distance - Constants.Shooter.speakershotDistance) * Constants.Shooter.voltsPerMeter,
+        Constants.Shooter.speakershotVoltage, Constants.Shooter.longshotVoltage);
+
+    double exitSpeed = flywheelVoltage * Constants.Shooter.exitSpeedPerVolt;
+    timeOfFlight = distance / (exitSpeed * Math.cos(elevation));
+  }
+}
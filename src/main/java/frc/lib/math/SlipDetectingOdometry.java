@@ -0,0 +1,193 @@
+package frc.lib.math;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+
+/**
+ * Swerve odometry that doesn't trust a wheel that's slipping. Heading always comes from the gyro.
+ * Each sample, every module's wheel travel has the gyro's rotation taken out, which leaves the
+ * translation that module says the robot made. On a rigid robot with good traction all four agree.
+ * Each module is compared with the median of the four (so one bad wheel can't drag the reference
+ * with it), and a module whose disagreement, as a speed, is past the slip threshold is down-weighted.
+ * Past the drop threshold it's left out of that sample entirely. The weighted translation and the
+ * gyro rotation are then applied as a twist, the same way SwerveDriveOdometry does.
+ *
+ * <p>If every module is dropped (the whole robot got shoved, or all four spun up together) there's
+ * nothing better to go on, so the sample falls back to equal weights.
+ *
+ * <p>All state is in preallocated arrays; {@link #update} only allocates the Pose2d it publishes.
+ */
+public class SlipDetectingOdometry {
+  private final int count;
+  private final double[] moduleX;
+  private final double[] moduleY;
+  private final double slipThreshold;
+  private final double dropThreshold;
+
+  /* Previous sample */
+  private final double[] lastDistances;
+  private double lastYaw;
+
+  /* Per module translation this sample (robot frame), and scratch for the median */
+  private final double[] translationX;
+  private final double[] translationY;
+  private final double[] sorted;
+
+  /* Results of the last update */
+  private final double[] residuals;
+  private final double[] weights;
+  private int slipMask;
+
+  private double x;
+  private double y;
+  private double yawOffset;
+  private Pose2d pose = new Pose2d();
+
+  /**
+   * @param modulePositions Module locations relative to the robot center
+   * @param slipThreshold Disagreement with the other modules (m/s) above which a module is down-weighted
+   * @param dropThreshold Disagreement (m/s) above which a module is ignored for the sample
+   */
+  public SlipDetectingOdometry(Translation2d[] modulePositions, double slipThreshold, double dropThreshold) {
+    count = modulePositions.length;
+    moduleX = new double[count];
+    moduleY = new double[count];
+    for (int i = 0; i < count; i++) {
+      moduleX[i] = modulePositions[i].getX();
+      moduleY[i] = modulePositions[i].getY();
+    }
+    this.slipThreshold = slipThreshold;
+    this.dropThreshold = dropThreshold;
+    lastDistances = new double[count];
+    translationX = new double[count];
+    translationY = new double[count];
+    sorted = new double[count];
+    residuals = new double[count];
+    weights = new double[count];
+  }
+
+  /**
+   * Puts the robot at a pose without moving the gyro.
+   * @param yaw Gyro yaw right now, CCW+ radians, continuous
+   * @param distances Module drive distances right now, meters
+   */
+  public void reset(Pose2d pose, double yaw, double[] distances) {
+    x = pose.getX();
+    y = pose.getY();
+    yawOffset = pose.getRotation().getRadians() - yaw;
+    lastYaw = yaw;
+    System.arraycopy(distances, 0, lastDistances, 0, count);
+    slipMask = 0;
+    this.pose = pose;
+  }
+
+  /**
+   * Adds one sample.
+   * @param yaw Gyro yaw, CCW+ radians, continuous
+   * @param distances Module drive distances, meters
+   * @param anglesRadians Module steering angles, CCW+ radians from robot forward
+   * @param dt Seconds since the last sample, to turn disagreement into a speed
+   * @return Bit i set if module i was down-weighted or dropped this sample
+   */
+  public int update(double yaw, double[] distances, double[] anglesRadians, double dt) {
+    double rotation = yaw - lastYaw;
+    lastYaw = yaw;
+
+    for (int i = 0; i < count; i++) {
+      double distance = distances[i] - lastDistances[i];
+      lastDistances[i] = distances[i];
+      // Take out what the rotation alone would have moved this module: rotation x r = (-w ry, w rx)
+      translationX[i] = distance * Math.cos(anglesRadians[i]) + rotation * moduleY[i];
+      translationY[i] = distance * Math.sin(anglesRadians[i]) - rotation * moduleX[i];
+    }
+    double medianX = median(translationX);
+    double medianY = median(translationY);
+
+    slipMask = 0;
+    double totalWeight = 0;
+    double sumX = 0;
+    double sumY = 0;
+    double safeDt = dt > 1e-6 ? dt : 0.02;
+    for (int i = 0; i < count; i++) {
+      residuals[i] = Math.hypot(translationX[i] - medianX, translationY[i] - medianY) / safeDt;
+      if (residuals[i] <= slipThreshold) {
+        weights[i] = 1;
+      } else if (residuals[i] < dropThreshold) {
+        weights[i] = slipThreshold / residuals[i];
+        slipMask |= 1 << i;
+      } else {
+        weights[i] = 0;
+        slipMask |= 1 << i;
+      }
+      totalWeight += weights[i];
+      sumX += weights[i] * translationX[i];
+      sumY += weights[i] * translationY[i];
+    }
+    if (totalWeight <= 0) {
+      sumX = 0;
+      sumY = 0;
+      for (int i = 0; i < count; i++) {
+        sumX += translationX[i];
+        sumY += translationY[i];
+      }
+      totalWeight = count;
+    }
+    double dx = sumX / totalWeight;
+    double dy = sumY / totalWeight;
+
+    // Pose exponential: the robot moved along an arc, not a straight line, while it turned
+    double s;
+    double c;
+    if (Math.abs(rotation) < 1e-9) {
+      s = 1 - rotation * rotation / 6;
+      c = rotation / 2;
+    } else {
+      s = Math.sin(rotation) / rotation;
+      c = (1 - Math.cos(rotation)) / rotation;
+    }
+    double localX = dx * s - dy * c;
+    double localY = dx * c + dy * s;
+
+    double startHeading = yaw - rotation + yawOffset;
+    double cos = Math.cos(startHeading);
+    double sin = Math.sin(startHeading);
+    x += localX * cos - localY * sin;
+    y += localX * sin + localY * cos;
+    pose = new Pose2d(x, y, new Rotation2d(yaw + yawOffset));
+    return slipMask;
+  }
+
+  public Pose2d getPose() {
+    return pose;
+  }
+
+  /* Bit i set if module i was down-weighted or dropped in the last update */
+  public int getSlipMask() {
+    return slipMask;
+  }
+
+  /* Module's disagreement with the others in the last update, m/s */
+  public double getResidual(int module) {
+    return residuals[module];
+  }
+
+  public double getWeight(int module) {
+    return weights[module];
+  }
+
+  private double median(double[] values) {
+    System.arraycopy(values, 0, sorted, 0, count);
+    // Insertion sort, there are only four
+    for (int i = 1; i < count; i++) {
+      double value = sorted[i];
+      int j = i - 1;
+      while (j >= 0 && sorted[j] > value) {
+        sorted[j + 1] = sorted[j];
+        j--;
+      }
+      sorted[j + 1] = value;
+    }
+    return count % 2 == 1 ? sorted[count / 2] : (sorted[count / 2 - 1] + sorted[count / 2]) / 2;
+  }
+}
@@ -0,0 +1,142 @@
+package frc.lib.math;
+
+import edu.wpi.first.math.geometry.Translation2d;
+
+/**
+ * Limits how far the swerve setpoint can move in one loop. Requested chassis speeds are turned into
+ * module vectors and desaturated, then the step from the previous setpoint is scaled down so no
+ * module changes velocity faster than the drive acceleration limit. Because every module vector is
+ * linear in the chassis speeds, scaling the step keeps the modules consistent with each other
+ * (no scrub). Steering setpoints are rate limited, and drive speed is scaled by the cosine of the
+ * remaining steering error so a module that is still turning (or flipping) doesn't push sideways.
+ *
+ * <p>All state lives in preallocated primitive arrays, so {@link #generate} does not allocate.
+ */
+public class SwerveSetpointGenerator {
+  private final int count;
+  private final double[] moduleX;
+  private final double[] moduleY;
+
+  /* Previous setpoint as module velocity vectors (m/s) */
+  private final double[] prevVx;
+  private final double[] prevVy;
+
+  /* Outputs, already optimized against the measured module angle */
+  private final double[] speeds;
+  private final double[] anglesDegrees;
+
+  /* Scratch for the desired module vectors */
+  private final double[] desiredVx;
+  private final double[] desiredVy;
+
+  public SwerveSetpointGenerator(Translation2d[] modulePositions) {
+    count = modulePositions.length;
+    moduleX = new double[count];
+    moduleY = new double[count];
+    for (int i = 0; i < count; i++) {
+      moduleX[i] = modulePositions[i].getX();
+      moduleY[i] = modulePositions[i].getY();
+    }
+    prevVx = new double[count];
+    prevVy = new double[count];
+    speeds = new double[count];
+    anglesDegrees = new double[count];
+    desiredVx = new double[count];
+    desiredVy = new double[count];
+  }
+
+  /**
+   * Starts the next setpoint from what the modules are actually doing. Call when re-enabling or
+   * after anything else has commanded the modules.
+   * @param measuredSpeeds Module drive velocities in m/s
+   * @param measuredAnglesDegrees Module angles in degrees
+   */
+  public void reset(double[] measuredSpeeds, double[] measuredAnglesDegrees) {
+    for (int i = 0; i < count; i++) {
+      double angle = Math.toRadians(measuredAnglesDegrees[i]);
+      prevVx[i] = measuredSpeeds[i] * Math.cos(angle);
+      prevVy[i] = measuredSpeeds[i] * Math.sin(angle);
+      speeds[i] = measuredSpeeds[i];
+      anglesDegrees[i] = measuredAnglesDegrees[i];
+    }
+  }
+
+  /**
+   * Computes this loop's module setpoints. Read them back with {@link #getSpeed} and {@link #getAngle}.
+   * @param vx Requested robot relative x velocity (m/s)
+   * @param vy Requested robot relative y velocity (m/s)
+   * @param omega Requested angular velocity (rad/s)
+   * @param maxSpeed Max module speed (m/s)
+   * @param maxAcceleration Max module acceleration (m/s/s)
+   * @param maxSteerRate Max module steering rate (deg/s)
+   * @param measuredAnglesDegrees Current module angles in degrees, used to optimize each module
+   * @param dt Loop period in seconds
+   */
+  public void generate(
+      double vx, double vy, double omega,
+      double maxSpeed, double maxAcceleration, double maxSteerRate,
+      double[] measuredAnglesDegrees, double dt) {
+    // Module vectors for the requested speeds, then desaturate
+    double maxNorm = 0;
+    for (int i = 0; i < count; i++) {
+      desiredVx[i] = vx - omega * moduleY[i];
+      desiredVy[i] = vy + omega * moduleX[i];
+      maxNorm = Math.max(maxNorm, Math.hypot(desiredVx[i], desiredVy[i]));
+    }
+    if (maxNorm > maxSpeed) {
+      double scale = maxSpeed / maxNorm;
+      for (int i = 0; i < count; i++) {
+        desiredVx[i] *= scale;
+        desiredVy[i] *= scale;
+      }
+    }
+
+    // Largest per-module velocity change decides how much of the step we can take this loop
+    double maxDelta = 0;
+    for (int i = 0; i < count; i++) {
+      maxDelta = Math.max(maxDelta, Math.hypot(desiredVx[i] - prevVx[i], desiredVy[i] - prevVy[i]));
+    }
+    double maxStep = maxAcceleration * dt;
+    double fraction = maxDelta > maxStep ? maxStep / maxDelta : 1.0;
+
+    double maxSteerStep = maxSteerRate * dt;
+    for (int i = 0; i < count; i++) {
+      prevVx[i] += fraction * (desiredVx[i] - prevVx[i]);
+      prevVy[i] += fraction * (desiredVy[i] - prevVy[i]);
+
+      double speed = Math.hypot(prevVx[i], prevVy[i]);
+      double measured = measuredAnglesDegrees[i];
+      // Hold the last angle when (nearly) stopped, same as SwerveModule's jitter guard
+      double target = speed <= maxSpeed * 0.01
+          ? anglesDegrees[i]
+          : Math.toDegrees(Math.atan2(prevVy[i], prevVx[i]));
+
+      // Same flip logic as OnboardModuleState.optimize, without the allocations
+      target = OnboardModuleState.placeInAppropriate0To360Scope(measured, target);
+      double delta = target - measured;
+      if (Math.abs(delta) > 90) {
+        speed = -speed;
+        target = delta > 90 ? target - 180 : target + 180;
+      }
+
+      // Rate limit the steering setpoint from where we last commanded it
+      double step = target - anglesDegrees[i];
+      if (Math.abs(step) > maxSteerStep) {
+        target = anglesDegrees[i] + Math.copySign(maxSteerStep, step);
+      }
+      anglesDegrees[i] = target;
+
+      // Don't drive a module hard in a direction it isn't pointing yet
+      double steerError = Math.toRadians(target - measured);
+      speeds[i] = speed * Math.max(0.0, Math.cos(steerError));
+    }
+  }
+
+  public double getSpeed(int module) {
+    return speeds[module];
+  }
+
+  public double getAngle(int module) {
+    return anglesDegrees[module];
+  }
+}
@@ -0,0 +1,68 @@
+package frc.lib.util;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.filter.LinearFilter;
+import edu.wpi.first.util.datalog.DataLog;
+import edu.wpi.first.util.datalog.DoubleLogEntry;
+import edu.wpi.first.wpilibj.Notifier;
+import edu.wpi.first.wpilibj.RobotController;
+import frc.robot.Constants;
+
+/**
+ * Samples the battery faster than the robot loop and keeps a filtered bus voltage. Spark voltage
+ * compensation already normalizes every output to Constants.Electical.voltageComp, but when the
+ * battery sags below that the Spark just saturates, so anything commanding volts should go through
+ * {@link #limit(double)} and anything with a speed limit should scale it by {@link #getHeadroom()}.
+ * That way a sagging battery makes us slower instead of making us track badly.
+ */
+public final class BatteryMonitor {
+    private static Notifier notifier;
+    private static LinearFilter filter;
+    private static DoubleLogEntry rawEntry;
+    private static DoubleLogEntry filteredEntry;
+
+    private static volatile double filteredVoltage = Constants.Electical.voltageComp;
+
+    private BatteryMonitor() {}
+
+    /** Starts sampling at Constants.Electical.batterySamplePeriod. Safe to call once from robotInit. */
+    public static void start(DataLog log) {
+        if (notifier != null) {
+            return;
+        }
+        filter = LinearFilter.singlePoleIIR(Constants.Electical.batteryFilterTimeConstant, Constants.Electical.batterySamplePeriod);
+        rawEntry = new DoubleLogEntry(log, "/Battery/Voltage");
+        filteredEntry = new DoubleLogEntry(log, "/Battery/FilteredVoltage");
+        notifier = new Notifier(BatteryMonitor::sample);
+        notifier.setName("BatteryMonitor");
+        notifier.startPeriodic(Constants.Electical.batterySamplePeriod);
+    }
+
+    private static void sample() {
+        double voltage = RobotController.getBatteryVoltage();
+        double filtered = filter.calculate(voltage);
+        filteredVoltage = filtered;
+        rawEntry.append(voltage);
+        filteredEntry.append(filtered);
+    }
+
+    public static double getVoltage() {
+        return filteredVoltage;
+    }
+
+    /** Volts a motor can actually be given right now, never more than voltageComp. */
+    public static double getAvailableVoltage() {
+        return MathUtil.clamp(filteredVoltage - Constants.Electical.controllerVoltageDrop, 0, Constants.Electical.voltageComp);
+    }
+
+    /** Fraction of full (voltageComp) output currently available, 0 to 1. */
+    public static double getHeadroom() {
+        return getAvailableVoltage() / Constants.Electical.voltageComp;
+    }
+
+    /** Clamps a voltage command to what the battery can deliver. */
+    public static double limit(double volts) {
+        double available = getAvailableVoltage();
+        return MathUtil.clamp(volts, -available, available);
+    }
+}
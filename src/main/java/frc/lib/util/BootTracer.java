@@ -0,0 +1,148 @@
+package frc.lib.util;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import edu.wpi.first.util.datalog.DataLog;
+import edu.wpi.first.util.datalog.DoubleLogEntry;
+import edu.wpi.first.util.datalog.StringLogEntry;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.RobotController;
+import frc.robot.Constants;
+
+/**
+ * Records a nested timeline of the constructors and init phases run during robotInit(). Spans are
+ * kept in memory (the DataLog isn't running yet for most of boot) and written out by
+ * {@link #finish(DataLog, String)} to the DataLog and to a Chrome trace JSON file, which can be
+ * opened in chrome://tracing or ui.perfetto.dev.
+ *
+ * <p>Only meant for the main thread during boot, so none of this is synchronized.
+ */
+public final class BootTracer {
+  private static final class Span {
+    final String name;
+    final int depth;
+    final double budget;
+    final long startNanos;
+    long endNanos = -1;
+
+    Span(String name, int depth, double budget, long startNanos) {
+      this.name = name;
+      this.depth = depth;
+      this.budget = budget;
+      this.startNanos = startNanos;
+    }
+
+    double seconds() {
+      return (endNanos - startNanos) / 1e9;
+    }
+  }
+
+  /** Closing the scope ends the span it was opened for. */
+  public static final class Scope implements AutoCloseable {
+    private final Span span;
+
+    private Scope(Span span) {
+      this.span = span;
+    }
+
+    @Override
+    public void close() {
+      span.endNanos = System.nanoTime();
+      depth--;
+    }
+  }
+
+  private static final List<Span> spans = new ArrayList<>();
+  private static int depth = 0;
+
+  private BootTracer() {}
+
+  /** Opens a span. Use with try-with-resources so it closes even if the phase throws. */
+  public static Scope begin(String name, double budgetSeconds) {
+    Span span = new Span(name, depth++, budgetSeconds, System.nanoTime());
+    spans.add(span);
+    return new Scope(span);
+  }
+
+  public static Scope begin(String name) {
+    return begin(name, Constants.Loop.bootPhaseBudget);
+  }
+
+  /** Times a constructor or factory, e.g. {@code BootTracer.trace("Swerve", Swerve::new)}. */
+  public static <T> T trace(String name, double budgetSeconds, Supplier<T> supplier) {
+    try (Scope scope = begin(name, budgetSeconds)) {
+      return supplier.get();
+    }
+  }
+
+  public static <T> T trace(String name, Supplier<T> supplier) {
+    return trace(name, Constants.Loop.bootPhaseBudget, supplier);
+  }
+
+  public static void trace(String name, Runnable phase) {
+    try (Scope scope = begin(name)) {
+      phase.run();
+    }
+  }
+
+  /**
+   * Writes the timeline to the DataLog and to boot_trace_*.json in the given directory, and warns
+   * about every span that went over its budget.
+   */
+  public static void finish(DataLog log, String directory) {
+    // Spans were timed with nanoTime; shift them onto the FPGA clock the rest of the log uses
+    long fpgaOffset = RobotController.getFPGATime() - System.nanoTime() / 1000;
+
+    StringLogEntry timelineEntry = new StringLogEntry(log, "/Boot/Timeline");
+    DoubleLogEntry overBudgetEntry = new DoubleLogEntry(log, "/Boot/OverBudgetMs");
+    StringBuilder json = new StringBuilder("{\"traceEvents\":[\n");
+
+    double total = 0;
+    boolean first = true;
+    for (Span span : spans) {
+      if (span.endNanos < 0) {
+        continue; // never closed
+      }
+      long start = span.startNanos / 1000 + fpgaOffset;
+      double ms = span.seconds() * 1000;
+      boolean overBudget = span.seconds() > span.budget;
+      if (span.depth == 0) {
+        total += ms;
+      }
+
+      timelineEntry.append("  ".repeat(span.depth) + span.name + ": " + String.format("%.1f", ms) + " ms"
+          + (overBudget ? " (OVER BUDGET)" : ""), start);
+      if (overBudget) {
+        overBudgetEntry.append(ms, start);
+        DriverStation.reportWarning("Boot phase '" + span.name + "' took " + String.format("%.0f", ms)
+            + " ms (budget " + String.format("%.0f", span.budget * 1000) + " ms)", false);
+      }
+
+      json.append(first ? "" : ",\n").append(String.format(
+          "{\"name\":\"%s\",\"ph\":\"X\",\"pid\":1,\"tid\":1,\"ts\":%d,\"dur\":%d,\"args\":{\"depth\":%d,\"budgetMs\":%.0f,\"overBudget\":%b}}",
+          escape(span.name), start, (span.endNanos - span.startNanos) / 1000, span.depth,
+          span.budget * 1000, overBudget));
+      first = false;
+    }
+    json.append("\n]}\n");
+    new DoubleLogEntry(log, "/Boot/TotalMs").append(total);
+
+    Path file = Path.of(directory, "boot_trace_" + System.currentTimeMillis() + ".json");
+    try {
+      Files.writeString(file, json.toString(), StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      DriverStation.reportWarning("Could not write boot trace to " + file + ": " + e.getMessage(), false);
+    }
+    spans.clear();
+  }
+
+  private static String escape(String name) {
+    return name.replace("\\", "\\\\").replace("\"", "\\\"");
+  }
+}
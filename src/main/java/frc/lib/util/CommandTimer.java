@@ -0,0 +1,71 @@
+package frc.lib.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import edu.wpi.first.util.datalog.DoubleLogEntry;
+import edu.wpi.first.wpilibj.DataLogManager;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.WrapperCommand;
+
+/**
+ * Times how long named commands take, from initialize() to end(). Each run is logged to
+ * /Auto/NamedCommands/name and added to running totals that the auto simulation harness reads.
+ * Uses the FPGA timestamp, so it follows simulated time when timing is stepped.
+ *
+ * <p>Commands run on the robot thread only, so this isn't synchronized.
+ */
+public final class CommandTimer {
+    /** Totals for one named command */
+    public record Stats(int runs, int interrupted, double totalSeconds, double maxSeconds) {}
+
+    private static final Map<String, Stats> totals = new LinkedHashMap<>();
+
+    private CommandTimer() {}
+
+    /** Wraps the command so every run of it is timed under the given name */
+    public static Command wrap(String name, Command command) {
+        totals.put(name, new Stats(0, 0, 0, 0));
+        return new Timed(name, command);
+    }
+
+    /** Copy of the totals so far, in registration order */
+    public static Map<String, Stats> getTotals() {
+        return new LinkedHashMap<>(totals);
+    }
+
+    private static class Timed extends WrapperCommand {
+        private final String name;
+        private DoubleLogEntry logEntry;
+        private double start;
+
+        Timed(String name, Command command) {
+            super(command);
+            this.name = name;
+        }
+
+        @Override
+        public void initialize() {
+            start = Timer.getFPGATimestamp();
+            super.initialize();
+        }
+
+        @Override
+        public void end(boolean interrupted) {
+            super.end(interrupted);
+            double seconds = Timer.getFPGATimestamp() - start;
+            if (logEntry == null) {
+                logEntry = new DoubleLogEntry(DataLogManager.getLog(), "/Auto/NamedCommands/" + name);
+            }
+            logEntry.append(seconds);
+
+            Stats stats = totals.get(name);
+            totals.put(name, new Stats(
+                stats.runs() + 1,
+                stats.interrupted() + (interrupted ? 1 : 0),
+                stats.totalSeconds() + seconds,
+                Math.max(stats.maxSeconds(), seconds)));
+        }
+    }
+}
@@ -0,0 +1,379 @@
+package frc.lib.util;
+
+import java.util.Arrays;
+
+/**
+ * Reads the Limelight's "json" results dump straight into preallocated primitive arrays. It walks
+ * the text once with no tokenizer objects, strings or boxed numbers, so the only allocation per frame
+ * is the String NetworkTables hands us. Unknown keys are skipped, so firmware that adds fields (or
+ * wraps everything in "Results", as older firmware does) still parses.
+ *
+ * <p>Kept: pipeline/capture latency, timestamp and validity, the botpose arrays, and per target
+ * tx/ty/ta for Fiducial and Detector results, with the tag ID or class ID, detector confidence and
+ * each tag's robot pose in target space (t6r_ts). Targets past {@link #maxTargets} are dropped.
+ *
+ * <p>Not thread safe. Parse on one thread and hand the whole parser over (Limelight double buffers).
+ */
+public class LimelightJsonParser {
+    public static final int maxTargets = 16;
+
+    /* Frame */
+    public boolean valid;
+    public double pipelineLatencyMs;
+    public double captureLatencyMs;
+    public double timestampMs;
+    public final double[] botpose = new double[6];
+    public final double[] botposeBlue = new double[6];
+    public final double[] botposeRed = new double[6];
+
+    /* Set by the owner once a dump parses: which dump this is (Limelight numbers them from 1) and the FPGA time it was captured */
+    public long frame;
+    public double captureTimestamp;
+
+    /* AprilTags */
+    public int fiducialCount;
+    public final int[] fiducialId = new int[maxTargets];
+    public final double[] fiducialTx = new double[maxTargets];
+    public final double[] fiducialTy = new double[maxTargets];
+    public final double[] fiducialArea = new double[maxTargets];
+    public final double[] fiducialRobotPose = new double[maxTargets * 6];   // t6r_ts, 6 per tag
+
+    /* Neural detector (notes) */
+    public int detectorCount;
+    public final int[] detectorClass = new int[maxTargets];
+    public final double[] detectorTx = new double[maxTargets];
+    public final double[] detectorTy = new double[maxTargets];
+    public final double[] detectorArea = new double[maxTargets];
+    public final double[] detectorConfidence = new double[maxTargets];
+
+    /* One instance, no stack trace, so bailing out of a bad frame doesn't allocate either */
+    private static final class MalformedJson extends RuntimeException {
+        MalformedJson() {
+            super("Malformed Limelight JSON", null, false, false);
+        }
+    }
+    private static final MalformedJson malformed = new MalformedJson();
+
+    private static final double[] powersOfTen = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private static final int fiducial = 0;
+    private static final int detector = 1;
+
+    private CharSequence json;
+    private int pos;
+    private int keyStart;
+    private int keyEnd;
+
+    /**
+     * Replaces the contents with the given frame.
+     * @return false if the text isn't valid JSON, in which case nothing is valid and there are no targets
+     */
+    public boolean parse(CharSequence json) {
+        this.json = json;
+        pos = 0;
+        valid = false;
+        fiducialCount = 0;
+        detectorCount = 0;
+        try {
+            skipWhitespace();
+            parseFrame();
+            return true;
+        } catch (MalformedJson e) {
+            valid = false;
+            fiducialCount = 0;
+            detectorCount = 0;
+            return false;
+        } finally {
+            this.json = null;
+        }
+    }
+
+    /** Index of the tag with this ID, or -1 if it isn't in the frame */
+    public int findFiducial(int id) {
+        for (int i = 0; i < fiducialCount; i++) {
+            if (fiducialId[i] == id) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /* Top level object (or the "Results" object inside it) */
+    private void parseFrame() {
+        expect('{');
+        if (tryConsume('}')) {
+            return;
+        }
+        do {
+            readKey();
+            if (keyIs("Results")) {
+                parseFrame();
+            } else if (keyIs("Fiducial")) {
+                parseTargets(fiducial);
+            } else if (keyIs("Detector")) {
+                parseTargets(detector);
+            } else if (keyIs("botpose")) {
+                parseNumbers(botpose, 0, 6);
+            } else if (keyIs("botpose_wpiblue")) {
+                parseNumbers(botposeBlue, 0, 6);
+            } else if (keyIs("botpose_wpired")) {
+                parseNumbers(botposeRed, 0, 6);
+            } else if (keyIs("tl")) {
+                pipelineLatencyMs = parseNumber();
+            } else if (keyIs("cl")) {
+                captureLatencyMs = parseNumber();
+            } else if (keyIs("ts")) {
+                timestampMs = parseNumber();
+            } else if (keyIs("v")) {
+                valid = parseNumber() > 0.5;
+            } else {
+                skipValue();
+            }
+        } while (tryConsume(','));
+        expect('}');
+    }
+
+    private void parseTargets(int kind) {
+        expect('[');
+        if (tryConsume(']')) {
+            return;
+        }
+        do {
+            int count = kind == fiducial ? fiducialCount : detectorCount;
+            if (count < maxTargets) {
+                parseTarget(kind, count);
+                if (kind == fiducial) {
+                    fiducialCount++;
+                } else {
+                    detectorCount++;
+                }
+            } else {
+                skipValue();
+            }
+        } while (tryConsume(','));
+        expect(']');
+    }
+
+    private void parseTarget(int kind, int i) {
+        boolean isFiducial = kind == fiducial;
+        if (isFiducial) {
+            fiducialId[i] = -1;
+            Arrays.fill(fiducialRobotPose, i * 6, i * 6 + 6, 0);
+        } else {
+            detectorClass[i] = -1;
+            detectorConfidence[i] = 0;
+        }
+        expect('{');
+        if (tryConsume('}')) {
+            return;
+        }
+        do {
+            readKey();
+            if (keyIs("tx")) {
+                (isFiducial ? fiducialTx : detectorTx)[i] = parseNumber();
+            } else if (keyIs("ty")) {
+                (isFiducial ? fiducialTy : detectorTy)[i] = parseNumber();
+            } else if (keyIs("ta")) {
+                (isFiducial ? fiducialArea : detectorArea)[i] = parseNumber();
+            } else if (isFiducial && keyIs("fID")) {
+                fiducialId[i] = (int) parseNumber();
+            } else if (isFiducial && keyIs("t6r_ts")) {
+                parseNumbers(fiducialRobotPose, i * 6, 6);
+            } else if (!isFiducial && keyIs("classID")) {
+                detectorClass[i] = (int) parseNumber();
+            } else if (!isFiducial && keyIs("conf")) {
+                detectorConfidence[i] = parseNumber();
+            } else {
+                skipValue();
+            }
+        } while (tryConsume(','));
+        expect('}');
+    }
+
+    /* Reads up to length numbers of an array into out, ignoring any extras */
+    private void parseNumbers(double[] out, int offset, int length) {
+        expect('[');
+        if (tryConsume(']')) {
+            return;
+        }
+        int i = 0;
+        do {
+            double value = parseNumber();
+            if (i < length) {
+                out[offset + i] = value;
+            }
+            i++;
+        } while (tryConsume(','));
+        expect(']');
+    }
+
+    private double parseNumber() {
+        boolean negative = false;
+        if (current() == '-') {
+            negative = true;
+            pos++;
+        }
+        long mantissa = 0;
+        int exponent = 0;
+        int digits = 0;
+        boolean any = false;
+        char c;
+        while (pos < json.length() && (c = json.charAt(pos)) >= '0' && c <= '9') {
+            if (digits < 18) {
+                mantissa = mantissa * 10 + (c - '0');
+                if (mantissa != 0) digits++;
+            } else {
+                exponent++;
+            }
+            any = true;
+            pos++;
+        }
+        if (pos < json.length() && json.charAt(pos) == '.') {
+            pos++;
+            while (pos < json.length() && (c = json.charAt(pos)) >= '0' && c <= '9') {
+                if (digits < 18) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    if (mantissa != 0) digits++;
+                    exponent--;
+                }
+                any = true;
+                pos++;
+            }
+        }
+        if (!any) {
+            throw malformed;
+        }
+        if (pos < json.length() && (json.charAt(pos) == 'e' || json.charAt(pos) == 'E')) {
+            pos++;
+            boolean negativeExponent = false;
+            char sign = current();
+            if (sign == '+' || sign == '-') {
+                negativeExponent = sign == '-';
+                pos++;
+            }
+            int e = 0;
+            boolean anyExponent = false;
+            while (pos < json.length() && (c = json.charAt(pos)) >= '0' && c <= '9') {
+                e = Math.min(e * 10 + (c - '0'), 1000);
+                anyExponent = true;
+                pos++;
+            }
+            if (!anyExponent) {
+                throw malformed;
+            }
+            exponent += negativeExponent ? -e : e;
+        }
+        skipWhitespace();
+
+        double value = mantissa;
+        if (exponent < 0) {
+            value = -exponent < powersOfTen.length ? value / powersOfTen[-exponent] : value / Math.pow(10, -exponent);
+        } else if (exponent > 0) {
+            value = exponent < powersOfTen.length ? value * powersOfTen[exponent] : value * Math.pow(10, exponent);
+        }
+        return negative ? -value : value;
+    }
+
+    /* Reads "key": and leaves the key's bounds (without quotes) in keyStart/keyEnd */
+    private void readKey() {
+        if (current() != '"') {
+            throw malformed;
+        }
+        keyStart = pos + 1;
+        skipString();
+        keyEnd = pos - 1;
+        skipWhitespace();
+        expect(':');
+    }
+
+    private boolean keyIs(String key) {
+        int length = keyEnd - keyStart;
+        if (length != key.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (json.charAt(keyStart + i) != key.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void skipValue() {
+        char c = current();
+        if (c == '{' || c == '[') {
+            char close = c == '{' ? '}' : ']';
+            pos++;
+            skipWhitespace();
+            if (tryConsume(close)) {
+                return;
+            }
+            do {
+                if (c == '{') {
+                    readKey();
+                }
+                skipValue();
+            } while (tryConsume(','));
+            expect(close);
+        } else if (c == '"') {
+            skipString();
+            skipWhitespace();
+        } else if (c == 't' || c == 'f' || c == 'n') {
+            while (pos < json.length() && Character.isLetter(json.charAt(pos))) {
+                pos++;
+            }
+            skipWhitespace();
+        } else {
+            parseNumber();
+        }
+    }
+
+    /* pos is on the opening quote; leaves it just past the closing one */
+    private void skipString() {
+        pos++;
+        while (true) {
+            char c = current();
+            pos++;
+            if (c == '"') {
+                return;
+            }
+            if (c == '\\') {
+                pos++;
+            }
+        }
+    }
+
+    private void expect(char c) {
+        if (current() != c) {
+            throw malformed;
+        }
+        pos++;
+        skipWhitespace();
+    }
+
+    private boolean tryConsume(char c) {
+        if (pos < json.length() && json.charAt(pos) == c) {
+            pos++;
+            skipWhitespace();
+            return true;
+        }
+        return false;
+    }
+
+    /* The character at pos. Truncated text fails the frame here rather than with an IndexOutOfBoundsException. */
+    private char current() {
+        if (pos >= json.length()) {
+            throw malformed;
+        }
+        return json.charAt(pos);
+    }
+
+    private void skipWhitespace() {
+        while (pos < json.length() && json.charAt(pos) <= ' ') {
+            pos++;
+        }
+    }
+}
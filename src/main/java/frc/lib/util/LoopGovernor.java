@@ -0,0 +1,187 @@
+package frc.lib.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.wpi.first.util.datalog.DataLog;
+import edu.wpi.first.util.datalog.DoubleLogEntry;
+import edu.wpi.first.util.datalog.StringLogEntry;
+
+/**
+ * Runs the loop's non-control work (dashboards, field drawing, logging) and sheds it when the loop
+ * gets close to its budget. Each task has a priority, 1 being the most important; control never goes
+ * through here, so it can't be shed.
+ *
+ * <p>Loop times are smoothed into a moving estimate. While the estimate stays above the degrade
+ * threshold, the least important priority still running gets decimated one step at a time (every
+ * 2nd loop, 4th, ... then not at all) before the next priority is touched. Once the estimate is back
+ * under the restore threshold, steps are given back in the opposite order. The thresholds are apart
+ * and each has to hold for a few loops, so it doesn't flap. Every step is logged to /Governor/Events.
+ *
+ * <p>Priority 1 is never shed entirely, only decimated down to maxDecimation: it's where the match
+ * log goes, and a gap in the log is worst exactly when the loop is in trouble.
+ */
+public class LoopGovernor {
+    private static class Task {
+        final String name;
+        final int priority;
+        final Runnable runnable;
+        final int phase;
+
+        Task(String name, int priority, Runnable runnable, int phase) {
+            this.name = name;
+            this.priority = priority;
+            this.runnable = runnable;
+            this.phase = phase;
+        }
+    }
+
+    private final double budget;
+    private final double degradeThreshold;
+    private final double restoreThreshold;
+    private final double smoothing;
+    private final int holdLoops;
+    private final int maxDecimation;
+
+    private final List<Task> tasks = new ArrayList<>();
+    private int lowestPriority = 0;
+    private int[] decimation = new int[1];    // per priority, 1 runs every loop, 0 is shed
+
+    private double estimate = 0;
+    private int loopsOver = 0;
+    private int loopsUnder = 0;
+    private long loopCount = 0;
+
+    private StringLogEntry eventEntry;
+    private DoubleLogEntry estimateEntry;
+
+    /**
+     * @param budget Loop period in seconds
+     * @param degradeFraction Shed work while the estimate is above this fraction of the budget
+     * @param restoreFraction Give work back while the estimate is below this fraction of the budget
+     * @param smoothing Weight of each new loop time in the estimate (0 to 1)
+     * @param holdLoops Loops the estimate has to stay past a threshold before each step
+     * @param maxDecimation Slowest a task runs (every this many loops) before it's shed entirely. Power of two.
+     */
+    public LoopGovernor(double budget, double degradeFraction, double restoreFraction, double smoothing, int holdLoops, int maxDecimation) {
+        this.budget = budget;
+        this.degradeThreshold = budget * degradeFraction;
+        this.restoreThreshold = budget * restoreFraction;
+        this.smoothing = smoothing;
+        this.holdLoops = holdLoops;
+        this.maxDecimation = maxDecimation;
+    }
+
+    /**
+     * @param priority 1 or more, higher numbers are shed first. Priority 1 is never shed, only decimated.
+     */
+    public void register(String name, int priority, Runnable task) {
+        if (priority < 1) {
+            throw new IllegalArgumentException("Governed tasks need priority 1 or more, control doesn't belong here: " + name);
+        }
+        // Spread decimated tasks over different loops instead of running them all on the same one
+        tasks.add(new Task(name, priority, task, tasks.size()));
+        if (priority > lowestPriority) {
+            int[] grown = new int[priority + 1];
+            System.arraycopy(decimation, 0, grown, 0, decimation.length);
+            for (int p = lowestPriority + 1; p <= priority; p++) {
+                grown[p] = 1;
+            }
+            decimation = grown;
+            lowestPriority = priority;
+        }
+    }
+
+    /** Entries are created here since the governor is usually built before DataLogManager starts */
+    public void start(DataLog log) {
+        eventEntry = new StringLogEntry(log, "/Governor/Events");
+        estimateEntry = new DoubleLogEntry(log, "/Governor/EstimateMs");
+    }
+
+    /** Runs whatever is due this loop. Call once per loop after the scheduler. */
+    public void run() {
+        loopCount++;
+        for (int i = 0; i < tasks.size(); i++) {
+            Task task = tasks.get(i);
+            int every = decimation[task.priority];
+            if (every > 0 && (loopCount + task.phase) % every == 0) {
+                task.runnable.run();
+            }
+        }
+    }
+
+    /** Feeds in the last loop's total time in seconds and sheds or restores a step if it's time */
+    public void recordLoop(double seconds) {
+        estimate += smoothing * (seconds - estimate);
+        if (estimateEntry != null) {
+            estimateEntry.append(estimate * 1000.0);
+        }
+
+        loopsOver = estimate > degradeThreshold ? loopsOver + 1 : 0;
+        loopsUnder = estimate < restoreThreshold ? loopsUnder + 1 : 0;
+        if (loopsOver >= holdLoops) {
+            loopsOver = 0;
+            degrade();
+        } else if (loopsUnder >= holdLoops) {
+            loopsUnder = 0;
+            restore();
+        }
+    }
+
+    public double getEstimate() {
+        return estimate;
+    }
+
+    /* True if anything is currently being skipped or decimated */
+    public boolean isDegraded() {
+        for (int p = 1; p <= lowestPriority; p++) {
+            if (decimation[p] != 1) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void degrade() {
+        for (int p = lowestPriority; p >= 1; p--) {
+            if (decimation[p] == 0 || !hasTasks(p)) continue;
+            if (p == 1 && decimation[p] >= maxDecimation) continue;
+            decimation[p] = decimation[p] >= maxDecimation ? 0 : decimation[p] * 2;
+            logEvent("Degraded", p);
+            return;
+        }
+    }
+
+    private void restore() {
+        for (int p = 1; p <= lowestPriority; p++) {
+            if (decimation[p] == 1 || !hasTasks(p)) continue;
+            decimation[p] = decimation[p] == 0 ? maxDecimation : decimation[p] / 2;
+            logEvent("Restored", p);
+            return;
+        }
+    }
+
+    private boolean hasTasks(int priority) {
+        for (Task task : tasks) {
+            if (task.priority == priority) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void logEvent(String action, int priority) {
+        if (eventEntry == null) {
+            return;
+        }
+        StringBuilder names = new StringBuilder();
+        for (Task task : tasks) {
+            if (task.priority == priority) {
+                names.append(names.length() > 0 ? ", " : "").append(task.name);
+            }
+        }
+        String rate = decimation[priority] == 0 ? "off" : decimation[priority] == 1 ? "every loop" : "every " + decimation[priority] + " loops";
+        eventEntry.append(String.format("%s priority %d (%s) to %s, loop estimate %.1f of %.1f ms",
+            action, priority, names, rate, estimate * 1000.0, budget * 1000.0));
+    }
+}
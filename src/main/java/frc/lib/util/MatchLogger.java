@@ -0,0 +1,280 @@
+package frc.lib.util;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import edu.wpi.first.util.datalog.BooleanLogEntry;
+import edu.wpi.first.util.datalog.DataLog;
+import edu.wpi.first.util.datalog.DoubleArrayLogEntry;
+import edu.wpi.first.util.datalog.DoubleLogEntry;
+import edu.wpi.first.util.datalog.IntegerLogEntry;
+import edu.wpi.first.util.datalog.StringLogEntry;
+import edu.wpi.first.util.datalog.StructArrayLogEntry;
+import edu.wpi.first.util.struct.Struct;
+import edu.wpi.first.wpilibj.RobotController;
+
+/**
+ * Structured match logging that never blocks the robot loop. Entries are registered up front with
+ * a type, the loop writes primitives into a preallocated single-producer/single-consumer ring of
+ * longs, and a background thread drains the ring into the DataLog. If the writer falls behind (slow
+ * USB stick) new records are dropped and counted rather than waited on, and the ring never grows,
+ * so memory is capped at capacity * 8 bytes.
+ *
+ * <p>Record layout in the ring: header (entry id << 32 | payload length), FPGA timestamp, payload.
+ * Doubles are stored as raw long bits. Only the robot thread may call the log methods.
+ */
+public class MatchLogger {
+    /** Rebuilds one struct value from its doubles on the writer thread. */
+    public interface StructDecoder<T> {
+        T decode(double[] values, int offset);
+    }
+
+    private enum Type { DOUBLE, INTEGER, BOOLEAN, DOUBLE_ARRAY, ENUM, STRUCT_ARRAY }
+
+    private static class Entry {
+        final Type type;
+        final int length;
+        Object logEntry;
+        Object[] enumValues;
+        StructDecoder<?> decoder;
+        int width;
+        double[] scratch;
+
+        Entry(Type type, int length) {
+            this.type = type;
+            this.length = length;
+        }
+    }
+
+    private final DataLog log;
+    private final long[] ring;
+    private final int mask;
+    private final ArrayList<Entry> entries = new ArrayList<>();
+
+    /* Producer owns head, consumer owns tail. Each publishes its position for the other. */
+    private long head = 0;
+    private final AtomicLong publishedHead = new AtomicLong();
+    private final AtomicLong publishedTail = new AtomicLong();
+
+    private long dropped = 0;
+    private long highWater = 0;
+    private final AtomicLong publishedDropped = new AtomicLong();
+    private final AtomicLong publishedHighWater = new AtomicLong();   // longs aren't atomic on the roboRIO's 32 bit ARM
+
+    private final long flushPeriodMillis;
+    private Thread writer;
+
+    private final IntegerLogEntry droppedEntry;
+    private final IntegerLogEntry highWaterEntry;
+
+    /**
+     * @param log Where records end up, normally DataLogManager.getLog()
+     * @param capacity Ring size in longs, rounded up to a power of two. This is the memory cap.
+     * @param flushPeriod Seconds between writer passes
+     */
+    public MatchLogger(DataLog log, int capacity, double flushPeriod) {
+        this.log = log;
+        int size = Integer.highestOneBit(Math.max(capacity, 64) - 1) << 1;
+        ring = new long[size];
+        mask = size - 1;
+        flushPeriodMillis = Math.max(1, (long) (flushPeriod * 1000));
+        droppedEntry = new IntegerLogEntry(log, "/MatchLogger/Dropped");
+        highWaterEntry = new IntegerLogEntry(log, "/MatchLogger/HighWater");
+    }
+
+    /* Registration. Do it all before start(). Each returns the id to log with. */
+
+    public int registerDouble(String name) {
+        return register(new Entry(Type.DOUBLE, 1), new DoubleLogEntry(log, name));
+    }
+
+    public int registerInteger(String name) {
+        return register(new Entry(Type.INTEGER, 1), new IntegerLogEntry(log, name));
+    }
+
+    public int registerBoolean(String name) {
+        return register(new Entry(Type.BOOLEAN, 1), new BooleanLogEntry(log, name));
+    }
+
+    public int registerDoubleArray(String name, int length) {
+        Entry entry = new Entry(Type.DOUBLE_ARRAY, length);
+        entry.scratch = new double[length];
+        return register(entry, new DoubleArrayLogEntry(log, name));
+    }
+
+    /** Logs an enum by name. The loop only writes its ordinal. */
+    public <E extends Enum<E>> int registerEnum(String name, Class<E> type) {
+        Entry entry = new Entry(Type.ENUM, 1);
+        entry.enumValues = type.getEnumConstants();
+        return register(entry, new StringLogEntry(log, name));
+    }
+
+    /**
+     * Logs an array of WPILib structs (e.g. SwerveModuleState) so AdvantageScope can show them. The loop
+     * writes count * width doubles; the decoder rebuilds the objects on the writer thread.
+     */
+    public <T> int registerStructArray(String name, Struct<T> struct, int count, int width, StructDecoder<T> decoder) {
+        Entry entry = new Entry(Type.STRUCT_ARRAY, count * width);
+        entry.decoder = decoder;
+        entry.width = width;
+        entry.scratch = new double[count * width];
+        return register(entry, StructArrayLogEntry.create(log, name, struct));
+    }
+
+    private int register(Entry entry, Object logEntry) {
+        if (writer != null) {
+            throw new IllegalStateException("MatchLogger entries must be registered before start()");
+        }
+        entry.logEntry = logEntry;
+        entries.add(entry);
+        return entries.size() - 1;
+    }
+
+    public void start() {
+        writer = new Thread(this::writerLoop, "MatchLogger");
+        writer.setDaemon(true);
+        writer.setPriority(Thread.MIN_PRIORITY);
+        writer.start();
+    }
+
+    /* Logging, robot thread only. Each returns false if the record was dropped. */
+
+    public boolean log(int id, double value) {
+        int slot = reserve(id, 1);
+        if (slot < 0) return false;
+        ring[slot & mask] = Double.doubleToRawLongBits(value);
+        return publish(1);
+    }
+
+    public boolean log(int id, long value) {
+        int slot = reserve(id, 1);
+        if (slot < 0) return false;
+        ring[slot & mask] = value;
+        return publish(1);
+    }
+
+    public boolean log(int id, boolean value) {
+        return log(id, value ? 1L : 0L);
+    }
+
+    public boolean log(int id, Enum<?> value) {
+        return log(id, (long) value.ordinal());
+    }
+
+    /** For double array and struct array entries. Copies exactly the registered length. */
+    public boolean log(int id, double[] values) {
+        int length = entries.get(id).length;
+        int slot = reserve(id, length);
+        if (slot < 0) return false;
+        for (int i = 0; i < length; i++) {
+            ring[(slot + i) & mask] = Double.doubleToRawLongBits(values[i]);
+        }
+        return publish(length);
+    }
+
+    /* Writes the header and returns where the payload goes, or -1 if there's no room */
+    private int reserve(int id, int length) {
+        long used = head - publishedTail.get();
+        if (used + 2 + length > ring.length) {
+            dropped++;
+            publishedDropped.lazySet(dropped);
+            return -1;
+        }
+        if (used + 2 + length > highWater) {
+            highWater = used + 2 + length;
+            publishedHighWater.lazySet(highWater);
+        }
+        ring[(int) (head & mask)] = ((long) id << 32) | length;
+        ring[(int) ((head + 1) & mask)] = RobotController.getFPGATime();
+        return (int) ((head + 2) & mask);
+    }
+
+    private boolean publish(int length) {
+        head += 2 + length;
+        publishedHead.lazySet(head);   // release: the payload is visible before the new head
+        return true;
+    }
+
+    public long getDropped() {
+        return publishedDropped.get();
+    }
+
+    /* Most of the ring (in longs) ever in use at once */
+    public long getHighWater() {
+        return publishedHighWater.get();
+    }
+
+    private void writerLoop() {
+        long tail = 0;
+        long lastDropped = 0;
+        long lastHighWater = 0;
+        while (!Thread.currentThread().isInterrupted()) {
+            long available = publishedHead.get();
+            while (tail < available) {
+                long header = ring[(int) (tail & mask)];
+                long timestamp = ring[(int) ((tail + 1) & mask)];
+                int id = (int) (header >>> 32);
+                int length = (int) header;
+                write(entries.get(id), tail + 2, timestamp);
+                tail += 2 + length;
+            }
+            publishedTail.lazySet(tail);
+
+            long droppedNow = publishedDropped.get();
+            if (droppedNow != lastDropped) {
+                droppedEntry.append(droppedNow);
+                lastDropped = droppedNow;
+            }
+            long highWaterNow = publishedHighWater.get();
+            if (highWaterNow != lastHighWater) {
+                highWaterEntry.append(highWaterNow);
+                lastHighWater = highWaterNow;
+            }
+
+            try {
+                Thread.sleep(flushPeriodMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void write(Entry entry, long payload, long timestamp) {
+        switch (entry.type) {
+            case DOUBLE ->
+                ((DoubleLogEntry) entry.logEntry).append(Double.longBitsToDouble(ring[(int) (payload & mask)]), timestamp);
+            case INTEGER ->
+                ((IntegerLogEntry) entry.logEntry).append(ring[(int) (payload & mask)], timestamp);
+            case BOOLEAN ->
+                ((BooleanLogEntry) entry.logEntry).append(ring[(int) (payload & mask)] != 0, timestamp);
+            case ENUM -> {
+                int ordinal = (int) ring[(int) (payload & mask)];
+                ((StringLogEntry) entry.logEntry).append(entry.enumValues[ordinal].toString(), timestamp);
+            }
+            case DOUBLE_ARRAY -> {
+                copyPayload(entry, payload);
+                ((DoubleArrayLogEntry) entry.logEntry).append(entry.scratch, timestamp);
+            }
+            case STRUCT_ARRAY -> {
+                copyPayload(entry, payload);
+                int count = entry.length / entry.width;
+                Object[] values = new Object[count];
+                for (int i = 0; i < count; i++) {
+                    values[i] = entry.decoder.decode(entry.scratch, i * entry.width);
+                }
+                appendStructs((StructArrayLogEntry<Object>) entry.logEntry, values, timestamp);
+            }
+        }
+    }
+
+    private void copyPayload(Entry entry, long payload) {
+        for (int i = 0; i < entry.length; i++) {
+            entry.scratch[i] = Double.longBitsToDouble(ring[(int) ((payload + i) & mask)]);
+        }
+    }
+
+    private static void appendStructs(StructArrayLogEntry<Object> logEntry, Object[] values, long timestamp) {
+        logEntry.append(values, timestamp);
+    }
+}
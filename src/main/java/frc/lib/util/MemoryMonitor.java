@@ -0,0 +1,129 @@
+package frc.lib.util;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryUsage;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import com.sun.management.GcInfo;
+
+import edu.wpi.first.util.datalog.DataLog;
+import edu.wpi.first.util.datalog.DoubleLogEntry;
+import edu.wpi.first.util.datalog.StringLogEntry;
+import edu.wpi.first.wpilibj.RobotController;
+
+/**
+ * Logs JVM memory behaviour into the DataLog: every GC pause (with heap before/after), heap pool
+ * usage, and how fast the main robot thread allocates. GC pauses are timestamped at the start of
+ * the pause, so they line up with the loop overrun entries Robot writes to the same log.
+ */
+public class MemoryMonitor {
+  private static final double bytesPerMB = 1024.0 * 1024.0;
+
+  private final com.sun.management.ThreadMXBean threadBean;
+  private final long mainThreadId;
+  private final List<MemoryPoolMXBean> pools;
+  private final int poolDecimation;
+
+  private final DoubleLogEntry gcPauseEntry;
+  private final StringLogEntry gcEventEntry;
+  private final DoubleLogEntry heapBeforeEntry;
+  private final DoubleLogEntry heapAfterEntry;
+  private final DoubleLogEntry allocatedEntry;
+  private final DoubleLogEntry allocRateEntry;
+  private final DoubleLogEntry[] poolEntries;
+
+  /* FPGA time (us) at JVM start, GcInfo times are relative to that */
+  private final long fpgaAtJvmStart;
+
+  private long lastAllocatedBytes = -1;
+  private long lastAllocTime = 0;
+  private int cycles = 0;
+
+  /**
+   * @param log The log to write to, normally DataLogManager.getLog()
+   * @param mainThread The thread whose allocations should be tracked (the robot loop thread)
+   * @param poolDecimation Heap pool usage is only logged every this many calls to {@link #periodic()}
+   */
+  public MemoryMonitor(DataLog log, Thread mainThread, int poolDecimation) {
+    this.mainThreadId = mainThread.getId();
+    this.poolDecimation = poolDecimation;
+    fpgaAtJvmStart = RobotController.getFPGATime() - ManagementFactory.getRuntimeMXBean().getUptime() * 1000;
+
+    gcPauseEntry = new DoubleLogEntry(log, "/Memory/GCPauseMs");
+    gcEventEntry = new StringLogEntry(log, "/Memory/GCEvent");
+    heapBeforeEntry = new DoubleLogEntry(log, "/Memory/HeapBeforeGCMB");
+    heapAfterEntry = new DoubleLogEntry(log, "/Memory/HeapAfterGCMB");
+    allocatedEntry = new DoubleLogEntry(log, "/Memory/MainThreadAllocatedKB");
+    allocRateEntry = new DoubleLogEntry(log, "/Memory/MainThreadAllocRateMBps");
+
+    pools = ManagementFactory.getMemoryPoolMXBeans();
+    poolEntries = new DoubleLogEntry[pools.size()];
+    for (int i = 0; i < pools.size(); i++) {
+      poolEntries[i] = new DoubleLogEntry(log, "/Memory/Pool/" + pools.get(i).getName() + "MB");
+    }
+
+    threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    if (threadBean.isThreadAllocatedMemorySupported()) {
+      threadBean.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      if (gc instanceof NotificationEmitter emitter) {
+        emitter.addNotificationListener((notification, handback) -> onNotification(notification), null, null);
+      }
+    }
+  }
+
+  /* Runs on the JMX notification thread, DataLog appends are thread safe */
+  private void onNotification(Notification notification) {
+    if (!notification.getType().equals(GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION)) {
+      return;
+    }
+    GarbageCollectionNotificationInfo info =
+        GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+    GcInfo gcInfo = info.getGcInfo();
+
+    // Date the entries by when the pause started (from the JVM's own record, not when we got told) so they
+    // overlap the loops they delayed
+    long pauseStart = fpgaAtJvmStart + gcInfo.getStartTime() * 1000;
+    gcPauseEntry.append(gcInfo.getDuration(), pauseStart);
+    gcEventEntry.append(info.getGcName() + ": " + info.getGcAction() + " (" + info.getGcCause() + ")", pauseStart);
+    heapBeforeEntry.append(totalUsed(gcInfo.getMemoryUsageBeforeGc()) / bytesPerMB, pauseStart);
+    heapAfterEntry.append(totalUsed(gcInfo.getMemoryUsageAfterGc()) / bytesPerMB, pauseStart);
+  }
+
+  private static long totalUsed(Map<String, MemoryUsage> usage) {
+    long used = 0;
+    for (MemoryUsage pool : usage.values()) {
+      used += pool.getUsed();
+    }
+    return used;
+  }
+
+  /** Call once per robot loop from the main thread, every loop, or the allocation figure covers several. */
+  public void periodic() {
+    long now = RobotController.getFPGATime();
+    long allocated = threadBean.getThreadAllocatedBytes(mainThreadId);
+    if (allocated >= 0 && lastAllocatedBytes >= 0 && now > lastAllocTime) {
+      long delta = allocated - lastAllocatedBytes;
+      allocatedEntry.append(delta / 1024.0, now);
+      allocRateEntry.append(delta / bytesPerMB / ((now - lastAllocTime) / 1e6), now);
+    }
+    lastAllocatedBytes = allocated;
+    lastAllocTime = now;
+
+    if (cycles++ % poolDecimation == 0) {
+      for (int i = 0; i < poolEntries.length; i++) {
+        poolEntries[i].append(pools.get(i).getUsage().getUsed() / bytesPerMB, now);
+      }
+    }
+  }
+}
@@ -0,0 +1,76 @@
+package frc.lib.util;
+
+import edu.wpi.first.util.datalog.DataLog;
+import edu.wpi.first.util.datalog.DoubleLogEntry;
+
+/**
+ * Checks a SysId style feedforward model against the real motor. Each update predicts the velocity
+ * one loop ahead from the applied voltage using V = Ks*sgn(v) + Kv*v + Ka*a, then logs that prediction
+ * next to what was actually measured. A model that matches SysId should keep the error near zero;
+ * a growing error under battery sag means the gains (or the compensation) are off.
+ *
+ * <p>The gains are copied in; pass tuned ones to {@link #setGains}.
+ */
+public class MotorResponseModel {
+    private final String name;
+    private final double[] sva;
+    private DoubleLogEntry predictedEntry;
+    private DoubleLogEntry actualEntry;
+    private DoubleLogEntry errorEntry;
+    private DoubleLogEntry voltsEntry;
+
+    private double lastVelocity;
+    private double lastVolts;
+    private double lastTimestamp = -1;
+
+    /**
+     * @param name Log prefix, entries go under /Response/name
+     * @param sva {Ks, Kv, Ka} in the same velocity units as the measurements
+     */
+    public MotorResponseModel(String name, double[] sva) {
+        this.name = name;
+        this.sva = sva.clone();
+    }
+
+    /* Takes new {Ks, Kv, Ka}, e.g. from TunableGains */
+    public void setGains(double[] sva) {
+        System.arraycopy(sva, 0, this.sva, 0, this.sva.length);
+    }
+
+    /**
+     * @param log Log to write to. Entries are created on the first call so subsystems can build this before the log starts.
+     * @param velocity Measured velocity
+     * @param appliedVolts Voltage the controller is actually applying (applied output times bus voltage)
+     * @param timestamp FPGA time in seconds
+     */
+    public void update(DataLog log, double velocity, double appliedVolts, double timestamp) {
+        if (predictedEntry == null) {
+            predictedEntry = new DoubleLogEntry(log, "/Response/" + name + "/Predicted");
+            actualEntry = new DoubleLogEntry(log, "/Response/" + name + "/Actual");
+            errorEntry = new DoubleLogEntry(log, "/Response/" + name + "/Error");
+            voltsEntry = new DoubleLogEntry(log, "/Response/" + name + "/Volts");
+        }
+        voltsEntry.append(appliedVolts);
+
+        if (lastTimestamp >= 0 && sva[1] > 0) {
+            double predicted = predict(lastVelocity, lastVolts, timestamp - lastTimestamp);
+            predictedEntry.append(predicted);
+            actualEntry.append(velocity);
+            errorEntry.append(velocity - predicted);
+        }
+
+        lastVelocity = velocity;
+        lastVolts = appliedVolts;
+        lastTimestamp = timestamp;
+    }
+
+    /* Exact solution of the first order model over dt, so Ka = 0 (no lag) works too */
+    private double predict(double velocity, double volts, double dt) {
+        double steadyState = (volts - sva[0] * Math.signum(volts)) / sva[1];
+        if (Math.abs(volts) < sva[0]) {
+            steadyState = 0;
+        }
+        double decay = sva[2] > 0 ? Math.exp(-sva[1] / sva[2] * dt) : 0;
+        return steadyState + (velocity - steadyState) * decay;
+    }
+}
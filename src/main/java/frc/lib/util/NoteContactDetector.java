@@ -0,0 +1,106 @@
+package frc.lib.util;
+
+/**
+ * Online detector for a game piece hitting a roller. With nothing in it, a spinning roller draws a
+ * steady current at a steady speed; when a note gets squashed into it the current jumps and the
+ * speed sags at the same time. Slow moving baselines of both are kept while nothing is happening,
+ * and contact is called once both signals are past their thresholds for a few samples in a row.
+ * Requiring both keeps it from firing on current noise alone or on a speed wobble alone.
+ *
+ * <p>The first settle period after a reset only learns the baselines, so spin-up inrush isn't
+ * mistaken for a note. Contact latches until {@link #reset()}. Constant time and allocation free per
+ * sample, so it can run in a fast Notifier.
+ */
+public class NoteContactDetector {
+    private final double spikeAmps;
+    private final double dipFraction;
+    private final double baselineTimeConstant;
+    private final double settleTime;
+    private final int confirmSamples;
+
+    private boolean started;
+    private double startTime;
+    private double lastTime;
+    private double currentBaseline;
+    private double velocityBaseline;
+
+    private int samplesOver;
+    private double firstOverTime;
+    private boolean contact;
+    private double contactTime;
+
+    /**
+     * @param spikeAmps How far above the baseline the current has to be
+     * @param dipFraction How far below the baseline the speed has to be, as a fraction of the baseline
+     * @param baselineTimeConstant Time constant of the baseline filters in seconds
+     * @param settleTime Seconds after a reset spent only learning the baselines
+     * @param confirmSamples Consecutive samples both signals have to agree before calling contact
+     */
+    public NoteContactDetector(double spikeAmps, double dipFraction, double baselineTimeConstant, double settleTime, int confirmSamples) {
+        this.spikeAmps = spikeAmps;
+        this.dipFraction = dipFraction;
+        this.baselineTimeConstant = baselineTimeConstant;
+        this.settleTime = settleTime;
+        this.confirmSamples = confirmSamples;
+    }
+
+    /**
+     * Adds one sample.
+     * @param current Roller current in amps
+     * @param velocity Roller speed, any unit, either sign
+     * @param timestamp Sample time in seconds
+     * @return True if a note is (or was, since the last reset) in contact
+     */
+    public boolean update(double current, double velocity, double timestamp) {
+        if (contact) {
+            return true;
+        }
+        double speed = Math.abs(velocity);
+        if (!started) {
+            started = true;
+            startTime = timestamp;
+            lastTime = timestamp;
+            currentBaseline = current;
+            velocityBaseline = speed;
+            return false;
+        }
+        double dt = Math.max(timestamp - lastTime, 0);
+        lastTime = timestamp;
+        double alpha = dt / (baselineTimeConstant + dt);
+
+        boolean settled = timestamp - startTime >= settleTime;
+        boolean spike = current > currentBaseline + spikeAmps;
+        boolean dip = speed < velocityBaseline * (1 - dipFraction);
+        if (settled && spike && dip) {
+            // Hold the baselines still so the note itself doesn't get learned as normal
+            if (samplesOver == 0) {
+                firstOverTime = timestamp;
+            }
+            if (++samplesOver >= confirmSamples) {
+                contact = true;
+                contactTime = firstOverTime;
+            }
+            return contact;
+        }
+        samplesOver = 0;
+        currentBaseline += alpha * (current - currentBaseline);
+        velocityBaseline += alpha * (speed - velocityBaseline);
+        return false;
+    }
+
+    /* Forgets the baselines and any contact, e.g. whenever the rollers are stopped */
+    public void reset() {
+        started = false;
+        samplesOver = 0;
+        contact = false;
+    }
+
+    public boolean isContact() {
+        return contact;
+    }
+
+    /* Time of the first sample of the run that confirmed contact */
+    public double getContactTime() {
+        return contactTime;
+    }
+}
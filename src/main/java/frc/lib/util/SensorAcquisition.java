@@ -0,0 +1,147 @@
+package frc.lib.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+
+/**
+ * Runs the blocking sensor reads of independent subsystems on a small fixed set of worker threads
+ * before the command scheduler runs. Each reader is a plain Runnable that reads its hardware and
+ * publishes an immutable inputs record. Readers are dealt round-robin to the workers in {@link #start()},
+ * so a reader always runs on the same thread.
+ *
+ * <p>The workers and the main thread meet on a Phaser twice per cycle (open and close), so a cycle
+ * does not allocate and the main thread sees everything the readers wrote before it runs commands.
+ */
+public class SensorAcquisition {
+  private final int threadCount;
+  private final long timeoutNanos;
+  private final Phaser phaser;
+
+  private final List<String> names = new ArrayList<>();
+  private final List<Runnable> readers = new ArrayList<>();
+  // Atomic: after a timeout the workers are still writing these while the main thread sums them
+  private AtomicLongArray readerNanos = new AtomicLongArray(0);
+  private boolean started = false;
+
+  /* Phase the workers still owe us after a timeout, or -1 */
+  private int overduePhase = -1;
+
+  private double parallelMs = 0;
+  private double serialMs = 0;
+
+  /**
+   * @param threadCount Number of worker threads. Keep this small, the roboRIO only has two cores.
+   * @param timeoutSeconds How long the main thread waits for the readers before giving up on them
+   *     for this cycle and running with the previous inputs.
+   */
+  public SensorAcquisition(int threadCount, double timeoutSeconds) {
+    this.threadCount = threadCount;
+    this.timeoutNanos = (long) (timeoutSeconds * 1e9);
+    this.phaser = new Phaser(threadCount + 1);
+  }
+
+  /** Adds a reader. Must be called before {@link #start()}. */
+  public void register(String name, Runnable reader) {
+    if (started) {
+      throw new IllegalStateException("Sensor readers must be registered before start()");
+    }
+    names.add(name);
+    readers.add(reader);
+  }
+
+  /** Freezes the reader list and starts the worker threads. */
+  public void start() {
+    started = true;
+    readerNanos = new AtomicLongArray(readers.size());
+    for (int t = 0; t < threadCount; t++) {
+      List<Integer> mine = new ArrayList<>();
+      for (int i = t; i < readers.size(); i += threadCount) {
+        mine.add(i);
+      }
+      int[] assigned = mine.stream().mapToInt(Integer::intValue).toArray();
+      Thread worker = new Thread(() -> workerLoop(assigned), "SensorAcquisition-" + t);
+      worker.setDaemon(true);
+      worker.start();
+    }
+  }
+
+  private void workerLoop(int[] assigned) {
+    Runnable[] mine = new Runnable[assigned.length];
+    for (int k = 0; k < assigned.length; k++) {
+      mine[k] = readers.get(assigned[k]);
+    }
+    while (true) {
+      // Wait for the main thread to open the cycle
+      phaser.arriveAndAwaitAdvance();
+      for (int k = 0; k < mine.length; k++) {
+        long start = System.nanoTime();
+        try {
+          mine[k].run();
+        } catch (Throwable e) {
+          // Errors too: a dead worker would leave the Phaser waiting on it forever
+          DriverStation.reportError("Sensor read failed for " + names.get(assigned[k]) + ": " + e, e.getStackTrace());
+        }
+        readerNanos.set(assigned[k], System.nanoTime() - start);
+      }
+      // Close the cycle
+      phaser.arrive();
+    }
+  }
+
+  /**
+   * Runs every reader once and returns when all of them have published. Call this at the start of
+   * robotPeriodic(), before the scheduler runs.
+   */
+  public void acquire() {
+    if (!started) {
+      return;
+    }
+    // A reader overran last cycle and is still busy. Don't queue behind it, keep the old inputs.
+    if (overduePhase >= 0 && phaser.getPhase() == overduePhase) {
+      return;
+    }
+    overduePhase = -1;
+
+    long start = System.nanoTime();
+    phaser.arriveAndAwaitAdvance();
+    int closing = phaser.arrive();
+    try {
+      phaser.awaitAdvanceInterruptibly(closing, timeoutNanos, TimeUnit.NANOSECONDS);
+    } catch (TimeoutException e) {
+      overduePhase = closing;
+      DriverStation.reportWarning("Sensor acquisition timed out, using previous inputs", false);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    parallelMs = (System.nanoTime() - start) / 1e6;
+
+    long serial = 0;
+    for (int i = 0; i < readerNanos.length(); i++) {
+      serial += readerNanos.get(i);
+    }
+    serialMs = serial / 1e6;
+  }
+
+  /** Wall-clock time of the last acquisition phase. */
+  public double getParallelMs() {
+    return parallelMs;
+  }
+
+  /** Sum of the individual reader times, i.e. what the sense phase costs when run serially. */
+  public double getSerialMs() {
+    return serialMs;
+  }
+
+  public void report() {
+    SmartDashboard.putNumber("Sense Parallel ms", parallelMs);
+    SmartDashboard.putNumber("Sense Serial ms", serialMs);
+    SmartDashboard.putNumber("Sense Speedup", parallelMs > 0 ? serialMs / parallelMs : 1.0);
+  }
+}
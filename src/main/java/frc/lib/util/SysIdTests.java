@@ -0,0 +1,32 @@
+package frc.lib.util;
+
+import java.util.function.BooleanSupplier;
+
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.WaitCommand;
+import edu.wpi.first.wpilibj2.command.sysid.SysIdRoutine;
+
+/* Builds the usual four SysId tests (quasistatic and dynamic, both directions) into one command */
+public final class SysIdTests {
+    private static final double pause = 0.25;   // seconds to let the mechanism settle between tests
+
+    private SysIdTests() {}
+
+    public static Command all(SysIdRoutine routine) {
+        return all(routine, () -> false, () -> false);
+    }
+
+    /**
+     * @param forwardLimit Ends any forward test early when true, for mechanisms with limited travel
+     * @param reverseLimit Ends any reverse test early when true
+     */
+    public static Command all(SysIdRoutine routine, BooleanSupplier forwardLimit, BooleanSupplier reverseLimit) {
+        return routine.quasistatic(SysIdRoutine.Direction.kForward).until(forwardLimit).andThen(
+            new WaitCommand(pause)).andThen(
+            routine.quasistatic(SysIdRoutine.Direction.kReverse).until(reverseLimit)).andThen(
+            new WaitCommand(pause)).andThen(
+            routine.dynamic(SysIdRoutine.Direction.kForward).until(forwardLimit)).andThen(
+            new WaitCommand(pause)).andThen(
+            routine.dynamic(SysIdRoutine.Direction.kReverse).until(reverseLimit));
+    }
+}
@@ -0,0 +1,58 @@
+package frc.lib.util;
+
+import java.util.ArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Makes one of the gain arrays in Constants.PID or Constants.SVA tunable. Each element gets its own
+ * TunableNumber. The tuned values live in this object, starting from a copy of the constants, which
+ * are never written. Listeners are handed a copy of the whole set so they can push it to whatever
+ * uses it; anything that needs the tuned gains later should take them from a listener or get().
+ */
+public class TunableGains {
+    private final double[] gains;
+    private final ArrayList<Consumer<double[]>> listeners = new ArrayList<>();
+
+    /**
+     * @param name Group name under /Tuning, e.g. "Elevator PID"
+     * @param defaults The starting gains, e.g. Constants.PID.elevatorPID. Not modified.
+     * @param labels One label per element, e.g. "P", "I", "D", "FF"
+     */
+    public TunableGains(String name, double[] defaults, String... labels) {
+        this.gains = defaults.clone();
+        for (int i = 0; i < labels.length; i++) {
+            final int index = i;
+            new TunableNumber(name + "/" + labels[i], gains[i]).onChange(value -> {
+                gains[index] = value;
+                for (int j = 0; j < listeners.size(); j++) {
+                    listeners.get(j).accept(gains.clone());
+                }
+            });
+        }
+    }
+
+    /* Format {P, I, D, FF}, same as Constants.PID */
+    public static TunableGains pid(String name, double[] gains) {
+        return new TunableGains(name, gains, "P", "I", "D", "FF");
+    }
+
+    /* Format {Ks, Kv, Ka}, same as Constants.SVA */
+    public static TunableGains sva(String name, double[] gains) {
+        return new TunableGains(name, gains, "S", "V", "A");
+    }
+
+    /* Format {Ks, Kv, Ka, Kg}, an arm's SVA plus gravity */
+    public static TunableGains arm(String name, double[] gains) {
+        return new TunableGains(name, gains, "S", "V", "A", "G");
+    }
+
+    public TunableGains onChange(Consumer<double[]> listener) {
+        listeners.add(listener);
+        return this;
+    }
+
+    /* Copy of the current gains */
+    public double[] get() {
+        return gains.clone();
+    }
+}
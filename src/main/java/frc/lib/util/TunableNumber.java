@@ -0,0 +1,102 @@
+package frc.lib.util;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.DoubleConsumer;
+
+import edu.wpi.first.networktables.DoubleEntry;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableEvent;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.wpilibj.Preferences;
+
+/**
+ * A number that can be changed live from the dashboard under /Tuning. The value is cached, so
+ * get() is just a field read. Each number has an NT listener that stashes new values as they arrive;
+ * {@link #updateAll()} only walks the list when a listener has fired since the last loop, and runs
+ * the change callbacks on the robot thread. Nothing is read over JNI in a loop where no value changed.
+ * Anything expensive (pushing gains to a Spark, rebuilding a feedforward) belongs in a callback, not
+ * in the loop.
+ */
+public class TunableNumber {
+    private static final NetworkTableInstance instance = NetworkTableInstance.getDefault();
+    private static final NetworkTable table = instance.getTable("Tuning");
+    private static final ArrayList<TunableNumber> all = new ArrayList<>();
+
+    /* Set by the NT listener thread, cleared by updateAll() */
+    private static final AtomicBoolean changed = new AtomicBoolean();
+
+    private final DoubleEntry entry;
+    private final ArrayList<DoubleConsumer> listeners = new ArrayList<>();
+    private double value;
+    private volatile double received;
+
+    /**
+     * @param key Name under /Tuning
+     * @param defaultValue Value to publish if the dashboard doesn't already have one
+     */
+    public TunableNumber(String key, double defaultValue) {
+        entry = table.getDoubleTopic(key).getEntry(defaultValue);
+        entry.setDefault(defaultValue);
+        value = defaultValue;
+        received = defaultValue;
+        all.add(this);
+        // Immediate picks up a value the server already has, e.g. a persistent one loaded at startup
+        instance.addListener(entry, EnumSet.of(NetworkTableEvent.Kind.kValueAll, NetworkTableEvent.Kind.kImmediate), event -> {
+            if (event.valueData != null && event.valueData.value.isDouble()) {
+                received = event.valueData.value.getDouble();
+                changed.set(true);
+            }
+        });
+    }
+
+    /** Keeps the dashboard value across reboots, like Preferences. The stored value is applied on the first update. */
+    public TunableNumber persistent() {
+        entry.getTopic().setPersistent(true);
+        return this;
+    }
+
+    /**
+     * Moves a value saved under a Preferences key to this number, then removes the old key, so a value
+     * tuned before the number moved to /Tuning isn't lost. Does nothing once the key is gone.
+     */
+    public TunableNumber migrateFrom(String preferencesKey) {
+        if (Preferences.containsKey(preferencesKey)) {
+            entry.set(Preferences.getDouble(preferencesKey, value));
+            Preferences.remove(preferencesKey);
+        }
+        return this;
+    }
+
+    /** Calls the listener with the new value whenever it changes. */
+    public TunableNumber onChange(DoubleConsumer listener) {
+        listeners.add(listener);
+        return this;
+    }
+
+    public double get() {
+        return value;
+    }
+
+    private void update() {
+        double latest = received;
+        if (latest == value) {
+            return;
+        }
+        value = latest;
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).accept(latest);
+        }
+    }
+
+    /** Applies values that changed since the last call. Call once per loop from robotPeriodic. */
+    public static void updateAll() {
+        if (!changed.getAndSet(false)) {
+            return;
+        }
+        for (int i = 0; i < all.size(); i++) {
+            all.get(i).update();
+        }
+    }
+}
@@ -5,6 +5,7 @@ import com.pathplanner.lib.util.PIDConstants;
 import com.pathplanner.lib.util.ReplanningConfig;
 import com.revrobotics.CANSparkBase.IdleMode;
 import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.system.plant.DCMotor;
 import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
 import edu.wpi.first.math.util.Units;
 import frc.lib.util.CANSparkMaxUtil.Usage;
@@ -33,6 +34,9 @@ public final class Constants {
         /* Pivot */
         public static final int pivotMotor = 19;
 
+        /* Lightbreak in front of the flywheels, DIO channel. Reads false when a note is there. */
+        public static final int lightbreakSensor = 0;
+
         /* Elevator */
         public static final int elevatorMotor = 20;
 
@@ -77,6 +81,15 @@ public final class Constants {
         /* Speed Settings */
         public static final double maxSpeed = 5.00; // meters per second
         public static final double maxAngularVelocity = 7; // radians per second (was 4.25, changed because turn speed suddenly dropped)
+        public static final double maxAngularAcceleration = 20; // radians per second squared, used by the heading controller profile
+
+        /* Setpoint Limits */
+        public static final double robotMass = 56.0; // kg, with bumpers and battery. Provisional estimate until the robot is weighed
+        public static final double maxModuleSteerRate = 1080; // degrees per second, a bit under the angle motor's free speed through 150:7
+        // Acceleration the drive motors can produce at their current limit (NEO torque/amp through the gearing, shared over 4 modules)
+        public static final double currentLimitedAcceleration =
+            4 * Electical.driveCurrentLim * DCMotor.getNEO(1).KtNMPerAmp * Swerve.driveGearRatio / (wheelDiameter / 2) / robotMass;
+        public static final double maxAcceleration = Math.min(8.0, currentLimitedAcceleration); // m/s/s, 8 is about where the wheels start slipping
 
         /* Mk4i Module Gear Ratios */
         public static final double driveGearRatio = (6.75 / 1.0); // 6.75:1
@@ -100,6 +113,10 @@ public final class Constants {
             modulePositions[3]
         );
 
+        /* Odometry slip detection, module disagreement with the other modules in m/s */
+        public static final double slipThreshold = 0.15;     // down-weighted above this
+        public static final double slipDropThreshold = 0.4;  // left out of the sample above this
+
         // TODO - Keep a close look to this values
         // Values moved down below with other PID values to keep everything together
         public static final HolonomicPathFollowerConfig pathFollowerConfig = new HolonomicPathFollowerConfig(
@@ -125,6 +142,62 @@ public final class Constants {
         public static final double minVoltage = 1;
         public static final double maxVoltage = 12;
 
+        /* Readiness, measured on the encoders. ShooterWheelsSVA is still a placeholder, so it isn't used for this */
+        public static final double readyMinimumSpeed = 10;      // wheel rps, below this the wheels haven't really spun up
+        public static final double readyAcceleration = 5;       // wheel rps per second, both under this counts as settled
+        public static final int readyWindowLoops = 5;           // loops the acceleration is measured across, to ride over encoder noise
+        public static final double readySettleTime = 0.06;      // seconds both wheels have to stay settled
+        public static final double readyRetargetVolts = 0.25;   // a goal change bigger than this starts the settling over
+
+        /* Shoot While Moving */
+        public static final double speakershotDistance = 1.3;   // meters from the speaker opening where speakershotVoltage is tuned
+        public static final double voltsPerMeter = 0.4;         // extra flywheel voltage per meter past that, up to longshotVoltage
+        public static final double exitSpeedPerVolt = 1.6;      // note exit speed (m/s) per flywheel volt, TODO: measure with slow-mo video
+        public static final double exitHeight = 0.55;           // meters, note leaving the shooter
+        public static final double shotHeadingOffset = 0.0;     // radians from robot forward to the direction the note leaves
+        public static final int solverMaxIterations = 5;
+        public static final double solverTolerance = 0.01;      // meters of virtual target movement to stop iterating
+
+    }
+
+    public static final class Field {
+        /* Center of the speaker opening, blue origin */
+        public static final double blueSpeakerX = 0.0;
+        public static final double redSpeakerX = 16.541;
+        public static final double speakerY = 5.548;
+        public static final double speakerHeight = 2.045;
+        public static final int blueSpeakerTag = 7;     // center tag under each speaker
+        public static final int redSpeakerTag = 4;
+
+    }
+
+    public static final class NoteVision {
+
+        /* NoteVision camera mount, robot frame (x forward, y left). TODO - measure on the robot */
+        public static final double cameraHeight = 0.60;     // meters, lens above the carpet
+        public static final double cameraPitch = -25.0;     // degrees, negative is tilted down
+        public static final double cameraForward = 0.30;    // meters from robot center
+        public static final double cameraLeft = 0.0;
+        public static final double cameraYaw = 0.0;         // degrees, 0 looks over the intake
+        public static final double noteHeight = 0.025;      // meters, center of a note lying flat
+        public static final double maxRange = 4.0;          // meters, detections further than this are too noisy to use
+
+        /* Note Tracker (Kalman filter per axis, field frame) */
+        public static final int maxTracks = 4;
+        public static final double measurementNoise = 0.05;  // meters standard deviation at 1 m, grows with range squared
+        public static final double processNoise = 0.5;       // m/s^2, how hard a note can get bumped
+        public static final double gateDistance = 0.5;       // meters a detection can be from a track and still update it
+        public static final int confirmHits = 3;             // detections before a track is trusted
+        public static final double trackTimeout = 0.5;       // seconds without a detection before a track is dropped
+        public static final double switchMargin = 0.3;       // meters better another note has to be before we change targets
+        public static final double bearingWeight = 1.0;      // meters of cost per radian off the intake, favours notes we're facing
+
+        /* Vacuum Drive */
+        public static final double vacuumSpeed = 2.5;        // m/s
+        public static final double vacuumKP = 2.0;           // m/s per meter to the note, slows down on approach
+        public static final double vacuumHeadingKP = 4.0;    // rad/s per radian off the note
+        public static final double lostTimeout = 0.75;       // seconds without a track before vacuum gives up
+
     }
 
     public static final class Feeder {
@@ -138,8 +211,14 @@ public final class Constants {
         public static final double feederCircumferenceMeter = feederCircumferenceInch * 0.0254;
 
         /* Min/Max Speeds */
-        public static final double feederPower = 1.5;
-        public static final double maxVoltage = 2;
+        public static final double feederPower = 4.0;    // IndexNote sets where the note stops, so this can be fast
+        public static final double standbyPower = 1.5;   // while intaking, until the intake feels the note
+        public static final double maxVoltage = 6;
+
+        /* Note Indexing (position control after the lightbreak trips) */
+        public static final double indexDistance = 0.04;    // meters of note travel past the lightbreak edge. TODO - tune so the note clears the flywheels
+        public static final double indexTolerance = 0.003;  // meters
+        public static final double indexTimeout = 0.5;      // seconds, gives up if the note jams
 
     }
     
@@ -157,6 +236,15 @@ public final class Constants {
         public static final double intakeSpeed = 5;
         public static final double maxVoltage = 5;
 
+        /* Note Contact Detection (roller current spike plus speed dip) */
+        public static final double contactSamplePeriod = 0.005;         // 200 Hz, the Sparks send current/velocity this fast too
+        public static final double contactSpikeAmps = 8.0;              // combined top + bottom. TODO - check against logs
+        public static final double contactVelocityDip = 0.15;           // fraction of the free speed
+        public static final double contactBaselineTimeConstant = 0.25;
+        public static final double contactSettleTime = 0.3;             // ignore spin-up
+        public static final int contactConfirmSamples = 3;
+        public static final double lightbreakFallbackTimeout = 0.4;     // contact with no lightbreak this long counts as a note
+
     }
 
     public static final class Pivot {
@@ -181,6 +269,13 @@ public final class Constants {
 
         public static final double angleTolerance = 0.5;  // tolerance (in degrees) for commands that set the pivot to an angle
 
+        /* Encoder degrees with the arm level. Launch elevation is the pivot angle minus this; the shot solver,
+         * the limelight aim and SysId's arm model (which needs 0 there for Kg) all use it. */
+        public static final double horizontalAngle = 112.0;
+
+        /* SysId */
+        public static final double sysIdMargin = 10.0;        // degrees short of min/max where SysId tests stop
+
     }
 
       public static final class Elevator {
@@ -195,6 +290,13 @@ public final class Constants {
         public static final double stowedPosition = 0;
         public static final double deployedPosition = 90;
 
+        /* Onboard Smart Motion (motor rotations, RPM) */
+        public static final double smartMotionMaxVelocity = 4000;   // RPM
+        public static final double smartMotionMaxAcceleration = 8000; // RPM per second
+        public static final double smartMotionAllowedError = 0.5;   // rotations the Spark stops correcting within
+        public static final double positionTolerance = 1.0;         // rotations, for atGoal()
+        public static final double sysIdMargin = 10;                // rotations short of each end where SysId tests stop
+
     }
 
     public static final class AutoConstants {
@@ -202,14 +304,80 @@ public final class Constants {
         public static final double kPXController = 1;
         public static final double kPYController = 1;
         public static final double kPThetaController = 1;
+
+        /* Readiness gates for the auto named commands, these replaced fixed waits */
+        public static final double pivotReadyTolerance = 1.5;   // degrees
+        public static final double readyTimeout = 1.0;          // shoot anyway after this long
+        public static final double shotTimeout = 0.75;          // give up waiting for the note to leave
+        public static final double shotClearTime = 0.1;         // after the lightbreak clears, until the note is out of the flywheels
     
     }
 
+    /* Plant models for simulation (the headless auto harness and loop suite). Estimates, not measurements. */
+    public static final class Simulation {
+
+        /* Mechanisms */
+        public static final double flywheelMoi = 0.002;        // kg m^2 per flywheel side, at the wheel shaft
+        public static final double pivotMoi = 0.12;            // kg m^2 about the pivot axle
+        public static final double pivotArmLength = 0.3;       // meters
+        public static final double feederMoi = 0.0002;         // kg m^2 at the motor, roller plus note
+        public static final int sparkLoopSubsteps = 20;        // the Spark's position loop runs at 1 kHz, step the feeder that finely
+
+        /* Notes */
+        public static final double notePickupTime = 0.5;       // seconds of intaking until a note arrives, wherever the robot is
+        public static final double noteApproach = 0.1;         // meters of feeder travel from pickup to the lightbreak
+        public static final double noteLength = 0.3;           // meters of feeder travel the lightbreak sees the note for
+
+    }
+
+    public final static class Loop {
+
+        /* Sensor Acquisition */
+        public static final int sensorThreads = 2;          // roboRIO is dual core, more threads just fight the main loop
+        public static final double sensorTimeout = 0.010;   // seconds to wait for sensor reads before using last cycle's inputs
+
+        /* JIT Warmup (disabled only) */
+        public static final int warmupIterations = 20000;   // comfortably past HotSpot's C2 compile thresholds
+        public static final double warmupSlice = 0.004;     // seconds of warmup work per disabled loop
+        public static final String warmupPath = "Go to Middle";
+
+        /* Boot Tracer */
+        public static final double bootPhaseBudget = 0.5;       // seconds, any constructor/init phase slower than this gets flagged
+        public static final double robotContainerBudget = 5.0;  // seconds for all of RobotContainer
+        public static final double swerveBootBudget = 2.0;      // seconds, four modules' CAN config plus the navX calibration wait
+
+        /* Memory Monitor */
+        public static final int memoryPoolDecimation = 50;  // log heap pool usage once a second
+
+        /* Match Logger */
+        public static final int matchLogCapacity = 1 << 16;  // longs, 512 KB hard cap, about 10 s of telemetry if the disk stalls
+        public static final double matchLogFlushPeriod = 0.05;
+
+        /* Loop Governor, sheds telemetry before control can overrun */
+        public static final double governorDegradeFraction = 0.8;   // of the 20 ms budget
+        public static final double governorRestoreFraction = 0.6;
+        public static final double governorSmoothing = 0.1;         // about 10 loops of memory
+        public static final int governorHoldLoops = 10;
+        public static final int governorMaxDecimation = 8;          // every 8th loop, then off
+        public static final int loggingPriority = 1;                // decimated last, never shed
+        public static final int dashboardPriority = 2;
+        public static final int fieldDrawingPriority = 3;           // shed first
+
+        /* CAN bus utilization, for the offline log analyzer */
+        public static final int canStatusDecimation = 10;
+
+    }
+
     public final static class Electical {
 
         /* Base 12 Volt System */
         public static final double voltageComp = 12.0;
 
+        /* Battery Monitor */
+        public static final double batterySamplePeriod = 0.005;       // 200 Hz, faster than the loop so sag shows up before the next cycle
+        public static final double batteryFilterTimeConstant = 0.02;  // seconds, rides through single sample CAN noise
+        public static final double controllerVoltageDrop = 0.3;       // volts lost between the battery and the motor leads
+
         /* Swerve Electrical Limits */
         public static final int driveCurrentLim = 40;
         public static final int angleCurrentLim = 20;
@@ -228,6 +396,35 @@ public final class Constants {
 
         /* Elevator Electrical Limits */
         public static final int elevatorCurrentLim = 40;
+
+        /* Power Manager, the limits above are each group's maximum */
+        public static final double totalCurrentBudget = 300;    // amps across all managed motors on a healthy battery
+        public static final double sagStartVoltage = 9.0;       // start shrinking the budget below this
+        public static final double brownoutVoltage = 7.0;       // roboRIO brownout is 6.8 V, budget is at its minimum here
+        public static final double minimumBudgetScale = 0.4;
+        public static final double demandMargin = 1.25;         // groups ask for this times their draw...
+        public static final double demandReserve = 5;           // ...plus this many amps per motor
+        public static final int limitHysteresis = 3;            // amps a limit must move before it is resent
+        public static final double powerUpdateInterval = 0.25;  // seconds between limit changes for one group
+
+        /* Power Manager priorities, lower is served first */
+        public static final int drivePriority = 0;
+        public static final int shooterPriority = 1;
+        public static final int feederPriority = 2;
+        public static final int intakePriority = 3;
+        public static final int elevatorPriority = 4;
+        public static final int pivotPriority = 1;
+        public static final int steeringPriority = 0;
+        public static final int shooterIdlePriority = 5;        // flywheels when we aren't about to shoot
+
+        /* Power Manager minimum limits, a group is never squeezed below these (amps) */
+        public static final int driveMinCurrent = 20;
+        public static final int steeringMinCurrent = 10;
+        public static final int shooterMinCurrent = 15;
+        public static final int feederMinCurrent = 10;
+        public static final int intakeMinCurrent = 10;
+        public static final int elevatorMinCurrent = 10;
+        public static final int pivotMinCurrent = 10;
     }
     
     public final static class PID {
@@ -238,12 +435,16 @@ public final class Constants {
         public static final double[] drivePID = new double[] {0.3, 0.0, 0.0, 0.0};
         public static final double[] anglePID = new double[] {0.01, 0.0, 0.0, 0.0};
 
+        /* Heading lock (radians in, radians per second out) */
+        public static final double[] headingPID = new double[] {5.0, 0.0, 0.1, 0.0};
+
         /* Shooter assembly PIDs */
         public static final double[] shooterWheelsPID = new double[] {0.1, 0.0, 0.0, 0.0};
         public static final double[] intakeRollerPID = new double[] {0.02, 0.0, 0.0, 0.0};
         public static final double[] feederRollerPID = new double[] {0.02, 0.0, 0.0, 0.0};
+        public static final double[] feederPositionPID = new double[] {15.0, 0.0, 0.3, 0.0};   // slot 1, duty cycle per meter of note travel
         public static final double[] pivotPID = new double[] {0.08, 0.0, 0.0, 0.0};
-        public static final double[] elevatorPID = new double[] {0.02, 0.0, 0.0, 0.0};
+        public static final double[] elevatorPID = new double[] {0.02, 0.0, 0.0, 1.0/5676};   // FF is 1/NEO free speed for Smart Motion
 
     }
 
@@ -260,10 +461,11 @@ public final class Constants {
         // flywheels should have a little resistance to being spun up, but should maintain speed easily. We want them to accelerate quickly
         public static final double[] ShooterWheelsSVA = new double[] {0.1, 0.01, 0.2};
         
-        /* Shooter Wheels*/
+        /* Pivot, format: Ks, Kv, Ka, Kg (ArmFeedforward, Kg is volts to hold the arm level) */
         // very low Kv because I feed a large number to it (deg/s)
         // doing Ks manually because of issues getting to final position
-        public static final double[] PivotSVA = new double[] {0.0, 0.015, 0.0};
+        // TODO - Kg from the pivot SysId arm fit (LogAnalyzer)
+        public static final double[] PivotSVA = new double[] {0.0, 0.015, 0.0, 0.0};
     }
 
     public final static class ConversionFactors {
@@ -276,6 +478,10 @@ public final class Constants {
         public static final double angleConversionPositionFactor = 360.0 / Swerve.angleGearRatio;
         public static final double angleConversionVelocityFactor = angleConversionPositionFactor / 60 ; //rpm to rps
 
+        /* Feeder Conversions, meters of note travel */
+        public static final double feederPositionFactor = Feeder.feederCircumferenceMeter / Feeder.feederWheelReduction;
+        public static final double feederVelocityFactor = feederPositionFactor / 60;
+
         /* Shooter Conversions */
         public static final double shooterBaseConversionFactor = 1/Shooter.flywheelReduction;
         public static final double shooterBaseVelocityConversionFactor = shooterBaseConversionFactor/60;
@@ -303,7 +509,7 @@ public final class Constants {
         public static final Usage angleUsage = Usage.kPositionOnly;
 
         /* Shooter Assembly Usages */
-        public static final Usage feeder = Usage.kVelocityOnly;
+        public static final Usage feeder = Usage.kAll;     // indexing needs the position frame
         public static final Usage shooterWheels = Usage.kVelocityOnly;
         public static final Usage intakeRoller = Usage.kVelocityOnly;
         public static final Usage shooterPivot = Usage.kAll;
@@ -0,0 +1,134 @@
+package frc.robot;
+
+import com.pathplanner.lib.controllers.PPHolonomicDriveController;
+import com.pathplanner.lib.path.PathPlannerPath;
+import com.pathplanner.lib.path.PathPlannerTrajectory;
+
+import edu.wpi.first.math.controller.ArmFeedforward;
+import edu.wpi.first.math.controller.ProfiledPIDController;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Transform2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+import edu.wpi.first.math.trajectory.TrapezoidProfile;
+import edu.wpi.first.wpilibj.DataLogManager;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import frc.lib.math.SwerveSetpointGenerator;
+import frc.robot.subsystems.Pivot;
+
+/**
+ * Runs the control code used in the first autonomous loops (the swerve setpoint generator and
+ * kinematics, PathPlanner's holonomic controller and the pivot control law) over representative inputs while the
+ * robot is disabled, so the JIT has compiled them before timing matters. Everything here uses its
+ * own controller instances and never touches a motor.
+ */
+public class ControlWarmup {
+  private final PPHolonomicDriveController pathController;
+  private final SwerveSetpointGenerator setpointGenerator = new SwerveSetpointGenerator(Constants.Swerve.modulePositions);
+  private final double[] moduleSpeeds = new double[4];
+  private final double[] moduleAngles = new double[4];
+  private final SwerveModuleState[] states = new SwerveModuleState[4];
+  private PathPlannerTrajectory trajectory;
+
+  private final ProfiledPIDController pivotPID =
+      new ProfiledPIDController(Constants.PID.pivotPID[0], Constants.PID.pivotPID[1], Constants.PID.pivotPID[2],
+          new TrapezoidProfile.Constraints(Constants.Pivot.maxTurnSpeed, Constants.Pivot.maxAccel));
+  private final ArmFeedforward pivotFeedForward = Pivot.feedForward(Constants.SVA.PivotSVA);
+
+  private int iterations = 0;
+  private boolean done = false;
+
+  /* Keeps the results alive so the JIT can't decide the work is dead */
+  private double sink = 0;
+
+  public ControlWarmup() {
+    pathController = new PPHolonomicDriveController(
+        Constants.Swerve.pathFollowerConfig.translationConstants,
+        Constants.Swerve.pathFollowerConfig.rotationConstants,
+        Constants.Swerve.pathFollowerConfig.period,
+        Constants.Swerve.pathFollowerConfig.maxModuleSpeed,
+        Constants.Swerve.pathFollowerConfig.driveBaseRadius);
+    try {
+      trajectory = PathPlannerPath.fromPathFile(Constants.Loop.warmupPath)
+          .getTrajectory(new ChassisSpeeds(), new Rotation2d());
+    } catch (RuntimeException e) {
+      DriverStation.reportWarning("Warmup path " + Constants.Loop.warmupPath + " could not be loaded, skipping path controller warmup", false);
+    }
+  }
+
+  /**
+   * Runs one time slice of warmup. Call from disabledPeriodic(). Does nothing unless the robot is
+   * disabled, and nothing once warmup is done.
+   */
+  public void run() {
+    if (done || !DriverStation.isDisabled()) {
+      return;
+    }
+
+    long deadline = System.nanoTime() + (long) (Constants.Loop.warmupSlice * 1e9);
+    while (System.nanoTime() < deadline && iterations < Constants.Loop.warmupIterations) {
+      step(iterations);
+      iterations++;
+    }
+
+    if (iterations >= Constants.Loop.warmupIterations) {
+      done = true;
+      DataLogManager.log("Control warmup done after " + iterations + " iterations (" + sink + ")");
+    }
+    SmartDashboard.putNumber("Warmup Progress", (double) iterations / Constants.Loop.warmupIterations);
+    SmartDashboard.putBoolean("Warmup Done", done);
+  }
+
+  public boolean isDone() {
+    return done;
+  }
+
+  private void step(int i) {
+    // Sweep the inputs so every branch (module flips, saturation, both pivot directions) gets taken
+    double phase = i * 0.01;
+    double vx = Constants.Swerve.maxSpeed * Math.sin(phase);
+    double vy = Constants.Swerve.maxSpeed * Math.cos(phase * 0.7);
+    double omega = Constants.Swerve.maxAngularVelocity * Math.sin(phase * 1.3);
+
+    /* Swerve.driveRobotRelative() and drive(): discretize, then the setpoint generator */
+    ChassisSpeeds speeds = ChassisSpeeds.discretize(new ChassisSpeeds(vx, vy, omega), 0.02);
+    for (int m = 0; m < moduleAngles.length; m++) {
+      moduleAngles[m] = (i * 37 + m * 90) % 720 - 360;
+    }
+    if (i % 250 == 0) {
+      setpointGenerator.reset(moduleSpeeds, moduleAngles);
+    }
+    setpointGenerator.generate(speeds.vxMetersPerSecond, speeds.vyMetersPerSecond, speeds.omegaRadiansPerSecond,
+        Constants.Swerve.maxSpeed, Constants.Swerve.maxAcceleration, Constants.Swerve.maxModuleSteerRate,
+        moduleAngles, 0.02);
+
+    /* Swerve.getSpeeds(), which the path follower reads back */
+    for (int m = 0; m < states.length; m++) {
+      states[m] = new SwerveModuleState(setpointGenerator.getSpeed(m), Rotation2d.fromDegrees(setpointGenerator.getAngle(m)));
+    }
+    sink += Constants.Swerve.swerveKinematics.toChassisSpeeds(states).vxMetersPerSecond;
+
+    /* PathPlanner's holonomic controller, as used by AutoBuilder */
+    if (trajectory != null) {
+      double t = (i % 500) / 500.0 * trajectory.getTotalTimeSeconds();
+      PathPlannerTrajectory.State target = trajectory.sample(t);
+      Pose2d pose = target.getTargetHolonomicPose().plus(
+          new Transform2d(0.05 * Math.sin(phase), 0.05 * Math.cos(phase), Rotation2d.fromDegrees(2 * Math.sin(phase))));
+      if (i % 500 == 0) {
+        pathController.reset(pose, new ChassisSpeeds());
+      }
+      sink += pathController.calculateRobotRelativeSpeeds(pose, target).omegaRadiansPerSecond;
+    }
+
+    /* The pivot's control law */
+    double pivotTarget = (i / 250) % 2 == 0 ? Constants.Pivot.intakeAngle : Constants.Pivot.forwardsShotAngle;
+    double angle = Constants.Pivot.minimumAngle
+        + (Constants.Pivot.maximumAngle - Constants.Pivot.minimumAngle) * (0.5 + 0.5 * Math.sin(phase * 0.9));
+    if (i % 250 == 0) {
+      pivotPID.reset(angle);
+    }
+    sink += Pivot.calculateVoltage(pivotPID, pivotFeedForward, angle, pivotTarget);
+  }
+}
@@ -9,46 +9,141 @@ import java.util.HashMap;
 import org.littletonrobotics.urcl.URCL;
 
 import edu.wpi.first.net.PortForwarder;
+import edu.wpi.first.util.datalog.DoubleLogEntry;
+import edu.wpi.first.util.datalog.StringLogEntry;
 import edu.wpi.first.wpilibj.DataLogManager;
+import edu.wpi.first.wpilibj.RobotController;
 import edu.wpi.first.wpilibj.TimedRobot;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import frc.lib.util.BatteryMonitor;
+import frc.lib.util.BootTracer;
+import frc.lib.util.LoopGovernor;
+import frc.lib.util.MatchLogger;
+import frc.lib.util.MemoryMonitor;
+import frc.lib.util.SensorAcquisition;
+import frc.lib.util.TunableNumber;
 
 public class Robot extends TimedRobot {
   private Command m_autonomousCommand;
 
   private RobotContainer m_robotContainer;
 
+  private final SensorAcquisition sensors =
+      new SensorAcquisition(Constants.Loop.sensorThreads, Constants.Loop.sensorTimeout);
+
+  private ControlWarmup warmup;
+
+  private MemoryMonitor memoryMonitor;
+  private final LoopGovernor governor = new LoopGovernor(TimedRobot.kDefaultPeriod,
+      Constants.Loop.governorDegradeFraction, Constants.Loop.governorRestoreFraction,
+      Constants.Loop.governorSmoothing, Constants.Loop.governorHoldLoops, Constants.Loop.governorMaxDecimation);
+  private MatchLogger matchLogger;
+  private StringLogEntry autoSelectedEntry;
+  private DoubleLogEntry loopTimeEntry;
+  private DoubleLogEntry loopOverrunEntry;
+  private DoubleLogEntry canUtilizationEntry;
+  private int loopCount = 0;
+
   @Override
   public void robotInit() {
-    m_robotContainer = new RobotContainer();
+    // Boot phases are traced so we can see what to parallelise or defer. Written out at the end of robotInit.
+    m_robotContainer = BootTracer.trace("RobotContainer", Constants.Loop.robotContainerBudget, RobotContainer::new);
+    BootTracer.trace("Sensor Acquisition", () -> {
+      m_robotContainer.registerSensors(sensors);
+      sensors.start();
+    });
+    warmup = BootTracer.trace("Control Warmup", ControlWarmup::new);
 
     // SysId - Enabling logging. This method is specific to our Rev motors.
     // (Thank you to team 6328 for this logger!)
-    DataLogManager.start();
-    HashMap<Integer,String> aliases = new HashMap<Integer,String>();
-    aliases.put(1, "FL Wheel");
-    aliases.put(3, "FR wheel");
-    aliases.put(5, "RL wheel");
-    aliases.put(7, "RR wheel");
-    URCL.start(aliases);
+    BootTracer.trace("DataLogManager", () -> DataLogManager.start());
+    BootTracer.trace("Match Logger", () -> {
+      matchLogger = new MatchLogger(DataLogManager.getLog(), Constants.Loop.matchLogCapacity, Constants.Loop.matchLogFlushPeriod);
+      m_robotContainer.registerLogs(matchLogger);
+      matchLogger.start();
+      // Marks where each auto starts, AutoGainReport splits the named command timings on it
+      autoSelectedEntry = new StringLogEntry(DataLogManager.getLog(), "/Auto/Selected");
+    });
+    BootTracer.trace("Battery Monitor", () -> BatteryMonitor.start(DataLogManager.getLog()));
+    BootTracer.trace("URCL", () -> {
+      HashMap<Integer,String> aliases = new HashMap<Integer,String>();
+      aliases.put(1, "FL Wheel");
+      aliases.put(3, "FR wheel");
+      aliases.put(5, "RL wheel");
+      aliases.put(7, "RR wheel");
+      URCL.start(aliases);
+    });
+
+    // Loop timing and GC events share the DataLog timeline so stutters can be matched to GC pauses
+    BootTracer.trace("Memory Monitor", () -> {
+      loopTimeEntry = new DoubleLogEntry(DataLogManager.getLog(), "/Robot/LoopTimeMs");
+      loopOverrunEntry = new DoubleLogEntry(DataLogManager.getLog(), "/Robot/LoopOverrunMs");
+      canUtilizationEntry = new DoubleLogEntry(DataLogManager.getLog(), "/Robot/CANUtilization");
+      memoryMonitor = new MemoryMonitor(DataLogManager.getLog(), Thread.currentThread(), Constants.Loop.memoryPoolDecimation);
+    });
+
+    BootTracer.trace("Loop Governor", () -> {
+      m_robotContainer.registerTelemetry(governor);
+      governor.start(DataLogManager.getLog());
+    });
 
     // Limelight port.
-    for (int port = 5800; port <= 5809; port++) {
-      PortForwarder.add(port, "limelight.local", port);
-     }
+    BootTracer.trace("Port Forwarding", () -> {
+      for (int port = 5800; port <= 5809; port++) {
+        PortForwarder.add(port, "limelight.local", port);
+      }
+    });
+
+    BootTracer.finish(DataLogManager.getLog(), DataLogManager.getLogDir());
+  }
+
+  @Override
+  protected void loopFunc() {
+    long start = RobotController.getFPGATime();
+    super.loopFunc();
+    if (loopTimeEntry == null) {
+      return;
+    }
+    double loopMs = (RobotController.getFPGATime() - start) / 1000.0;
+    governor.recordLoop(loopMs / 1000.0);
+    loopTimeEntry.append(loopMs, start);
+    if (loopMs > getPeriod() * 1000.0) {
+      loopOverrunEntry.append(loopMs, start);
+    }
+    // getCANStatus allocates, so only sample it every few loops
+    if (++loopCount % Constants.Loop.canStatusDecimation == 0) {
+      canUtilizationEntry.append(RobotController.getCANStatus().percentBusUtilization * 100.0);
+    }
   }
 
   @Override
   public void robotPeriodic() {
+    // Sense phase: every subsystem's hardware reads in parallel, done before any command looks at them
+    sensors.acquire();
+    sensors.report();
+    TunableNumber.updateAll();
     CommandScheduler.getInstance().run();
+    // Telemetry and logging, decimated or skipped when the loop is running long
+    governor.run();
+    // Not governed: it has to keep a per-loop allocation figure exactly when the loop is in trouble
+    memoryMonitor.periodic();
+  }
+
+  @Override
+  public void simulationPeriodic() {
+    // Plant models, stepped with the outputs the scheduler just set
+    m_robotContainer.simulationPeriodic();
   }
 
   @Override
   public void disabledInit() {}
 
   @Override
-  public void disabledPeriodic() {}
+  public void disabledPeriodic() {
+    // Gets the control paths compiled before auto. ControlWarmup checks isDisabled() itself as well.
+    warmup.run();
+  }
 
   @Override
   public void disabledExit() {}
@@ -58,6 +153,7 @@ public class Robot extends TimedRobot {
     m_autonomousCommand = m_robotContainer.getAutonomousCommand();
     m_robotContainer.autoInit();
     if (m_autonomousCommand != null) {
+      autoSelectedEntry.append(m_autonomousCommand.getName());
       m_autonomousCommand.schedule();
     }
   }
@@ -65,6 +161,11 @@ public class Robot extends TimedRobot {
   @Override
   public void autonomousPeriodic() {}
 
+  /* True while the routine picked in autonomousInit is still running. Used by the auto simulation harness. */
+  public boolean isAutonomousRunning() {
+    return m_autonomousCommand != null && m_autonomousCommand.isScheduled();
+  }
+
   @Override
   public void autonomousExit() {
     CommandScheduler.getInstance().cancelAll();
@@ -7,30 +7,50 @@ package frc.robot;
 import com.pathplanner.lib.auto.AutoBuilder;
 import com.pathplanner.lib.auto.NamedCommands;
 
-import edu.wpi.first.wpilibj.DigitalInput;
-import edu.wpi.first.wpilibj.Preferences;
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.TimedRobot;
 import edu.wpi.first.wpilibj.XboxController;
+import edu.wpi.first.wpilibj.simulation.DIOSim;
 import edu.wpi.first.wpilibj.smartdashboard.SendableChooser;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.CommandScheduler;
 import edu.wpi.first.wpilibj2.command.InstantCommand;
 import edu.wpi.first.wpilibj2.command.WaitCommand;
+import edu.wpi.first.wpilibj2.command.WaitUntilCommand;
 import edu.wpi.first.wpilibj2.command.button.JoystickButton;
+import edu.wpi.first.wpilibj2.command.button.POVButton;
 import edu.wpi.first.wpilibj2.command.button.Trigger;
+import frc.lib.Items.SparkMax.SparkController;
+import frc.lib.util.BootTracer;
+import frc.lib.util.CommandTimer;
+import frc.lib.util.LoopGovernor;
+import frc.lib.util.MatchLogger;
+import frc.lib.util.SensorAcquisition;
+import frc.lib.util.TunableGains;
+import frc.lib.util.TunableNumber;
 import frc.robot.subsystems.Intake;
 import frc.robot.subsystems.ShooterWheels;
 import frc.robot.subsystems.Feeder;
 import frc.robot.subsystems.Pivot;
 import frc.robot.subsystems.Elevator;
 import frc.robot.subsystems.Limelight;
+import frc.robot.subsystems.HeadingController;
+import frc.robot.subsystems.NoteTracker;
+import frc.robot.subsystems.PowerManager;
 import frc.robot.commands.DefaultCommands.IntakeDefault;
 import frc.robot.commands.DefaultCommands.ShooterDefault;
 import frc.robot.commands.DefaultCommands.ElevatorDefault;
 import frc.robot.commands.DefaultCommands.FeederDefault;
 import frc.robot.commands.DefaultCommands.PivotDefault;
 // import frc.robot.commands.Rotate;
+import frc.robot.commands.IndexNote;
 import frc.robot.commands.SetPivotCommand;
+import frc.robot.commands.ShootWhileMoving;
+import frc.robot.commands.VacuumDrive;
 import frc.robot.commands.DefaultCommands.TeleopSwerve;
 import frc.robot.subsystems.Swerve;
 
@@ -54,6 +74,10 @@ public class RobotContainer {
   new JoystickButton(driver, XboxController.Button.kY.value);
   private final JoystickButton autoAimButton = 
   new JoystickButton(driver, XboxController.Button.kA.value);
+  private final JoystickButton shootWhileMovingButton =
+  new JoystickButton(driver, XboxController.Button.kRightBumper.value);
+  private final JoystickButton vacuumButton =
+  new JoystickButton(driver, XboxController.Button.kLeftBumper.value);
   //private final JoystickButton xSwerve = 
   //new JoystickButton(driver, XboxController.Button.kLeftBumper.value);
   private boolean robotCentric = false;
@@ -77,21 +101,29 @@ public class RobotContainer {
 
   private final JoystickButton AimBot = 
   new JoystickButton(operator, XboxController.Button.kB.value);
+  private final POVButton elevatorDeployButton =
+  new POVButton(operator, 0);
+  private final POVButton elevatorStowButton =
+  new POVButton(operator, 180);
 
   /* Subsystems */
-  private DigitalInput lightbreakSensor;
-  private final Swerve swerve = new Swerve();
-  private final Intake intake = new Intake(); 
-  private final ShooterWheels shooter = new ShooterWheels();
-  private final Feeder feeder = new Feeder();
-  private final Pivot pivot = new Pivot();
-  private final Elevator elevator = new Elevator();
-  private final Limelight speakerLimelight = new Limelight("limelight");
-  private final Limelight noteLimelight = new Limelight("NoteVision");
+  private final Swerve swerve = BootTracer.trace("Swerve", Constants.Loop.swerveBootBudget, Swerve::new);
+  private final Intake intake = BootTracer.trace("Intake", Intake::new); 
+  private final ShooterWheels shooter = BootTracer.trace("ShooterWheels", ShooterWheels::new);
+  private final Feeder feeder = BootTracer.trace("Feeder", Feeder::new);
+  private final Pivot pivot = BootTracer.trace("Pivot", Pivot::new);
+  private final Elevator elevator = BootTracer.trace("Elevator", Elevator::new);
+  private final Limelight speakerLimelight = BootTracer.trace("Speaker Limelight",
+      () -> new Limelight("limelight").preferFiducials(Constants.Field.blueSpeakerTag, Constants.Field.redSpeakerTag));
+  private final Limelight noteLimelight = BootTracer.trace("Note Limelight", () -> new Limelight("NoteVision"));
+  private final HeadingController headingController = new HeadingController(swerve);
+  private final NoteTracker noteTracker = new NoteTracker(noteLimelight, swerve);
+  private final PowerManager powerManager = new PowerManager();
 
 
   /* Robot Variables */
   private final SendableChooser<Command> autoChooser;
+  private final SendableChooser<Command> sysIdChooser = new SendableChooser<>();
 
   public enum ShooterState{
     Off,
@@ -101,50 +133,72 @@ public class RobotContainer {
   }
   public ShooterState state;
   public double shooterVoltage;
+  private final ShootWhileMoving shootWhileMoving =
+      new ShootWhileMoving(swerve, pivot, headingController, voltage -> shooterVoltage = voltage);
+
+  /* Match logging, ids from registerLogs() and preallocated buffers */
+  private MatchLogger matchLogger;
+  private int measuredStatesLog;
+  private int desiredStatesLog;
+  private int pivotLog;
+  private int shooterVoltageLog;
+  private int shooterStateLog;
+  private final double[] measuredStates = new double[8];
+  private final double[] desiredStates = new double[8];
+  private final double[] pivotValues = new double[3];
+
+  /* Values that can be set in Smart Dashboard under /Tuning */
+  // Speed for the elevator part. The speed is also limited by Constants.Elevator.maxVoltage
+  // Used to be a Preferences value, a saved one is carried over the first time
+  private final TunableNumber elevatorStrength = new TunableNumber("ElevatorStrength", 5.0).persistent().migrateFrom("ElevatorStrength");
 
   public RobotContainer() {
     // Initialize Autonomous Commands
-    NamedCommands.registerCommand("AutoIntake", new InstantCommand(() -> changeShooterState(ShooterState.Intake))
-     .andThen(new SetPivotCommand(pivot, Constants.Pivot.intakeAngle, () -> operator.getRawAxis(translationAxis))));
+    try (var span = BootTracer.begin("NamedCommands")) {
+      registerNamedCommand("AutoIntake", new InstantCommand(() -> changeShooterState(ShooterState.Intake))
+       .andThen(new SetPivotCommand(pivot, Constants.Pivot.intakeAngle, () -> operator.getRawAxis(translationAxis))));
 
-    NamedCommands.registerCommand("AutoReadyToShoot", new InstantCommand(() -> changeShooterState(ShooterState.ReadyToShoot))
-     .andThen(new SetPivotCommand(pivot, Constants.Pivot.backwardsShotAngle, () -> operator.getRawAxis(translationAxis))));
+      // PrepareShot is for path event markers: spin up and aim while driving. The Auto* shooting commands
+      // only finish once the mechanism is actually there, so the autos don't need fixed waits
+      registerNamedCommand("PrepareShot", prepareShot());
+      registerNamedCommand("AutoReadyToShoot", readyToShoot());
+      registerNamedCommand("AutoShoot", shootNote());
+      registerNamedCommand("AutoShooterStop", new InstantCommand(() -> changeShooterState(ShooterState.Off)));
 
-    NamedCommands.registerCommand("AutoShoot", new InstantCommand(() -> changeShooterState(ShooterState.Shoot)));
-    NamedCommands.registerCommand("AutoShooterStop", new InstantCommand(() -> changeShooterState(ShooterState.Off)));
+      registerNamedCommand("AutoAimbot", new InstantCommand(() -> aimBot()));
+      registerNamedCommand("AutoVacuum", vacuum());
 
-    NamedCommands.registerCommand("AutoAimbot", new InstantCommand(() -> aimBot()));
+      //Enable when is needed Aim long distance shoot
 
-    //Enable when is needed Aim long distance shoot
-
-    //NamedCommands.registerCommand("AimLongDistance", new InstantCommand(()-> shooterVoltage = Constants.Shooter.longshotVoltage).andThen(
-    //new SetPivotCommand(pivot,Constants.Pivot.speakerShotAngle + 10,()-> 0)));
+      //NamedCommands.registerCommand("AimLongDistance", new InstantCommand(()-> shooterVoltage = Constants.Shooter.longshotVoltage).andThen(
+      //new SetPivotCommand(pivot,Constants.Pivot.speakerShotAngle + 10,()-> 0)));
+    }
 
     shooterVoltage = Constants.Shooter.speakershotVoltage;
 
-    /* Preferences that can be set in Smart Dashboard */
-    
-    if (!Preferences.containsKey("ElevatorStrength")) {
-      Preferences.setDouble("ElevatorStrength", 5.0);  // Speed for the elevator part. The speed is also limited by Constants.Elevator.maxVoltage
-    }
-    if (!Preferences.containsKey("AutoAimStrength")) {
-      Preferences.setDouble("AutoAimStrength", 1.0);  // Speed for the elevator part. The speed is also limited by Constants.Elevator.maxVoltage
-    }
+    BootTracer.trace("Tuning", this::configureTuning);
+    configurePower();
 
-    // Channel and set up for Lightbreak Sensor
-    lightbreakSensor = new DigitalInput(0);
-    Trigger haveNote = new Trigger(lightbreakSensor::get).negate();
+    // The lightbreak is read by the feeder, with its encoder
+    Trigger haveNote = new Trigger(feeder::hasNote);
 
-    haveNote.onTrue(new InstantCommand(() -> {
-      changeShooterState(ShooterState.Off);
-      SmartDashboard.putBoolean("lightbreak", lightbreakSensor.get());
-    }));
+    // Stop intaking on the edge, then index the note so it always sits at the same spot
+    haveNote.onTrue(new InstantCommand(() -> changeShooterState(ShooterState.Off))
+      .andThen(new IndexNote(feeder).withTimeout(Constants.Feeder.indexTimeout)));
 
-    haveNote.onFalse(new WaitCommand(0.6).andThen( new InstantCommand(() -> {
-      changeShooterState(ShooterState.Off, true);
-      SmartDashboard.putBoolean("lightbreak", lightbreakSensor.get());}
-      )).andThen( new SetPivotCommand(pivot, Constants.Pivot.intakeAngle)
-    ));
+    haveNote.onFalse(new WaitCommand(0.6)
+      .andThen(new InstantCommand(() -> changeShooterState(ShooterState.Off, true)))
+      .andThen(new SetPivotCommand(pivot, Constants.Pivot.intakeAngle)));
+
+    // The intake felt a note but the lightbreak never saw it, treat it as ours anyway
+    new Trigger(intake::hasNoteContact).and(haveNote.negate())
+      .debounce(Constants.Intake.lightbreakFallbackTimeout)
+      .onTrue(new InstantCommand(() -> {
+        if (state == ShooterState.Intake) {
+          DriverStation.reportWarning("Intake felt a note but the lightbreak didn't trip, check the lightbreak", false);
+          changeShooterState(ShooterState.Off);
+        }
+      }));
 
     intake.setDefaultCommand(
       new IntakeDefault(
@@ -167,7 +221,8 @@ public class RobotContainer {
       new FeederDefault(
         feeder,
         () -> (state == ShooterState.Intake || state == ShooterState.Shoot),
-        () -> Constants.Feeder.feederPower,
+        // Feeder idles slow while intaking and goes to full speed as soon as the intake feels the note
+        () -> (state == ShooterState.Intake && !intake.hasNoteContact()) ? Constants.Feeder.standbyPower : Constants.Feeder.feederPower,
         () -> reverseIntakeButton.getAsBoolean()
       )
     );
@@ -185,14 +240,27 @@ public class RobotContainer {
       new ElevatorDefault(
         elevator,
         // () -> 0.0
-        () -> -operator.getRawAxis(ElevatorAxis)*Preferences.getDouble("ElevatorStrength", 5.0) // Reversed controller axis to be correct
+        () -> MathUtil.applyDeadband(-operator.getRawAxis(ElevatorAxis), Constants.stickDeadband)*elevatorStrength.get() // Reversed controller axis to be correct
       )
     );
 
-    configureBindings();
+    BootTracer.trace("Bindings", this::configureBindings);
 
-    autoChooser = AutoBuilder.buildAutoChooser(); // Default auto will be `Commands.none()`
+    autoChooser = BootTracer.trace("Auto Chooser", () -> AutoBuilder.buildAutoChooser()); // Default auto will be `Commands.none()`
     SmartDashboard.putData("Auto Mode", autoChooser);
+
+    // SysId - pick the mechanism before enabling test mode
+    sysIdChooser.setDefaultOption("Drive", swerve.getTestCommand());
+    sysIdChooser.addOption("Steering", swerve.getSteeringTestCommand());
+    sysIdChooser.addOption("Flywheels", shooter.getSysIdCommand());
+    sysIdChooser.addOption("Pivot", pivot.getSysIdCommand());
+    sysIdChooser.addOption("Elevator", elevator.getSysIdCommand());
+    SmartDashboard.putData("SysId Routine", sysIdChooser);
+  }
+
+  /* Named commands are timed so auto runs (real or simulated) show where the 15 s goes */
+  private void registerNamedCommand(String name, Command command) {
+    NamedCommands.registerCommand(name, CommandTimer.wrap(name, command));
   }
 
   private void configureBindings() {
@@ -206,6 +274,12 @@ public class RobotContainer {
     resetOdometry.onTrue(new InstantCommand(() -> swerve.resetToAbsolute()));
     //xSwerve.onTrue(new InstantCommand(() -> swerve.xPattern()));
     AimBot.onTrue(new InstantCommand(() -> aimBot()));
+    // Heading lock on the speaker while held, translation stays with the driver
+    autoAimButton.whileTrue(headingController.trackVision(speakerLimelight));
+    // Heading, pivot and flywheels all lead the speaker from odometry while held
+    shootWhileMovingButton.whileTrue(shootWhileMoving);
+    // Drives onto the nearest note with the intake running while held
+    vacuumButton.whileTrue(vacuum());
 
     /* Operator Buttons */
     startIntake.onTrue(new InstantCommand(() -> changeShooterState(ShooterState.Intake)).andThen(
@@ -218,11 +292,130 @@ public class RobotContainer {
       
     stopButton.onTrue(new InstantCommand(() -> changeShooterState(ShooterState.Off)));
 
+    elevatorDeployButton.onTrue(elevator.goToPosition(Constants.Elevator.deployedPosition));
+    elevatorStowButton.onTrue(elevator.goToPosition(Constants.Elevator.stowedPosition));
+
     pivotDefaultButton.onTrue(new SetPivotCommand(pivot, Constants.Pivot.forwardsShotAngle, () -> operator.getRawAxis(translationAxis)));
     // pivotPos1Button.onTrue(new SetPivotCommand(pivot, Constants.Pivot.backwardsShotAngle, () -> operator.getRawAxis(translationAxis)));
     // pivotPos2Button.onTrue(new SetPivotCommand(pivot, Constants.Pivot.forwardsShotAngle, () -> operator.getRawAxis(translationAxis)));
   }
 
+  /* Live gain tuning. Gains are only pushed to the controllers when a value changes. */
+  private void configureTuning() {
+    TunableGains.pid("Drive PID", Constants.PID.drivePID).onChange(gains -> {
+      for (var mod : swerve.getModules()) mod.getDriveMotor().setPID(gains);
+    });
+    TunableGains.pid("Angle PID", Constants.PID.anglePID).onChange(gains -> {
+      for (var mod : swerve.getModules()) mod.getAngleMotor().setPID(gains);
+    });
+    TunableGains.sva("Drive SVA", Constants.SVA.driveMotorsSVA).onChange(sva -> {
+      for (var mod : swerve.getModules()) mod.setDriveFeedforward(sva);
+    });
+    TunableGains.pid("Heading PID", Constants.PID.headingPID).onChange(headingController::setPID);
+
+    TunableGains.pid("Shooter PID", Constants.PID.shooterWheelsPID).onChange(gains -> {
+      for (var motor : shooter.getMotors()) motor.setPID(gains);
+    });
+    TunableGains.sva("Shooter SVA", Constants.SVA.ShooterWheelsSVA).onChange(shooter::setFeedforward);
+    TunableGains.pid("Intake PID", Constants.PID.intakeRollerPID).onChange(gains -> {
+      for (var motor : intake.getMotors()) motor.setPID(gains);
+    });
+    TunableGains.pid("Feeder PID", Constants.PID.feederRollerPID).onChange(gains -> {
+      for (var motor : feeder.getMotors()) motor.setPID(gains);
+    });
+    TunableGains.pid("Elevator PID", Constants.PID.elevatorPID).onChange(gains -> {
+      for (var motor : elevator.getMotors()) motor.setPID(gains);
+    });
+    // Pivot feedback runs on the roboRIO; new feedforward gains take effect on the first goal after clearGoal()
+    TunableGains.pid("Pivot PID", Constants.PID.pivotPID).onChange(gains -> pivot.pivotPID.setPID(gains[0], gains[1], gains[2]));
+    TunableGains.arm("Pivot SVA", Constants.SVA.PivotSVA).onChange(pivot::setFeedforward);
+  }
+
+  /* Current limits are shared between these groups instead of each Spark keeping a fixed one */
+  private void configurePower() {
+    var modules = swerve.getModules();
+    SparkController[] driveMotors = new SparkController[modules.length];
+    SparkController[] angleMotors = new SparkController[modules.length];
+    for (int i = 0; i < modules.length; i++) {
+      driveMotors[i] = modules[i].getDriveMotor();
+      angleMotors[i] = modules[i].getAngleMotor();
+    }
+    powerManager
+      .addGroup("Drive", Constants.Electical.drivePriority, Constants.Electical.driveMinCurrent, Constants.Electical.driveCurrentLim, driveMotors)
+      .addGroup("Steering", Constants.Electical.steeringPriority, Constants.Electical.steeringMinCurrent, Constants.Electical.angleCurrentLim, angleMotors)
+      .addGroup("Shooter", Constants.Electical.shooterIdlePriority, Constants.Electical.shooterMinCurrent, Constants.Electical.shooterWheelCurrentLim, shooter.getMotors())
+      .addGroup("Feeder", Constants.Electical.feederPriority, Constants.Electical.feederMinCurrent, Constants.Electical.feederCurrentLim, feeder.getMotors())
+      .addGroup("Intake", Constants.Electical.intakePriority, Constants.Electical.intakeMinCurrent, Constants.Electical.intakeRollerCurrentLim, intake.getMotors())
+      .addGroup("Elevator", Constants.Electical.elevatorPriority, Constants.Electical.elevatorMinCurrent, Constants.Electical.elevatorCurrentLim, elevator.getMotors())
+      .addGroup("Pivot", Constants.Electical.pivotPriority, Constants.Electical.pivotMinCurrent, Constants.Electical.pivotCurrentLim, pivot.getMotors());
+  }
+
+  /* Structured match telemetry, written through the MatchLogger ring so logging never blocks the loop */
+  public void registerLogs(MatchLogger logger) {
+    matchLogger = logger;
+    MatchLogger.StructDecoder<SwerveModuleState> moduleState =
+      (values, i) -> new SwerveModuleState(values[i], Rotation2d.fromDegrees(values[i + 1]));
+    measuredStatesLog = logger.registerStructArray("/Match/Swerve/MeasuredStates", SwerveModuleState.struct, 4, 2, moduleState);
+    desiredStatesLog = logger.registerStructArray("/Match/Swerve/DesiredStates", SwerveModuleState.struct, 4, 2, moduleState);
+    pivotLog = logger.registerDoubleArray("/Match/Pivot/AngleGoalVoltage", 3);
+    shooterVoltageLog = logger.registerDouble("/Match/Shooter/Voltage");
+    shooterStateLog = logger.registerEnum("/Match/Shooter/State", ShooterState.class);
+  }
+
+  /* Called once per loop after the scheduler, through the loop governor */
+  public void logTelemetry() {
+    if (matchLogger == null) {
+      return;
+    }
+    for (var mod : swerve.getModules()) {
+      measuredStates[2 * mod.moduleNumber] = mod.getInputs().driveVelocityMps();
+      measuredStates[2 * mod.moduleNumber + 1] = mod.getInputs().angleDegrees();
+    }
+    matchLogger.log(measuredStatesLog, measuredStates);
+    swerve.getSetpoint(desiredStates);
+    matchLogger.log(desiredStatesLog, desiredStates);
+
+    pivotValues[0] = pivot.getAngle();
+    pivotValues[1] = pivot.pivotPID.getGoal().position;
+    pivotValues[2] = pivot.lastVoltageAttempt;
+    matchLogger.log(pivotLog, pivotValues);
+    matchLogger.log(shooterVoltageLog, shooterVoltage);
+  }
+
+  /* Dashboard and field drawing go through the governor so they get shed before control overruns */
+  public void registerTelemetry(LoopGovernor governor) {
+    governor.register("Match Log", Constants.Loop.loggingPriority, this::logTelemetry);
+    governor.register("Swerve Dashboard", Constants.Loop.dashboardPriority, swerve::report);
+    governor.register("Speaker Limelight Dashboard", Constants.Loop.dashboardPriority, speakerLimelight::report);
+    governor.register("Note Limelight Dashboard", Constants.Loop.dashboardPriority, noteLimelight::report);
+    governor.register("Intake Dashboard", Constants.Loop.dashboardPriority, intake::report);
+    governor.register("Feeder Dashboard", Constants.Loop.dashboardPriority, feeder::report);
+    governor.register("Shooter Dashboard", Constants.Loop.dashboardPriority, shooter::report);
+    governor.register("Pivot Dashboard", Constants.Loop.dashboardPriority, pivot::report);
+    governor.register("Elevator Dashboard", Constants.Loop.dashboardPriority, elevator::report);
+    governor.register("Aim Dashboard", Constants.Loop.dashboardPriority, headingController::report);
+    governor.register("Moving Shot Dashboard", Constants.Loop.dashboardPriority, shootWhileMoving::report);
+    governor.register("Note Tracker Dashboard", Constants.Loop.dashboardPriority, noteTracker::report);
+    governor.register("Power Dashboard", Constants.Loop.dashboardPriority, powerManager::report);
+    governor.register("Field", Constants.Loop.fieldDrawingPriority, swerve::reportField);
+  }
+
+  /* Hands every subsystem's sensor reads to the acquisition phase that runs before the scheduler */
+  public void registerSensors(SensorAcquisition sensors) {
+    for (var mod : swerve.getModules()) {
+      sensors.register("Swerve Mod " + mod.moduleNumber, mod::readInputs);
+    }
+    sensors.register("Gyro", swerve::readGyroInputs);
+    sensors.register("Shooter", shooter::readInputs);
+    sensors.register("Pivot", pivot::readInputs);
+    sensors.register("Elevator", elevator::readInputs);
+    sensors.register("Intake", intake::readInputs);
+    sensors.register("Feeder", feeder::readInputs);
+    sensors.register("Speaker Limelight", speakerLimelight::readInputs);
+    sensors.register("Note Limelight", noteLimelight::readInputs);
+    sensors.register("Power", powerManager::readInputs);
+  }
+
   public Command getAutonomousCommand() {
     return autoChooser.getSelected();
   }
@@ -230,34 +423,85 @@ public class RobotContainer {
   public void teleopInit(){
     swerve.xPatternFalse();
     swerve.resetToAbsolute();
+    swerve.resetSetpoint();
 
     swerve.setDefaultCommand(
       new TeleopSwerve(
         swerve,
         () -> -driver.getRawAxis(translationAxis),
         () -> -driver.getRawAxis(strafeAxis),
-        () -> (autoAimButton.getAsBoolean() ? -speakerLimelight.getRobotRotationtoSpeaker()*Preferences.getDouble("AutoAimStrength", 1.0)/100.0 : -driver.getRawAxis(rotationAxis)),
-        () -> robotCentric));
+        () -> -driver.getRawAxis(rotationAxis),
+        () -> robotCentric,
+        headingController));
   }
 
   public void teleopExit() {
     swerve.removeDefaultCommand();
   }
 
+  /* Simulation only: a note's travel along the feeder, 0 where it reaches the lightbreak. NaN when there's no note. */
+  private double simNotePosition = Constants.Feeder.indexDistance;   // preloaded and indexed
+  private double simIntakeTime = 0;
+  private double simLastFeederPosition = 0;
+  private DIOSim simLightbreak;
+
+  /**
+   * Steps the plant models after the scheduler has set this loop's outputs. The note is picked up by
+   * time, once the intake has run for notePickupTime, wherever the robot is; it then moves with the
+   * feeder and trips the simulated lightbreak while it's under it.
+   */
+  public void simulationPeriodic() {
+    double dt = TimedRobot.kDefaultPeriod;
+    swerve.simulate(dt);
+    shooter.simulate(dt);
+    pivot.simulate(dt);
+    feeder.simulate(dt);
+
+    if (simLightbreak == null) {
+      simLightbreak = new DIOSim(Constants.Setup.lightbreakSensor);
+    }
+    double feederPosition = feeder.getInputs().position();
+    double travel = feederPosition - simLastFeederPosition;
+    simLastFeederPosition = feederPosition;
+    if (Double.isNaN(simNotePosition)) {
+      simIntakeTime = intake.isRunning() ? simIntakeTime + dt : 0;
+      if (simIntakeTime >= Constants.Simulation.notePickupTime) {
+        simNotePosition = -Constants.Simulation.noteApproach;
+        simIntakeTime = 0;
+      }
+    } else {
+      simNotePosition += travel;
+      // Out the shooter, or back out the intake
+      if (simNotePosition > Constants.Simulation.noteLength || simNotePosition < -Constants.Simulation.noteApproach) {
+        simNotePosition = Double.NaN;
+      }
+    }
+    // The lightbreak reads low while something blocks it
+    boolean blocked = simNotePosition >= 0 && simNotePosition <= Constants.Simulation.noteLength;
+    simLightbreak.setValue(!blocked);
+  }
+
   public void autoInit(){
     swerve.resetToAbsolute();
+    swerve.resetSetpoint();
   }
 
   public void testInit(){
     swerve.xPatternFalse();
     swerve.resetToAbsolute();
-    CommandScheduler.getInstance().schedule(swerve.getTestCommand());
+    CommandScheduler.getInstance().schedule(sysIdChooser.getSelected());
   }
   
   // Simply changes the state variable. Intake/feeder rollers and shooter wheels all check this variable to determine if they should be active.
   public void changeShooterState(ShooterState changeto) {
     state = changeto;
+    if (matchLogger != null) {
+      matchLogger.log(shooterStateLog, state);
+    }
     SmartDashboard.putString("ShooterState", state.name());
+    // Flywheels only outrank the intake and elevator while we're spun up to shoot
+    powerManager.setPriority("Shooter", (state == ShooterState.ReadyToShoot || state == ShooterState.Shoot)
+      ? Constants.Electical.shooterPriority : Constants.Electical.shooterIdlePriority);
   }
   
   // Change state variable, but only if the state is currently set to Shoot.
@@ -274,16 +518,45 @@ public class RobotContainer {
     if (go) {
       double result = speakerLimelight.getPivotAngletoSpeaker();
       // new Rotate(swerve, limelight).schedule();
-      new SetPivotCommand(pivot, result, () -> operator.getRawAxis(translationAxis)).schedule();
+      // Retargets the pivot in place, so calling this every loop doesn't restart the move
+      pivot.setGoal(result);
     }
   }
 
-  public void vacuum() {
-    boolean go = noteLimelight.isTargets();
-    SmartDashboard.putBoolean("Going Into Hoover Mode", go);
-    if (go) {
-      double result = noteLimelight.getAngleToNote();
-      // new Rotate(swerve, limelight);
-    }
+  /* Flywheels spinning, pivot at whatever angle it was sent to (fixed or aimed) and a note in the feeder */
+  public boolean isShotReady() {
+    return feeder.hasNote()
+      && pivot.atGoal(Constants.AutoConstants.pivotReadyTolerance)
+      && shooter.atGoal();
+  }
+
+  /* Spin up and aim, finishes when the pivot gets there */
+  private Command prepareShot() {
+    return new InstantCommand(() -> {
+      if (state != ShooterState.Shoot) changeShooterState(ShooterState.ReadyToShoot);
+    }).andThen(new SetPivotCommand(pivot, Constants.Pivot.backwardsShotAngle, () -> operator.getRawAxis(translationAxis)));
+  }
+
+  /* prepareShot, then wait until the shot is actually ready */
+  private Command readyToShoot() {
+    return prepareShot()
+      .andThen(new WaitUntilCommand(this::isShotReady))
+      .withTimeout(Constants.AutoConstants.readyTimeout);
+  }
+
+  /* Shoots as soon as it's ready and finishes once the note is out. Skipped if there's no note. */
+  private Command shootNote() {
+    return readyToShoot()
+      .andThen(new InstantCommand(() -> changeShooterState(ShooterState.Shoot)))
+      .andThen(new WaitUntilCommand(() -> !feeder.hasNote()).withTimeout(Constants.AutoConstants.shotTimeout))
+      .andThen(new WaitCommand(Constants.AutoConstants.shotClearTime))
+      .onlyIf(feeder::hasNote);
+  }
+
+  /* Intake on and pivot down, then drive onto the best tracked note until the lightbreak sees it */
+  public Command vacuum() {
+    return new InstantCommand(() -> changeShooterState(ShooterState.Intake)).andThen(
+      new VacuumDrive(swerve, noteTracker, feeder::hasNote)
+        .deadlineWith(new SetPivotCommand(pivot, Constants.Pivot.intakeAngle)));
   }
 }
@@ -26,7 +26,12 @@ public class ElevatorDefault extends Command{
 
     @Override
     public void execute(){
-        s_Elevator.setVoltage(speedSup.getAsDouble());
+        double speed = speedSup.getAsDouble();
+        // Leave a position target alone until the driver actually moves the stick
+        if (s_Elevator.isHoldingGoal() && speed == 0) {
+            return;
+        }
+        s_Elevator.setVoltage(speed);
     }
 
     @Override
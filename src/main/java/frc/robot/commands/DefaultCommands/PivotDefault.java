@@ -2,6 +2,7 @@ package frc.robot.commands.DefaultCommands;
 
 import java.util.function.DoubleSupplier;
 
+import edu.wpi.first.math.MathUtil;
 import edu.wpi.first.wpilibj2.command.Command;
 import frc.robot.Constants;
 import frc.robot.subsystems.Pivot;
@@ -27,10 +28,16 @@ public class PivotDefault extends Command{
 
     @Override
     public void execute(){
-        double input = inputSup.getAsDouble();
-        if (s_Pivot.PivotEncoder.getAbsolutePosition() * 360 >= Constants.Pivot.maximumAngle)     // if we're at or past maximum, only allow moving back
+        // A resting stick never reads exactly 0, so without the deadband every loop would drop the goal
+        double input = MathUtil.applyDeadband(inputSup.getAsDouble(), Constants.stickDeadband);
+        // Leave a goal alone until the operator actually moves the stick
+        if (s_Pivot.isTrackingAngle && input == 0) {
+            return;
+        }
+        s_Pivot.clearGoal();
+        if (s_Pivot.getAngle() >= Constants.Pivot.maximumAngle)     // if we're at or past maximum, only allow moving back
             input = Math.min(input, 0);
-        if (s_Pivot.PivotEncoder.getAbsolutePosition() * 360 <= Constants.Pivot.minimumAngle)     // if we're at or past minimum, only allow moving forawrd
+        if (s_Pivot.getAngle() <= Constants.Pivot.minimumAngle)     // if we're at or past minimum, only allow moving forawrd
             input = Math.max(input, 0);
         s_Pivot.lastVoltageAttempt = input;
         s_Pivot.PivotMotor.spark.setVoltage(input * Constants.Pivot.maxVoltage/2);
@@ -30,11 +30,7 @@ public class ShooterDefault extends Command{
 
     @Override
     public void execute(){
-        if(activeSup.getAsBoolean() == true){
-            s_Shooter.setVoltage(speedSup.getAsDouble());
-        } else {
-            s_Shooter.setDutyCycle(0);
-        }
+        s_Shooter.setGoal(activeSup.getAsBoolean() ? speedSup.getAsDouble() : 0);
     }
 
     @Override
@@ -6,6 +6,7 @@ import edu.wpi.first.math.geometry.Translation2d;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.Command;
 import frc.robot.Constants;
+import frc.robot.subsystems.HeadingController;
 import frc.robot.subsystems.Swerve;
 import java.util.function.BooleanSupplier;
 import java.util.function.DoubleSupplier;
@@ -16,6 +17,7 @@ public class TeleopSwerve extends Command {
   private DoubleSupplier strafeSup;
   private DoubleSupplier rotationSup;
   private BooleanSupplier robotCentricSup;
+  private HeadingController headingController;
 
   private SlewRateLimiter translationLimiter = new SlewRateLimiter(2.0);
   private SlewRateLimiter strafeLimiter = new SlewRateLimiter(2.0);
@@ -27,6 +29,20 @@ public class TeleopSwerve extends Command {
       DoubleSupplier strafeSup,
       DoubleSupplier rotationSup,
       BooleanSupplier robotCentricSup) {
+    this(s_Swerve, translationSup, strafeSup, rotationSup, robotCentricSup, null);
+  }
+
+  /**
+   * @param headingController While this is active it supplies the rotation rate (e.g. auto-aim) and the
+   *     rotation stick is ignored. Translation stays with the driver. May be null.
+   */
+  public TeleopSwerve(
+      Swerve s_Swerve,
+      DoubleSupplier translationSup,
+      DoubleSupplier strafeSup,
+      DoubleSupplier rotationSup,
+      BooleanSupplier robotCentricSup,
+      HeadingController headingController) {
     this.s_Swerve = s_Swerve;
     addRequirements(s_Swerve);
 
@@ -34,6 +50,7 @@ public class TeleopSwerve extends Command {
     this.strafeSup = strafeSup;
     this.rotationSup = rotationSup;
     this.robotCentricSup = robotCentricSup;
+    this.headingController = headingController;
   }
 
   @Override
@@ -57,11 +74,18 @@ public class TeleopSwerve extends Command {
     translationVal = translationLimiter.calculate(translationVal);
     strafeVal = strafeLimiter.calculate(strafeVal);
     rotationVal = rotationLimiter.calculate(rotationVal);
+    double rotation = rotationVal * Constants.Swerve.maxAngularVelocity;
+
+    // Heading lock replaces the stick (no cubing or slew, the profile already shapes it)
+    if (headingController != null && headingController.isActive()) {
+      rotation = headingController.calculate();
+      rotationLimiter.reset(rotation / Constants.Swerve.maxAngularVelocity);
+    }
 
     /* Drive */
     s_Swerve.drive(
       new Translation2d(translationVal, strafeVal).times(Constants.Swerve.maxSpeed),
-      rotationVal * Constants.Swerve.maxAngularVelocity,
+      rotation,
       !robotCentricSup.getAsBoolean(),
       false
     );
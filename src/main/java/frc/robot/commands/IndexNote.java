@@ -0,0 +1,32 @@
+package frc.robot.commands;
+
+import edu.wpi.first.wpilibj2.command.Command;
+import frc.robot.subsystems.Feeder;
+
+/**
+ * Moves a note that just tripped the lightbreak a fixed distance further in on the feeder's position
+ * loop, so it sits at the same spot before every shot no matter how fast it came in.
+ */
+public class IndexNote extends Command {
+    private Feeder s_Feeder;
+
+    public IndexNote(Feeder s_Feeder) {
+        this.s_Feeder = s_Feeder;
+        addRequirements(s_Feeder);
+    }
+
+    @Override
+    public void initialize() {
+        s_Feeder.index();
+    }
+
+    @Override
+    public void end(boolean interrupted) {
+        s_Feeder.setDutyCylce(0);
+    }
+
+    @Override
+    public boolean isFinished() {
+        return s_Feeder.isIndexed();
+    }
+}
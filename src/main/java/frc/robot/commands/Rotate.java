@@ -1,36 +1,37 @@
 package frc.robot.commands;
 
 import edu.wpi.first.math.geometry.Translation2d;
-import edu.wpi.first.math.trajectory.TrapezoidProfile;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.Command;
-import frc.robot.Constants;
+import frc.robot.subsystems.HeadingController;
 import frc.robot.subsystems.Limelight;
 import frc.robot.subsystems.Swerve;
 
+/* Turns in place onto the limelight's target, using the heading controller. Finishes once aligned. */
 public class Rotate extends Command {
   private Swerve s_Swerve;
-  private TrapezoidProfile angleProfile;
-  private double angleVelocity = 0.0;
   private Limelight limelight;
+  private HeadingController headingController;
 
   public Rotate(
       Swerve s_Swerve,
-      Limelight limelight) {
+      Limelight limelight,
+      HeadingController headingController) {
     this.s_Swerve = s_Swerve;
-    addRequirements(s_Swerve);
+    this.limelight = limelight;
+    this.headingController = headingController;
+    addRequirements(s_Swerve, headingController);
   }
 
   @Override
   public void initialize() {
-    angleProfile = new TrapezoidProfile(new TrapezoidProfile.Constraints(0.25, 0.5)); // TODO - Figure this out (DONT RUN THE ROBOT)
+    headingController.start();
   }
 
   @Override
   public void execute() {
-    TrapezoidProfile.State angle = angleProfile.calculate(0.02, new TrapezoidProfile.State(0.0, angleVelocity), new TrapezoidProfile.State(limelight.getRobotRotationtoSpeaker(), 0.0));
-
-    angleVelocity = angle.velocity;
+    headingController.setTargetFromVision(limelight);
+    double angleVelocity = headingController.calculate();
 
     SmartDashboard.putNumber("AutoRotate Velocity", angleVelocity);
 
@@ -44,6 +45,7 @@ public class Rotate extends Command {
   
   @Override
   public void end(boolean interrupted) {
+    headingController.stop();
     s_Swerve.drive(
       new Translation2d(0, 0),
       0,
@@ -54,6 +56,6 @@ public class Rotate extends Command {
 
   @Override
   public boolean isFinished() {
-    return Math.abs(limelight.getRobotRotationtoSpeaker()) <= Constants.Swerve.autoAimTolerance;
+    return headingController.atTarget();
   }
-}
\ No newline at end of file
+}
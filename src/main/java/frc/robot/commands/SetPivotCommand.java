@@ -6,18 +6,13 @@ package frc.robot.commands;
 
 import java.util.function.DoubleSupplier;
 
-import edu.wpi.first.math.MathUtil;
-import edu.wpi.first.math.controller.SimpleMotorFeedforward;
-import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.Command;
-import frc.robot.Constants;
 import frc.robot.subsystems.Pivot;
 
 public class SetPivotCommand extends Command{
     private Pivot s_Pivot;
     private Double targetAngle;
     private DoubleSupplier JoystickInput;
-    private SimpleMotorFeedforward feedForward;
 
     /**
      * A Command to spin the shooter assembly to a specified angle.
@@ -32,8 +27,6 @@ public class SetPivotCommand extends Command{
         
         this.targetAngle = targetAngle;
         this.JoystickInput = JoystickInput; // Strictly for interrupting
-
-        feedForward = new SimpleMotorFeedforward(Constants.SVA.PivotSVA[0],Constants.SVA.PivotSVA[1],Constants.SVA.PivotSVA[2]);
     }
     public SetPivotCommand(Pivot s_Pivot, Double targetAngle) {
         this(s_Pivot, targetAngle, () -> 0.0);
@@ -47,42 +40,19 @@ public class SetPivotCommand extends Command{
 
     @Override
     public void initialize() {
-        s_Pivot.pivotPID.reset(s_Pivot.PivotEncoder.getAbsolutePosition() * 360);
-        s_Pivot.isTrackingAngle = true;
-        // double attemptVoltage = s_Pivot.pivotPID.calculate(s_Pivot.PivotEncoder.getAbsolutePosition() * 360, targetAngle);
-    }
-
-    @Override
-    public void execute() {
-        double attemptVoltage = s_Pivot.pivotPID.calculate(s_Pivot.PivotEncoder.getAbsolutePosition() * 360, targetAngle); // Calculate profiled voltage. Reverse voltage to get correct direction
-        SmartDashboard.putNumber("Pivot velocity attempt", s_Pivot.pivotPID.getSetpoint().velocity);
-        double FFVoltage = feedForward.calculate(s_Pivot.pivotPID.getSetpoint().velocity);
-        SmartDashboard.putNumber("Pivot attempt Voltage", attemptVoltage);
-        SmartDashboard.putNumber("Pivot FF Voltage", FFVoltage);
-        
-        attemptVoltage += FFVoltage + (0.2 * Math.signum(targetAngle - (s_Pivot.PivotEncoder.getAbsolutePosition() * 360)));
-
-        s_Pivot.lastVoltageAttempt = attemptVoltage;
-
-        // This positional clamping *shouldn't* be neccesary, but it's an extra precaution
-        if (s_Pivot.PivotEncoder.getAbsolutePosition() * 360 >= Constants.Pivot.maximumAngle)     // if we're at or past maximum, only allow moving back
-            attemptVoltage = Math.min(attemptVoltage, 0);
-        if (s_Pivot.PivotEncoder.getAbsolutePosition() * 360 <= Constants.Pivot.minimumAngle)     // if we're at or past minimum, only allow moving forawrd
-            attemptVoltage = Math.max(attemptVoltage, 0);
-            
-        s_Pivot.PivotMotor.spark.setVoltage(MathUtil.clamp(attemptVoltage, -Constants.Pivot.maxVoltage, Constants.Pivot.maxVoltage));
+        // Retargets the pivot's goal; if it was already moving the profile carries on from where it is
+        s_Pivot.setGoal(targetAngle);
     }
 
+    /* The pivot keeps holding the goal afterwards, until the joystick moves or something else sets one */
     @Override
     public void end(boolean interrupted) {
-        s_Pivot.isTrackingAngle = false;
-        s_Pivot.PivotMotor.spark.setVoltage(0);
     }
 
     @Override
     public boolean isFinished() {
         return (
-            Math.abs((s_Pivot.PivotEncoder.getAbsolutePosition() * 360) - targetAngle) <= Constants.Pivot.angleTolerance ||
+            s_Pivot.atGoal() ||
             Math.abs(JoystickInput.getAsDouble()) > .1
         );
     }
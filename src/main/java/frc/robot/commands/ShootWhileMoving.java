@@ -0,0 +1,82 @@
+package frc.robot.commands;
+
+import java.util.function.DoubleConsumer;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import edu.wpi.first.wpilibj2.command.Command;
+import frc.lib.math.ShotSolver;
+import frc.robot.Constants;
+import frc.robot.subsystems.HeadingController;
+import frc.robot.subsystems.Pivot;
+import frc.robot.subsystems.Swerve;
+
+/**
+ * Keeps the pivot, flywheels and heading on a moving shot every loop, using ShotSolver with the
+ * odometry pose and the swerve's field relative velocity. The driver keeps translation; the heading
+ * controller takes rotation. Doesn't require the swerve.
+ */
+public class ShootWhileMoving extends Command {
+    private Swerve s_Swerve;
+    private Pivot s_Pivot;
+    private HeadingController headingController;
+    private DoubleConsumer flywheelVoltage;
+
+    private final ShotSolver solver = new ShotSolver();
+
+    /**
+     * @param flywheelVoltage Where to send the flywheel setpoint (the shooter default command reads it)
+     */
+    public ShootWhileMoving(Swerve s_Swerve, Pivot s_Pivot, HeadingController headingController, DoubleConsumer flywheelVoltage) {
+        this.s_Swerve = s_Swerve;
+        this.s_Pivot = s_Pivot;
+        this.headingController = headingController;
+        this.flywheelVoltage = flywheelVoltage;
+        addRequirements(s_Pivot, headingController);
+    }
+
+    @Override
+    public void initialize() {
+        headingController.start();
+    }
+
+    @Override
+    public void execute() {
+        Pose2d pose = s_Swerve.getPose();
+        ChassisSpeeds robotSpeeds = s_Swerve.getSpeeds();
+        double cos = pose.getRotation().getCos();
+        double sin = pose.getRotation().getSin();
+        double fieldVx = robotSpeeds.vxMetersPerSecond * cos - robotSpeeds.vyMetersPerSecond * sin;
+        double fieldVy = robotSpeeds.vxMetersPerSecond * sin + robotSpeeds.vyMetersPerSecond * cos;
+
+        boolean red = DriverStation.getAlliance().orElse(DriverStation.Alliance.Blue) == DriverStation.Alliance.Red;
+        solver.solve(pose.getX(), pose.getY(), fieldVx, fieldVy,
+            red ? Constants.Field.redSpeakerX : Constants.Field.blueSpeakerX, Constants.Field.speakerY);
+
+        // The heading controller works in gyro yaw, which may be offset from the odometry heading
+        double headingError = MathUtil.angleModulus(solver.heading - pose.getRotation().getRadians());
+        headingController.setTargetHeading(s_Swerve.getYawRadians() + headingError, solver.headingRate);
+
+        // The goal moves every loop, the pivot's profile just follows it
+        s_Pivot.setGoal(solver.pivotAngle);
+
+        flywheelVoltage.accept(solver.flywheelVoltage);
+    }
+
+    @Override
+    public void end(boolean interrupted) {
+        headingController.stop();
+        s_Pivot.clearGoal();
+        flywheelVoltage.accept(Constants.Shooter.speakershotVoltage);
+    }
+
+    /* Dashboard values, run by the loop governor. Shows the last solution while the command isn't running. */
+    public void report() {
+        SmartDashboard.putNumber("Moving Shot Distance", solver.distance);
+        SmartDashboard.putNumber("Moving Shot Pivot", solver.pivotAngle);
+        SmartDashboard.putNumber("Moving Shot Iterations", solver.iterations);
+    }
+}
@@ -0,0 +1,73 @@
+package frc.robot.commands;
+
+import java.util.function.BooleanSupplier;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj2.command.Command;
+import frc.robot.Constants;
+import frc.robot.subsystems.NoteTracker;
+import frc.robot.subsystems.Swerve;
+
+/**
+ * Drives onto the best tracked note, robot relative: turns the intake to face it and drives straight
+ * at it, only moving once it's roughly in front and slowing down on approach. Finishes when the note
+ * is in the robot or the tracker has lost it for a while. Turning the intake on is left to the caller.
+ */
+public class VacuumDrive extends Command {
+    private Swerve s_Swerve;
+    private NoteTracker tracker;
+    private BooleanSupplier haveNote;
+    private double lastSeen;
+
+    /**
+     * @param haveNote True once the note is in the robot (the lightbreak)
+     */
+    public VacuumDrive(Swerve s_Swerve, NoteTracker tracker, BooleanSupplier haveNote) {
+        this.s_Swerve = s_Swerve;
+        this.tracker = tracker;
+        this.haveNote = haveNote;
+        addRequirements(s_Swerve);
+    }
+
+    @Override
+    public void initialize() {
+        lastSeen = Timer.getFPGATimestamp();
+    }
+
+    @Override
+    public void execute() {
+        if (!tracker.hasNote()) {
+            s_Swerve.drive(new Translation2d(), 0, false, false);
+            return;
+        }
+        lastSeen = Timer.getFPGATimestamp();
+
+        double x = tracker.getNoteX();
+        double y = tracker.getNoteY();
+        double bearing = Math.atan2(y, x);
+        double range = Math.hypot(x, y);
+
+        double rotation = MathUtil.clamp(Constants.NoteVision.vacuumHeadingKP * bearing,
+            -Constants.Swerve.maxAngularVelocity, Constants.Swerve.maxAngularVelocity);
+        double speed = Math.min(Constants.NoteVision.vacuumSpeed, Constants.NoteVision.vacuumKP * range)
+            * Math.max(0, Math.cos(bearing));
+
+        s_Swerve.drive(new Translation2d(speed * Math.cos(bearing), speed * Math.sin(bearing)), rotation, false, false);
+    }
+
+    @Override
+    public boolean isFinished() {
+        return haveNote.getAsBoolean()
+            || Timer.getFPGATimestamp() - lastSeen > Constants.NoteVision.lostTimeout;
+    }
+
+    @Override
+    public void end(boolean interrupted) {
+        s_Swerve.drive(new Translation2d(), 0, false, false);
+        if (haveNote.getAsBoolean()) {
+            tracker.clear();
+        }
+    }
+}
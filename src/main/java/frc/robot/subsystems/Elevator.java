@@ -4,10 +4,17 @@ import com.revrobotics.CANSparkBase;
 import com.revrobotics.RelativeEncoder;
 import com.revrobotics.SparkPIDController;
 
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.trajectory.TrapezoidProfile;
+import edu.wpi.first.units.Units;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.FunctionalCommand;
+import edu.wpi.first.wpilibj2.command.sysid.SysIdRoutine;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import frc.lib.Items.SparkMax.SparkController;
 import frc.lib.configs.Sparkmax.SparkControllerInfo;
+import frc.lib.util.SysIdTests;
 import frc.robot.Constants;
 
 public class Elevator extends SubsystemBase {
@@ -17,19 +24,52 @@ public class Elevator extends SubsystemBase {
     private RelativeEncoder elevatorEncoder;
 
     private SparkPIDController elevatorPIDController;
+
+    /* Latest sensor readings, published by readInputs() during the acquisition phase */
+    public record Inputs(double position, double velocity) {}
+
+    private volatile Inputs inputs;
+
+    private final SysIdRoutine sysIdRoutine;
+
+    private double goal;
+    private boolean holdingGoal = false;
+
+    /* Same constraints as the Spark's Smart Motion, in rotations and rotations per second */
+    private final TrapezoidProfile timeProfile = new TrapezoidProfile(new TrapezoidProfile.Constraints(
+        Constants.Elevator.smartMotionMaxVelocity / 60, Constants.Elevator.smartMotionMaxAcceleration / 60));
     
     public Elevator() {
 
-        this.elevatorController = new SparkController(Constants.Setup.elevatorMotor, new SparkControllerInfo().elevator());
+        // Soft limits on the Spark keep the elevator inside its travel in every control mode
+        this.elevatorController = new SparkController(Constants.Setup.elevatorMotor, new SparkControllerInfo().elevator(),
+            null, null, Constants.Elevator.deployedPosition, Constants.Elevator.stowedPosition);
         
         this.elevatorEncoder = elevatorController.sparkEncode;
 
         this.elevatorPIDController = elevatorController.sparkControl;
+
+        // SysId - recorded by URCL. setVoltage keeps maxVoltage and the soft limits in force.
+        sysIdRoutine = new SysIdRoutine(
+            new SysIdRoutine.Config(Units.Volts.of(0.5).per(Units.Seconds.of(1)), Units.Volts.of(3.0), Units.Seconds.of(5.0)),
+            new SysIdRoutine.Mechanism(voltage -> setVoltage(voltage.magnitude()), null, this));
+
+        readInputs();
     }
 
-    @Override
-    public void periodic() {
-        SmartDashboard.putNumber("ElevatorMotorEncoder", elevatorEncoder.getPosition());
+    /* Reads the elevator encoder. Runs on a SensorAcquisition worker thread. */
+    public void readInputs() {
+        inputs = new Inputs(elevatorEncoder.getPosition(), elevatorEncoder.getVelocity());
+    }
+
+    public Inputs getInputs() {
+        return inputs;
+    }
+
+    /* Dashboard values, run by the loop governor */
+    public void report() {
+        SmartDashboard.putNumber("ElevatorMotorEncoder", inputs.position());
+        SmartDashboard.putBoolean("Elevator At Goal", atGoal());
     }
 
     public void setVoltage(double voltage) {
@@ -39,16 +79,68 @@ public class Elevator extends SubsystemBase {
             voltage = Constants.Elevator.maxVoltage;
         }
 
-        if(elevatorEncoder.getPosition() <= Constants.Elevator.stowedPosition){
-            voltage = Math.max(0, voltage);
-        } else if (elevatorEncoder.getPosition() >= Constants.Elevator.deployedPosition){
-            voltage = Math.min(0, voltage);
+        holdingGoal = false;
+        elevatorController.setVoltage(voltage);
+    }
+
+    /* All four SysId tests, each stopped short of the ends of travel */
+    public Command getSysIdCommand() {
+        return SysIdTests.all(sysIdRoutine,
+            () -> inputs.position() >= Constants.Elevator.deployedPosition - Constants.Elevator.sysIdMargin,
+            () -> inputs.position() <= Constants.Elevator.stowedPosition + Constants.Elevator.sysIdMargin);
+    }
+
+    public SparkController[] getMotors() {
+        return new SparkController[] {elevatorController};
+    }
+
+    /**
+     * Sends a position target to the Spark, which profiles and closes the loop on it by itself
+     * (Smart Motion, slot 0). Only needs to be called once per target.
+     * @param position Motor rotations, clamped between stowed and deployed
+     */
+    public void setGoal(double position) {
+        goal = MathUtil.clamp(position, Constants.Elevator.stowedPosition, Constants.Elevator.deployedPosition);
+        holdingGoal = true;
+        elevatorPIDController.setReference(goal, CANSparkBase.ControlType.kSmartMotion, 0);
+    }
+
+    public boolean atGoal() {
+        return holdingGoal && Math.abs(inputs.position() - goal) <= Constants.Elevator.positionTolerance;
+    }
+
+    /* Rough seconds left to the goal, from a trapezoid profile like the one Smart Motion runs. 0 with no goal. */
+    public double timeToGoal() {
+        if (!holdingGoal) {
+            return 0;
         }
+        timeProfile.calculate(0,
+            new TrapezoidProfile.State(inputs.position(), inputs.velocity() / 60),
+            new TrapezoidProfile.State(goal, 0));
+        return timeProfile.totalTime();
+    }
+
+    public double getGoal() {
+        return goal;
+    }
+
+    /* True while the Spark is holding a position target, until something sets a voltage */
+    public boolean isHoldingGoal() {
+        return holdingGoal;
+    }
 
-        elevatorPIDController.setReference(voltage, CANSparkBase.ControlType.kVoltage, 0);
+    /* Moves to a position and finishes once there. The Spark keeps holding it afterwards. */
+    public Command goToPosition(double position) {
+        return new FunctionalCommand(
+            () -> setGoal(position),
+            () -> {},
+            interrupted -> {},
+            this::atGoal,
+            this);
     }
 
     public void setDutyCylce(double percent) {
+        holdingGoal = false;
         percent = percent/100;
         elevatorPIDController.setReference(percent, CANSparkBase.ControlType.kDutyCycle);
     }
@@ -4,6 +4,11 @@ import com.revrobotics.CANSparkBase;
 import com.revrobotics.RelativeEncoder;
 import com.revrobotics.SparkPIDController;
 
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.system.plant.DCMotor;
+import edu.wpi.first.wpilibj.DigitalInput;
+import edu.wpi.first.wpilibj.RobotBase;
+import edu.wpi.first.wpilibj.simulation.DCMotorSim;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import frc.lib.Items.SparkMax.SparkController;
@@ -14,21 +19,75 @@ public class Feeder extends SubsystemBase {
 
     private SparkController feederController;
 
-    private RelativeEncoder feederEncoder;  //TODO - Use this somehow since java is being weird
+    private RelativeEncoder feederEncoder;  // meters of note travel, used for indexing
 
     private SparkPIDController feederPIDController; 
 
+    private final DigitalInput lightbreak = new DigitalInput(Constants.Setup.lightbreakSensor);
+
+    /**
+     * Latest sensor readings, published by readInputs() during the acquisition phase.
+     * @param noteDetected The lightbreak sees a note
+     * @param edgePosition Encoder position in the sample where the lightbreak last tripped
+     */
+    public record Inputs(double velocity, double position, boolean noteDetected, double edgePosition) {}
+
+    private volatile Inputs inputs;
+
+    /* Edge latch, only touched by readInputs() */
+    private boolean lastNoteDetected = false;
+    private double edgePosition = 0;
+
+    /* Where the current index move is headed, NaN when not indexing */
+    private double indexTarget = Double.NaN;
+
+    /* Simulation only: the last commanded voltage, and the roller the encoder readings come from */
+    private double simVolts = 0;
+    private DCMotorSim rollerSim;
+    private volatile double simulatedPosition = 0;
+    private volatile double simulatedVelocity = 0;
+
     public Feeder(){
         this.feederController = new SparkController(Constants.Setup.feedRoller, new SparkControllerInfo().feeder());
         
         this.feederEncoder = feederController.sparkEncode;
        
         this.feederPIDController = feederController.sparkControl;
+        // Slot 1 (position gains for indexing) is set up by SparkControllerInfo.feeder(), slot 0 keeps the velocity gains
+
+        readInputs();
+    }
+
+    /**
+     * Reads the feeder encoder and the lightbreak together, so the position where the note tripped
+     * the lightbreak comes from the same sample. Runs on a SensorAcquisition worker thread.
+     */
+    public void readInputs() {
+        boolean simulated = RobotBase.isSimulation();
+        double position = simulated ? simulatedPosition : feederEncoder.getPosition();
+        double velocity = simulated ? simulatedVelocity : feederEncoder.getVelocity();
+        boolean noteDetected = !lightbreak.get();
+        if (noteDetected && !lastNoteDetected) {
+            edgePosition = position;
+        }
+        lastNoteDetected = noteDetected;
+        inputs = new Inputs(velocity, position, noteDetected, edgePosition);
+    }
+
+    public Inputs getInputs() {
+        return inputs;
     }
 
-    @Override
-    public void periodic(){
-        SmartDashboard.putNumber("Using Feeder encoder", feederEncoder.getVelocity());
+    /* Dashboard values, run by the loop governor */
+    public void report() {
+        SmartDashboard.putNumber("Using Feeder encoder", inputs.velocity());
+        SmartDashboard.putBoolean("Note Indexed", isIndexed());
+        SmartDashboard.putBoolean("lightbreak", !inputs.noteDetected());
+    }
+
+    /* True while the lightbreak sees a note, as of the start of this loop */
+    public boolean hasNote() {
+        return inputs.noteDetected();
     }
 
     public void setVoltage(double targetVoltage){
@@ -38,12 +97,60 @@ public class Feeder extends SubsystemBase {
             targetVoltage = Constants.Feeder.maxVoltage;
         }
         
-        feederPIDController.setReference(targetVoltage, CANSparkBase.ControlType.kVoltage,0);
+        indexTarget = Double.NaN;
+        feederController.setVoltage(targetVoltage);
+        simVolts = targetVoltage;
+    }
+
+    /**
+     * Moves the note to Constants.Feeder.indexDistance past where it tripped the lightbreak, on the
+     * Spark's position loop. The target comes from the encoder sample taken with the lightbreak edge,
+     * so it doesn't depend on how late in the loop (or how many loops later) this is called.
+     */
+    public void index() {
+        indexTarget = inputs.edgePosition() + Constants.Feeder.indexDistance;
+        feederPIDController.setReference(indexTarget, CANSparkBase.ControlType.kPosition, 1);
+    }
+
+    /* True once the index move has finished */
+    public boolean isIndexed() {
+        return !Double.isNaN(indexTarget) && Math.abs(inputs.position() - indexTarget) <= Constants.Feeder.indexTolerance;
+    }
+
+    public SparkController[] getMotors() {
+        return new SparkController[] {feederController};
     }
 
     public void setDutyCylce(double percent){
         percent = percent/100;
+        indexTarget = Double.NaN;
         feederPIDController.setReference(percent, CANSparkBase.ControlType.kDutyCycle);
+        simVolts = percent * Constants.Electical.voltageComp;
+    }
+
+    /**
+     * Simulation only. Runs the roller for dt with the last command, stepping the Spark's slot 1 P loop
+     * itself while indexing; readInputs() picks the result up next loop. The lightbreak is simulated
+     * separately, by whatever moves the simulated note.
+     */
+    public void simulate(double dt) {
+        if (rollerSim == null) {
+            rollerSim = new DCMotorSim(DCMotor.getNEO(1), 1.0, Constants.Simulation.feederMoi);
+        }
+        double maxVolts = Constants.Feeder.maxVoltage;
+        double step = dt / Constants.Simulation.sparkLoopSubsteps;
+        for (int i = 0; i < Constants.Simulation.sparkLoopSubsteps; i++) {
+            double volts = simVolts;
+            if (!Double.isNaN(indexTarget)) {
+                double position = rollerSim.getAngularPositionRotations() * Constants.ConversionFactors.feederPositionFactor;
+                double dutyCycle = Constants.PID.feederPositionPID[0] * (indexTarget - position);
+                volts = MathUtil.clamp(dutyCycle * Constants.Electical.voltageComp, -maxVolts, maxVolts);
+            }
+            rollerSim.setInputVoltage(volts);
+            rollerSim.update(step);
+        }
+        simulatedPosition = rollerSim.getAngularPositionRotations() * Constants.ConversionFactors.feederPositionFactor;
+        simulatedVelocity = rollerSim.getAngularVelocityRPM() * Constants.ConversionFactors.feederVelocityFactor;
     }
 
 }
@@ -0,0 +1,127 @@
+package frc.robot.subsystems;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.controller.ProfiledPIDController;
+import edu.wpi.first.math.trajectory.TrapezoidProfile;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.FunctionalCommand;
+import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import frc.robot.Constants;
+
+/**
+ * Holds the robot at a target heading with a profiled controller plus yaw rate feedforward. It only
+ * computes a rotation rate; whatever is driving the swerve asks it for one, so translation stays
+ * with the driver (or the path) while the heading is locked.
+ *
+ * <p>Vision targets are turned into a heading using the gyro yaw at the moment the frame was taken,
+ * so camera latency doesn't make us chase where the target used to be.
+ */
+public class HeadingController extends SubsystemBase {
+    private final Swerve s_Swerve;
+    private final ProfiledPIDController controller;
+
+    private boolean active = false;
+    private double targetHeading = 0;       // radians, CCW+, same frame as Swerve.getYawRadians()
+    private double targetRate = 0;          // radians per second the target itself is turning at
+    private double lastFrameTimestamp = -1;
+    private boolean hasTarget = false;      // nothing to be aligned with until a target (or vision frame) arrives
+
+    private double startTime = 0;
+    private double timeToAligned = Double.NaN;
+
+    public HeadingController(Swerve s_Swerve) {
+        this.s_Swerve = s_Swerve;
+        controller = new ProfiledPIDController(Constants.PID.headingPID[0], Constants.PID.headingPID[1], Constants.PID.headingPID[2],
+            new TrapezoidProfile.Constraints(Constants.Swerve.maxAngularVelocity, Constants.Swerve.maxAngularAcceleration));
+        controller.enableContinuousInput(-Math.PI, Math.PI);
+    }
+
+    /** Starts holding the current heading. The profile starts from the robot's current yaw and yaw rate. */
+    public void start() {
+        active = true;
+        targetHeading = s_Swerve.getYawRadians();
+        targetRate = 0;
+        lastFrameTimestamp = -1;
+        hasTarget = false;
+        controller.reset(s_Swerve.getYawRadians(), s_Swerve.getYawRate());
+        startTime = Timer.getFPGATimestamp();
+        timeToAligned = Double.NaN;
+    }
+
+    public void stop() {
+        active = false;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    /**
+     * @param heading Field frame heading in radians (CCW+)
+     * @param headingRate How fast the target heading is moving in radians per second, used as feedforward
+     */
+    public void setTargetHeading(double heading, double headingRate) {
+        targetHeading = heading;
+        targetRate = headingRate;
+        hasTarget = true;
+    }
+
+    /** Aims at the camera's target, if it has one and the frame is new. */
+    public void setTargetFromVision(Limelight limelight) {
+        Limelight.Inputs inputs = limelight.getInputs();
+        if (inputs.tv() < 0.1 || inputs.captureTimestamp() == lastFrameTimestamp) {
+            return;
+        }
+        lastFrameTimestamp = inputs.captureTimestamp();
+        // tx is positive when the target is to the right, which is clockwise (negative) for us
+        double yawAtCapture = s_Swerve.getYawAt(inputs.captureTimestamp());
+        setTargetHeading(Math.toRadians(yawAtCapture - inputs.tx()), 0);
+    }
+
+    /** Rotation rate in radians per second that tracks the target heading. */
+    public double calculate() {
+        double output = controller.calculate(s_Swerve.getYawRadians(), targetHeading)
+            + controller.getSetpoint().velocity + targetRate;
+        return MathUtil.clamp(output, -Constants.Swerve.maxAngularVelocity, Constants.Swerve.maxAngularVelocity);
+    }
+
+    /* For live tuning. Format {P, I, D, FF}, FF unused */
+    public void setPID(double[] gains) {
+        controller.setPID(gains[0], gains[1], gains[2]);
+    }
+
+    public boolean hasTarget() {
+        return hasTarget;
+    }
+
+    /* False until a target has been set since start(), so the held start heading doesn't count as aligned */
+    public boolean atTarget() {
+        return active && hasTarget && Math.abs(MathUtil.angleModulus(targetHeading - s_Swerve.getYawRadians()))
+            <= Math.toRadians(Constants.Swerve.autoAimTolerance);
+    }
+
+    /** Holds the heading on the camera's target for as long as it runs. */
+    public Command trackVision(Limelight limelight) {
+        return new FunctionalCommand(
+            this::start,
+            () -> setTargetFromVision(limelight),
+            interrupted -> stop(),
+            () -> false,
+            this);
+    }
+
+    @Override
+    public void periodic() {
+        if (active && Double.isNaN(timeToAligned) && atTarget()) {
+            timeToAligned = Timer.getFPGATimestamp() - startTime;
+        }
+    }
+
+    /* Dashboard values, run by the loop governor. Time to aligned is NaN until the current aim lines up */
+    public void report() {
+        SmartDashboard.putNumber("Aim Time To Aligned", timeToAligned);
+        SmartDashboard.putBoolean("Aim Aligned", atTarget());
+    }
+}
@@ -1,12 +1,16 @@
 package frc.robot.subsystems;
 
 import com.revrobotics.CANSparkBase;
+import com.revrobotics.CANSparkLowLevel;
 import com.revrobotics.RelativeEncoder;
 import com.revrobotics.SparkPIDController;
+import edu.wpi.first.wpilibj.Notifier;
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import frc.lib.Items.SparkMax.SparkController;
 import frc.lib.configs.Sparkmax.SparkControllerInfo;
+import frc.lib.util.NoteContactDetector;
 import frc.robot.Constants;
 
 public class Intake extends SubsystemBase {
@@ -15,11 +19,28 @@ public class Intake extends SubsystemBase {
     private SparkController bottomRoller;
     
     private RelativeEncoder topEncoder;
-    private RelativeEncoder bottomEncoder; //TODO - Use this somehow since java is being weird 
+    private RelativeEncoder bottomEncoder;
 
     private SparkPIDController topController;
     private SparkPIDController bottomController;
 
+    /* Latest sensor readings, published by readInputs() during the acquisition phase */
+    public record Inputs(double topVelocity, double bottomVelocity) {}
+
+    private volatile Inputs inputs;
+
+    /* Note contact, sampled faster than the loop on its own Notifier */
+    private final Notifier contactNotifier;
+    private final NoteContactDetector contactDetector = new NoteContactDetector(
+        Constants.Intake.contactSpikeAmps,
+        Constants.Intake.contactVelocityDip,
+        Constants.Intake.contactBaselineTimeConstant,
+        Constants.Intake.contactSettleTime,
+        Constants.Intake.contactConfirmSamples);
+    private volatile boolean running = false;
+    private volatile boolean noteContact = false;
+    private volatile double noteContactTime = 0;
+
     public Intake(){
 
         this.topRoller = new SparkController(Constants.Setup.topRoller, new SparkControllerInfo().intake());
@@ -30,12 +51,70 @@ public class Intake extends SubsystemBase {
 
         this.topController = topRoller.sparkControl;
         this.bottomController = bottomRoller.sparkControl;
+
+        // Current and velocity come in status 1. Send it as fast as we sample and shorten the velocity
+        // filter, otherwise the speed dip shows up tens of milliseconds late and smeared out
+        int statusPeriodMs = (int) Math.round(Constants.Intake.contactSamplePeriod * 1000);
+        for (SparkController roller : getMotors()) {
+            roller.spark.setPeriodicFramePeriod(CANSparkLowLevel.PeriodicFrame.kStatus1, statusPeriodMs);
+            roller.sparkEncode.setMeasurementPeriod(8);
+            roller.sparkEncode.setAverageDepth(2);
+        }
+
+        readInputs();
+
+        contactNotifier = new Notifier(this::sampleContact);
+        contactNotifier.setName("IntakeContact");
+        contactNotifier.startPeriodic(Constants.Intake.contactSamplePeriod);
+    }
+
+    /* Runs on the contact Notifier. Only looks for notes while the rollers are pulling in. */
+    private void sampleContact() {
+        if (!running) {
+            contactDetector.reset();
+            noteContact = false;
+            return;
+        }
+        double current = topRoller.spark.getOutputCurrent() + bottomRoller.spark.getOutputCurrent();
+        double velocity = (Math.abs(topEncoder.getVelocity()) + Math.abs(bottomEncoder.getVelocity())) / 2;
+        if (contactDetector.update(current, velocity, Timer.getFPGATimestamp()) && !noteContact) {
+            noteContactTime = contactDetector.getContactTime();
+            noteContact = true;
+        }
     }
 
-    @Override
-    public void periodic(){
-        SmartDashboard.putNumber("RollerVelocity", topEncoder.getVelocity());
-        SmartDashboard.putNumber("Using bottom Enconder", bottomEncoder.getVelocity());
+    /**
+     * True once the rollers have felt a note since they were last started. Usually comes a few tens of
+     * milliseconds before the lightbreak, and still comes if the lightbreak doesn't.
+     */
+    public boolean hasNoteContact() {
+        return noteContact;
+    }
+
+    /* True while the rollers are pulling in */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /* FPGA time the contact started */
+    public double getNoteContactTime() {
+        return noteContactTime;
+    }
+
+    /* Reads both roller encoders. Runs on a SensorAcquisition worker thread. */
+    public void readInputs() {
+        inputs = new Inputs(topEncoder.getVelocity(), bottomEncoder.getVelocity());
+    }
+
+    public Inputs getInputs() {
+        return inputs;
+    }
+
+    /* Dashboard values, run by the loop governor */
+    public void report() {
+        SmartDashboard.putNumber("RollerVelocity", inputs.topVelocity());
+        SmartDashboard.putNumber("Using bottom Enconder", inputs.bottomVelocity());
+        SmartDashboard.putBoolean("Intake Note Contact", noteContact);
     }
 
     public void setVoltage(double voltage){
@@ -44,12 +123,18 @@ public class Intake extends SubsystemBase {
         } else if (voltage > Constants.Intake.maxVoltage){
             voltage = Constants.Intake.maxVoltage;
         }
-        topController.setReference(voltage, CANSparkBase.ControlType.kVoltage, 0);
-        bottomController.setReference(voltage, CANSparkBase.ControlType.kVoltage, 0);
+        running = voltage > 0;
+        topRoller.setVoltage(voltage);
+        bottomRoller.setVoltage(voltage);
+    }
+
+    public SparkController[] getMotors() {
+        return new SparkController[] {topRoller, bottomRoller};
     }
 
     public void setDutyCylce(double percent){
         percent = percent/100;
+        running = percent > 0;
         topController.setReference(percent, CANSparkBase.ControlType.kDutyCycle);
         bottomController.setReference(percent, CANSparkBase.ControlType.kDutyCycle);
     }
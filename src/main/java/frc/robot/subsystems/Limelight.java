@@ -2,22 +2,139 @@ package frc.robot.subsystems;
 
 import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.networktables.DoubleSubscriber;
 import edu.wpi.first.networktables.NetworkTable;
 import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.networktables.StringSubscriber;
+import edu.wpi.first.networktables.TimestampedDouble;
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import frc.lib.util.LimelightJsonParser;
+import frc.robot.Constants;
 
 public class Limelight extends SubsystemBase {
     private final NetworkTableInstance _instance = NetworkTableInstance.getDefault();
     private NetworkTable _table;
     private double angle;
 
+    private final DoubleSubscriber tvSub;
+    private final DoubleSubscriber txSub;
+    private final DoubleSubscriber tySub;
+    private final DoubleSubscriber tlSub;
+    private final DoubleSubscriber clSub;
+    private final StringSubscriber jsonSub;
+
+    /* Full results, double buffered: readInputs parses into back, then swaps it to the front */
+    private LimelightJsonParser back = new LimelightJsonParser();
+    private volatile LimelightJsonParser front = new LimelightJsonParser();
+    private long lastJsonChange = 0;
+    private long jsonFrames = 0;
+    private static final long jsonStaleMicros = 100000;   // a dump this far behind tl means the camera has stopped sending them
+    private int[] preferredFiducials = new int[0];
+
+    /**
+     * Latest camera readings, published by readInputs() during the acquisition phase.
+     * captureTimestamp is the FPGA time the frame was taken (arrival time minus pipeline and capture latency),
+     * so it also identifies the frame.
+     */
+    public record Inputs(double tv, double tx, double ty, double captureTimestamp) {}
+
+    private volatile Inputs inputs = new Inputs(0, 0, -1, 0);
+
     public Limelight(String networkTableName) {
         _table = _instance.getTable(networkTableName);
+        tvSub = _table.getDoubleTopic("tv").subscribe(0);
+        txSub = _table.getDoubleTopic("tx").subscribe(0);
+        tySub = _table.getDoubleTopic("ty").subscribe(-1);
+        tlSub = _table.getDoubleTopic("tl").subscribe(0);
+        clSub = _table.getDoubleTopic("cl").subscribe(0);
+        jsonSub = _table.getStringTopic("json").subscribe("");
+    }
+
+    /**
+     * Aim at these tags rather than whatever the Limelight picked as the primary target. The first
+     * one in the frame wins; tx/ty fall back to the primary target when none are visible.
+     */
+    public Limelight preferFiducials(int... ids) {
+        preferredFiducials = ids;
+        return this;
+    }
+
+    /**
+     * Reads the camera's NetworkTables values. Runs on a SensorAcquisition worker thread. When a new
+     * JSON dump has arrived, tv/tx/ty and the capture time all come from it, so they belong to one
+     * frame; tx/ty/tl are separate updates that can straddle two frames. The separate values are
+     * only used while the camera isn't sending dumps.
+     */
+    public void readInputs() {
+        // tl is published once per frame, so its arrival time is the frame's arrival time
+        TimestampedDouble tl = tlSub.getAtomic();
+
+        // The JSON dump is only parsed when a new one arrives
+        long jsonChange = jsonSub.getLastChange();
+        boolean fresh = false;
+        if (jsonChange != lastJsonChange) {
+            lastJsonChange = jsonChange;
+            if (back.parse(jsonSub.get())) {
+                back.frame = ++jsonFrames;
+                back.captureTimestamp = jsonChange / 1e6 - (back.pipelineLatencyMs + back.captureLatencyMs) / 1000.0;
+                LimelightJsonParser parsed = back;
+                back = front;
+                front = parsed;
+                fresh = true;
+            }
+        }
+
+        LimelightJsonParser results = front;
+        if (fresh) {
+            inputs = fromResults(results);
+        } else if (results.frame == 0 || tl.timestamp - lastJsonChange > jsonStaleMicros) {
+            double latencySeconds = (tl.value + clSub.get()) / 1000.0;
+            double arrival = tl.timestamp > 0 ? tl.timestamp / 1e6 : Timer.getFPGATimestamp();
+            inputs = new Inputs(tvSub.get(), txSub.get(), tySub.get(), arrival - latencySeconds);
+        }
+        // Otherwise the dumps are keeping up and the last one is still the latest frame
+    }
+
+    /* The primary target is the first one listed; a preferred tag replaces it when one is in the frame */
+    private Inputs fromResults(LimelightJsonParser results) {
+        boolean hasTarget = results.valid && (results.fiducialCount > 0 || results.detectorCount > 0);
+        double tx = 0;
+        double ty = 0;
+        if (results.fiducialCount > 0) {
+            tx = results.fiducialTx[0];
+            ty = results.fiducialTy[0];
+        } else if (results.detectorCount > 0) {
+            tx = results.detectorTx[0];
+            ty = results.detectorTy[0];
+        }
+        for (int id : preferredFiducials) {
+            int i = results.findFiducial(id);
+            if (i >= 0) {
+                tx = results.fiducialTx[i];
+                ty = results.fiducialTy[i];
+                break;
+            }
+        }
+        return new Inputs(hasTarget ? 1 : 0, tx, ty, results.captureTimestamp);
+    }
+
+    /**
+     * Every target in the latest JSON dump. Only valid until the next readInputs, so read what you need
+     * in the same loop and don't keep the reference. frame changes with each new dump and is 0 until
+     * the first one.
+     */
+    public LimelightJsonParser getResults() {
+        return front;
+    }
+
+    public Inputs getInputs() {
+        return inputs;
     }
 
     public boolean isTargets(){
-        if(_table.getEntry("tv").getDouble(0) > 0.1){
+        if(inputs.tv() > 0.1){
             return true;
         } else {
             return false;
@@ -35,7 +152,7 @@ public class Limelight extends SubsystemBase {
     }
 
     public double getPivotAngletoSpeaker() {
-        double y = _table.getEntry("ty").getDouble(-1);
+        double y = inputs.ty();
 
         //target space from the perspective of looking at the target:
         //+X to the right of the target
@@ -46,7 +163,7 @@ public class Limelight extends SubsystemBase {
         // double y = 82 - 16 + 4;  // Vertical Inches from pivot to top of speaker opening, +4 to combat gravity
 
         // Did a little math, and it seems like adding the distance to our angle matches the curve of what we measured to work.
-        angle = y + 112.0;
+        angle = y + Constants.Pivot.horizontalAngle;
         // Add flat angle
         // angle += 60;
 
@@ -54,17 +171,18 @@ public class Limelight extends SubsystemBase {
     }
 
     public double getRobotRotationtoSpeaker() {
-        double val = _table.getEntry("tx").getDouble(0);
+        double val = inputs.tx();
         return val;
     }
 
+    /* Degrees CCW+ from the camera axis to the primary target. NoteTracker does the full projection. */
     public double getAngleToNote() {
-        return 0;       // TODO - make this do something.
+        return isTargets() ? -inputs.tx() : 0;
     }
 
-    @Override
-    public void periodic() {
+    /* Dashboard values, run by the loop governor */
+    public void report() {
         SmartDashboard.putNumber("Aim Bot Angle", angle);
-        SmartDashboard.putNumber("Limelight Has Target", _table.getEntry("tv").getDouble(-1));
+        SmartDashboard.putNumber("Limelight Has Target", inputs.tv());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,282 @@
+package frc.robot.subsystems;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import frc.lib.util.LimelightJsonParser;
+import frc.robot.Constants;
+
+/**
+ * Turns NoteVision detections into filtered note tracks. Each detection is projected onto the carpet
+ * with the camera mount geometry and moved into the odometry frame using the robot pose at capture
+ * time, where notes sit still unless they get bumped. Each track runs a constant velocity Kalman
+ * filter per axis, detections are associated to the nearest track inside a gate, and a track is only
+ * trusted after a few hits.
+ *
+ * <p>The best note is given back in the robot frame: position, and velocity relative to the robot.
+ * Tracks are preallocated, so nothing here allocates per frame except the swerve speeds.
+ */
+public class NoteTracker extends SubsystemBase {
+    /* Position/velocity filter for one axis. Covariance is {pp, pv; pv, vv}. */
+    private static class Axis {
+        double p, v;
+        double pp, pv, vv;
+
+        void reset(double z, double r) {
+            p = z;
+            v = 0;
+            pp = r;
+            pv = 0;
+            vv = 1.0;   // notes are usually still, but don't rule out a rolling one
+        }
+
+        /* White noise acceleration model */
+        void predict(double dt, double q) {
+            p += v * dt;
+            double dt2 = dt * dt;
+            pp += 2 * dt * pv + dt2 * vv + q * dt2 * dt2 / 4;
+            pv += dt * vv + q * dt2 * dt / 2;
+            vv += q * dt2;
+        }
+
+        void update(double z, double r) {
+            double s = pp + r;
+            double kp = pp / s;
+            double kv = pv / s;
+            double innovation = z - p;
+            p += kp * innovation;
+            v += kv * innovation;
+            vv -= kv * pv;
+            pv *= 1 - kp;
+            pp *= 1 - kp;
+        }
+    }
+
+    private static class Track {
+        final Axis x = new Axis();
+        final Axis y = new Axis();
+        boolean active;
+        int hits;
+        double lastSeen;
+        double lastPredict;
+    }
+
+    private final Limelight camera;
+    private final Swerve s_Swerve;
+    private final Track[] tracks = new Track[Constants.NoteVision.maxTracks];
+    private double lastFrameTimestamp = -1;
+    private long lastJsonFrame = 0;
+
+    /* Best note this loop, robot frame */
+    private Track best;
+    private double noteX, noteY, noteVx, noteVy;
+
+    public NoteTracker(Limelight camera, Swerve s_Swerve) {
+        this.camera = camera;
+        this.s_Swerve = s_Swerve;
+        for (int i = 0; i < tracks.length; i++) {
+            tracks[i] = new Track();
+        }
+    }
+
+    /**
+     * Adds one detection. periodic() already feeds every note in each new camera frame.
+     * @param tx Degrees right of the camera axis, as the Limelight reports it
+     * @param ty Degrees above the camera axis
+     * @param timestamp FPGA time the frame was captured
+     */
+    public void addDetection(double tx, double ty, double timestamp) {
+        double depression = -Math.toRadians(Constants.NoteVision.cameraPitch + ty);
+        if (depression < Math.toRadians(1.0)) {
+            return;   // at or above the horizon, can't be on the carpet
+        }
+        double forward = (Constants.NoteVision.cameraHeight - Constants.NoteVision.noteHeight) / Math.tan(depression);
+        double lateral = -forward * Math.tan(Math.toRadians(tx));
+        double range = Math.hypot(forward, lateral);
+        if (range > Constants.NoteVision.maxRange) {
+            return;
+        }
+
+        double cameraYaw = Math.toRadians(Constants.NoteVision.cameraYaw);
+        double robotX = Constants.NoteVision.cameraForward + forward * Math.cos(cameraYaw) - lateral * Math.sin(cameraYaw);
+        double robotY = Constants.NoteVision.cameraLeft + forward * Math.sin(cameraYaw) + lateral * Math.cos(cameraYaw);
+
+        // Robot pose when the frame was taken: heading from the gyro history, position backed off by the latency
+        Pose2d pose = s_Swerve.getPose();
+        double now = Timer.getFPGATimestamp();
+        double yawOffset = pose.getRotation().getRadians() - s_Swerve.getYawRadians();
+        double heading = Math.toRadians(s_Swerve.getYawAt(timestamp)) + yawOffset;
+        ChassisSpeeds speeds = s_Swerve.getSpeeds();
+        double cos = Math.cos(heading);
+        double sin = Math.sin(heading);
+        double latency = now - timestamp;
+        double poseX = pose.getX() - (speeds.vxMetersPerSecond * cos - speeds.vyMetersPerSecond * sin) * latency;
+        double poseY = pose.getY() - (speeds.vxMetersPerSecond * sin + speeds.vyMetersPerSecond * cos) * latency;
+
+        double fieldX = poseX + robotX * cos - robotY * sin;
+        double fieldY = poseY + robotX * sin + robotY * cos;
+        double sigma = Constants.NoteVision.measurementNoise * Math.max(1.0, range * range);
+        double r = sigma * sigma;
+
+        // Nearest track inside the gate gets the detection, otherwise start a new one
+        Track nearest = null;
+        double nearestDistance = Constants.NoteVision.gateDistance;
+        for (Track track : tracks) {
+            if (!track.active) continue;
+            double distance = Math.hypot(track.x.p - fieldX, track.y.p - fieldY);
+            if (distance < nearestDistance) {
+                nearest = track;
+                nearestDistance = distance;
+            }
+        }
+        if (nearest != null) {
+            nearest.x.update(fieldX, r);
+            nearest.y.update(fieldY, r);
+            nearest.hits++;
+            nearest.lastSeen = now;
+            return;
+        }
+
+        Track slot = null;
+        for (Track track : tracks) {
+            if (!track.active) {
+                slot = track;
+                break;
+            }
+            // Full: replace whichever track has gone longest without a detection
+            if (track != best && (slot == null || track.lastSeen < slot.lastSeen)) {
+                slot = track;
+            }
+        }
+        if (slot == null) {
+            return;
+        }
+        slot.active = true;
+        slot.x.reset(fieldX, r);
+        slot.y.reset(fieldY, r);
+        slot.hits = 1;
+        slot.lastSeen = now;
+        slot.lastPredict = now;
+    }
+
+    public boolean hasNote() {
+        return best != null;
+    }
+
+    /* Best note, robot frame, meters forward */
+    public double getNoteX() {
+        return noteX;
+    }
+
+    /* Best note, robot frame, meters left */
+    public double getNoteY() {
+        return noteY;
+    }
+
+    /* Best note's velocity relative to the robot, robot frame, m/s */
+    public double getNoteVx() {
+        return noteVx;
+    }
+
+    public double getNoteVy() {
+        return noteVy;
+    }
+
+    /* Drops every track, e.g. once the note we were chasing is in the robot */
+    public void clear() {
+        for (Track track : tracks) {
+            track.active = false;
+        }
+        best = null;
+    }
+
+    @Override
+    public void periodic() {
+        double now = Timer.getFPGATimestamp();
+        for (Track track : tracks) {
+            if (!track.active) continue;
+            if (now - track.lastSeen > Constants.NoteVision.trackTimeout) {
+                track.active = false;
+                continue;
+            }
+            double q = Constants.NoteVision.processNoise * Constants.NoteVision.processNoise;
+            track.x.predict(now - track.lastPredict, q);
+            track.y.predict(now - track.lastPredict, q);
+            track.lastPredict = now;
+        }
+
+        // Every note the detector found, once per JSON dump. tl and the dump arrive separately, so
+        // keying off tl could pair a new timestamp with the last dump's notes, then skip the new dump.
+        LimelightJsonParser results = camera.getResults();
+        if (results.frame != 0) {
+            if (results.frame != lastJsonFrame) {
+                lastJsonFrame = results.frame;
+                for (int i = 0; i < results.detectorCount; i++) {
+                    addDetection(results.detectorTx[i], results.detectorTy[i], results.captureTimestamp);
+                }
+            }
+        } else {
+            // No JSON dump from this camera, so fall back to the primary target
+            Limelight.Inputs inputs = camera.getInputs();
+            if (inputs.captureTimestamp() != lastFrameTimestamp) {
+                lastFrameTimestamp = inputs.captureTimestamp();
+                if (inputs.tv() > 0.1) {
+                    addDetection(inputs.tx(), inputs.ty(), inputs.captureTimestamp());
+                }
+            }
+        }
+
+        selectBest();
+    }
+
+    /* Dashboard values, run by the loop governor */
+    public void report() {
+        SmartDashboard.putBoolean("Note Tracked", best != null);
+        SmartDashboard.putNumber("Note Distance", best != null ? Math.hypot(noteX, noteY) : -1);
+        SmartDashboard.putNumber("Note Bearing", best != null ? Math.toDegrees(Math.atan2(noteY, noteX)) : 0);
+    }
+
+    /* Cheapest confirmed note in front of the intake, sticking with the current one unless another is clearly better */
+    private void selectBest() {
+        Pose2d pose = s_Swerve.getPose();
+        double heading = pose.getRotation().getRadians();
+        double cos = Math.cos(heading);
+        double sin = Math.sin(heading);
+
+        Track chosen = null;
+        double chosenCost = Double.POSITIVE_INFINITY;
+        for (Track track : tracks) {
+            if (!track.active || track.hits < Constants.NoteVision.confirmHits) continue;
+            double dx = track.x.p - pose.getX();
+            double dy = track.y.p - pose.getY();
+            double x = dx * cos + dy * sin;
+            double y = -dx * sin + dy * cos;
+            if (x <= 0) continue;
+            double cost = Math.hypot(x, y) + Constants.NoteVision.bearingWeight * Math.abs(Math.atan2(y, x));
+            if (track == best) {
+                cost -= Constants.NoteVision.switchMargin;
+            }
+            if (cost < chosenCost) {
+                chosen = track;
+                chosenCost = cost;
+            }
+        }
+        best = chosen;
+        if (best == null) {
+            return;
+        }
+
+        double dx = best.x.p - pose.getX();
+        double dy = best.y.p - pose.getY();
+        noteX = dx * cos + dy * sin;
+        noteY = -dx * sin + dy * cos;
+
+        // Relative velocity: the note's own motion minus ours, including the swing from our rotation
+        ChassisSpeeds speeds = s_Swerve.getSpeeds();
+        double omega = s_Swerve.getYawRate();
+        noteVx = best.x.v * cos + best.y.v * sin - speeds.vxMetersPerSecond + omega * noteY;
+        noteVy = -best.x.v * sin + best.y.v * cos - speeds.vyMetersPerSecond - omega * noteX;
+    }
+}
@@ -3,13 +3,24 @@ package frc.robot.subsystems;
 import com.revrobotics.CANSparkBase;
 import com.revrobotics.SparkPIDController;
 
+import edu.wpi.first.math.MathUtil;
 import edu.wpi.first.math.controller.ProfiledPIDController;
+import edu.wpi.first.math.controller.ArmFeedforward;
+import edu.wpi.first.math.system.plant.DCMotor;
 import edu.wpi.first.math.trajectory.TrapezoidProfile;
+import edu.wpi.first.units.Units;
+import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.DutyCycleEncoder;
+import edu.wpi.first.wpilibj.RobotBase;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.simulation.SingleJointedArmSim;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import edu.wpi.first.wpilibj2.command.sysid.SysIdRoutine;
 import frc.lib.Items.SparkMax.SparkController;
 import frc.lib.configs.Sparkmax.SparkControllerInfo;
+import frc.lib.util.SysIdTests;
 import frc.robot.Constants;
 
 public class Pivot extends SubsystemBase {
@@ -31,9 +42,32 @@ public class Pivot extends SubsystemBase {
     private static double targetMaxAngle = Constants.Pivot.maximumAngle; // Maximum angle in degrees
 
  */
-    public boolean isTrackingAngle;
+    public boolean isTrackingAngle;    // true while periodic() is driving the pivot to the goal
     public double lastVoltageAttempt;
 
+    /* Persistent goal, see setGoal() */
+    private double goal;
+    private ArmFeedforward feedForward;
+    private double[] feedForwardGains = Constants.SVA.PivotSVA.clone();
+    private final TrapezoidProfile timeProfile =
+        new TrapezoidProfile(new TrapezoidProfile.Constraints(Constants.Pivot.maxTurnSpeed, Constants.Pivot.maxAccel));
+
+    /* Latest sensor readings, published by readInputs() during the acquisition phase */
+    public record Inputs(double angleDegrees, double velocityDegreesPerSecond, double motorCurrent, double appliedVolts) {}
+
+    private volatile Inputs inputs;
+
+    /* Velocity is differenced from the absolute encoder, these are only touched by readInputs() */
+    private double lastReadAngle;
+    private double lastReadTime = -1;
+
+    private final SysIdRoutine sysIdRoutine;
+
+    /* Simulation only: the last commanded voltage, and the plant the inputs come from */
+    private double simVolts = 0;
+    private SingleJointedArmSim armSim;
+    private volatile Inputs simulatedInputs = new Inputs(Constants.Pivot.intakeAngle, 0, 0, 0);
+
     public Pivot() {
 
         // PivotTimer = new Timer();
@@ -65,6 +99,43 @@ public class Pivot extends SubsystemBase {
         pivotPID.reset(PivotEncoder.getAbsolutePosition() * 360);
 
         isTrackingAngle = false;
+        readInputs();
+
+        // SysId - the absolute encoder isn't on the Spark, so URCL can't record it and we log it here.
+        // Position is logged relative to level so the arm analysis can fit Kg * cos(angle).
+        sysIdRoutine = new SysIdRoutine(
+            new SysIdRoutine.Config(Units.Volts.of(0.25).per(Units.Seconds.of(1)), Units.Volts.of(2.0), Units.Seconds.of(10.0)),
+            new SysIdRoutine.Mechanism(
+                voltage -> setMotorVoltage(voltage.magnitude()),
+                log -> log.motor("pivot")
+                    .voltage(Units.Volts.of(inputs.appliedVolts()))
+                    .angularPosition(Units.Degrees.of(inputs.angleDegrees() - Constants.Pivot.horizontalAngle))
+                    .angularVelocity(Units.DegreesPerSecond.of(inputs.velocityDegreesPerSecond())),
+                this));
+    }
+
+    /* Reads the absolute encoder and motor. Runs on a SensorAcquisition worker thread. */
+    public void readInputs() {
+        if (RobotBase.isSimulation()) {
+            inputs = simulatedInputs;
+            return;
+        }
+        double angle = PivotEncoder.getAbsolutePosition() * 360;
+        double now = Timer.getFPGATimestamp();
+        double velocity = lastReadTime < 0 || now <= lastReadTime ? 0 : (angle - lastReadAngle) / (now - lastReadTime);
+        lastReadAngle = angle;
+        lastReadTime = now;
+        inputs = new Inputs(angle, velocity, PivotMotor.spark.getOutputCurrent(),
+            PivotMotor.spark.getAppliedOutput() * PivotMotor.spark.getBusVoltage());
+    }
+
+    public Inputs getInputs() {
+        return inputs;
+    }
+
+    /* Pivot angle in degrees from the absolute encoder, as of the start of this loop */
+    public double getAngle() {
+        return inputs.angleDegrees();
     }
 /*
     public void addAngle(double changeAngle) {
@@ -85,14 +156,148 @@ public class Pivot extends SubsystemBase {
     
  */
     public void periodic() {
-        SmartDashboard.putNumber("Pivot Angle", PivotEncoder.getAbsolutePosition() * 360);
+        // The profile setpoint goes stale while disabled (the arm can sag), so start over on enable
+        if (DriverStation.isDisabled()) {
+            clearGoal();
+        }
+        if (isTrackingAngle) {
+            lastVoltageAttempt = calculateVoltage(pivotPID, feedForward, getAngle(), goal);
+            setMotorVoltage(lastVoltageAttempt);
+        }
+    }
+
+    /* Dashboard values, run by the loop governor */
+    public void report() {
+        SmartDashboard.putNumber("Pivot Angle", getAngle());
+        SmartDashboard.putBoolean("Pivot At Goal", atGoal());
         SmartDashboard.putNumber("Pivot total Voltage", lastVoltageAttempt);
+        SmartDashboard.putNumber("Pivot velocity attempt", pivotPID.getSetpoint().velocity);
+    }
+
+    /**
+     * Sets where the pivot should be; periodic() profiles to it and keeps holding it. Cheap enough to
+     * call every loop: only the first call after clearGoal() resets the profile from the encoder,
+     * later ones just retarget it, keeping the profile's current position and velocity.
+     * @param angle Degrees, clamped to Constants.Pivot min/max
+     */
+    public void setGoal(double angle) {
+        goal = MathUtil.clamp(angle, Constants.Pivot.minimumAngle, Constants.Pivot.maximumAngle);
+        if (!isTrackingAngle) {
+            // Built here rather than in setFeedforward() so a move in progress keeps the gains it started with
+            feedForward = feedForward(feedForwardGains);
+            pivotPID.reset(getAngle(), inputs.velocityDegreesPerSecond());
+            isTrackingAngle = true;
+        }
+    }
+
+    /* New {Ks, Kv, Ka, Kg}, used from the next setGoal() after clearGoal() */
+    public void setFeedforward(double[] sva) {
+        feedForwardGains = sva.clone();
+    }
+
+    /* Stops driving to the goal and lets go of the pivot */
+    public void clearGoal() {
+        if (isTrackingAngle) {
+            isTrackingAngle = false;
+            lastVoltageAttempt = 0;
+            setMotorVoltage(0);
+        }
+    }
+
+    public double getGoal() {
+        return goal;
+    }
+
+    public boolean atGoal() {
+        return atGoal(Constants.Pivot.angleTolerance);
+    }
+
+    /* Within tolerance degrees of the goal, false when there's no goal */
+    public boolean atGoal(double tolerance) {
+        return isTrackingAngle && Math.abs(getAngle() - goal) <= tolerance;
+    }
+
+    /* Seconds left on the profile to the goal, 0 when there's no goal */
+    public double timeToGoal() {
+        if (!isTrackingAngle) {
+            return 0;
+        }
+        timeProfile.calculate(0, pivotPID.getSetpoint(), pivotPID.getGoal());
+        return timeProfile.totalTime();
+    }
+
+    /* Feedforward from {Ks, Kv, Ka, Kg}. Kv and Ka stay in degrees, see calculateVoltage(). */
+    public static ArmFeedforward feedForward(double[] gains) {
+        return new ArmFeedforward(gains[0], gains[3], gains[1], gains[2]);
+    }
+
+    /**
+     * The pivot control law: profiled PID plus arm feedforward (gravity and velocity) and a static kick,
+     * limited at the ends of travel. Kept free of hardware so ControlWarmup can run the exact same math while disabled.
+     * @param pid The profiled controller. Its profile state is advanced by this call.
+     * @param feedForward Feedforward for the profile setpoint. The gravity term takes radians from level
+     *     (Constants.Pivot.horizontalAngle); velocity is passed in deg/s, the units PivotSVA's Kv was tuned in.
+     * @param angle Measured pivot angle in degrees
+     * @param targetAngle Goal angle in degrees
+     * @return Voltage to apply, already clamped to Constants.Pivot.maxVoltage
+     */
+    public static double calculateVoltage(ProfiledPIDController pid, ArmFeedforward feedForward, double angle, double targetAngle) {
+        double attemptVoltage = pid.calculate(angle, targetAngle); // Calculate profiled voltage. Reverse voltage to get correct direction
+        TrapezoidProfile.State setpoint = pid.getSetpoint();
+        double FFVoltage = feedForward.calculate(Math.toRadians(setpoint.position - Constants.Pivot.horizontalAngle), setpoint.velocity);
+        
+        attemptVoltage += FFVoltage + (0.2 * Math.signum(targetAngle - angle));
+
+        // This positional clamping *shouldn't* be neccesary, but it's an extra precaution
+        if (angle >= Constants.Pivot.maximumAngle)     // if we're at or past maximum, only allow moving back
+            attemptVoltage = Math.min(attemptVoltage, 0);
+        if (angle <= Constants.Pivot.minimumAngle)     // if we're at or past minimum, only allow moving forawrd
+            attemptVoltage = Math.max(attemptVoltage, 0);
+
+        return MathUtil.clamp(attemptVoltage, -Constants.Pivot.maxVoltage, Constants.Pivot.maxVoltage);
     }
 
     // TODO - Insert a function for the joystick to move up and down smoothly
 
+    /* All four SysId tests, each stopped short of Constants.Pivot min/max. Positive voltage raises the angle. */
+    public Command getSysIdCommand() {
+        return runOnce(this::clearGoal).andThen(SysIdTests.all(sysIdRoutine,
+            () -> inputs.angleDegrees() >= Constants.Pivot.maximumAngle - Constants.Pivot.sysIdMargin,
+            () -> inputs.angleDegrees() <= Constants.Pivot.minimumAngle + Constants.Pivot.sysIdMargin));
+    }
+
+    public SparkController[] getMotors() {
+        return new SparkController[] {PivotMotor};
+    }
+
     public void setDutyCycle(double percent) {
+        isTrackingAngle = false;
         percent = percent/100;
         PivotPidController.setReference(percent, CANSparkBase.ControlType.kDutyCycle);
+        simVolts = percent * Constants.Electical.voltageComp;
+    }
+
+    private void setMotorVoltage(double volts) {
+        PivotMotor.setVoltage(volts);
+        simVolts = volts;
+    }
+
+    /**
+     * Simulation only. Runs the arm model for dt with the last commanded voltage; readInputs() picks
+     * the result up next loop. Gravity is left out: Constants.Pivot.gearReduction is still a guess and
+     * Kg is 0 until the arm SysId fit, so a gravity model here would only test made up numbers.
+     */
+    public void simulate(double dt) {
+        if (armSim == null) {
+            armSim = new SingleJointedArmSim(DCMotor.getNEO(1), Constants.Pivot.gearReduction, Constants.Simulation.pivotMoi,
+                Constants.Simulation.pivotArmLength,
+                Math.toRadians(Constants.Pivot.minimumAngle - Constants.Pivot.horizontalAngle),
+                Math.toRadians(Constants.Pivot.maximumAngle - Constants.Pivot.horizontalAngle),
+                false, Math.toRadians(simulatedInputs.angleDegrees() - Constants.Pivot.horizontalAngle));
+        }
+        armSim.setInputVoltage(simVolts);
+        armSim.update(dt);
+        simulatedInputs = new Inputs(Math.toDegrees(armSim.getAngleRads()) + Constants.Pivot.horizontalAngle,
+            Math.toDegrees(armSim.getVelocityRadPerSec()), armSim.getCurrentDrawAmps(), simVolts);
     }
 }
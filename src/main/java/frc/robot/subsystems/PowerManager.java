@@ -0,0 +1,215 @@
+package frc.robot.subsystems;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import edu.wpi.first.util.datalog.DoubleLogEntry;
+import edu.wpi.first.util.datalog.StringLogEntry;
+import edu.wpi.first.wpilibj.DataLogManager;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import frc.lib.Items.SparkMax.SparkController;
+import frc.lib.util.BatteryMonitor;
+import frc.robot.Constants;
+
+/**
+ * Shares one current budget between the mechanisms instead of every Spark having its own fixed
+ * limit. Each group asks for about what it is drawing plus some room to accelerate; everyone gets
+ * their minimum first, then the rest goes out in priority order (lower number first). The budget
+ * itself shrinks as the battery sags toward brownout.
+ *
+ * <p>Currents are read in the acquisition phase. setSmartCurrentLimit is a blocking CAN config
+ * call, so a group's limit is only sent when it moves by more than the hysteresis, and no more than
+ * once per Constants.Electical.powerUpdateInterval. Every change is logged with the reason.
+ */
+public class PowerManager extends SubsystemBase {
+
+    /* Latest sensor readings, published by readInputs() during the acquisition phase. Indexed in addGroup order,
+       motorCurrents is every group's motors back to back. The arrays are new each read and never written after. */
+    public record Inputs(double[] groupCurrents, double[] motorCurrents, double totalCurrent) {}
+
+    private volatile Inputs inputs = new Inputs(new double[0], new double[0], 0);
+
+    private static class Group {
+        final String name;
+        final SparkController[] motors;
+        final int minLimit;
+        final int maxLimit;
+        final int index;        // into Inputs.groupCurrents
+        final int firstMotor;   // into Inputs.motorCurrents
+        int priority;
+
+        DoubleLogEntry[] motorEntries;
+        int appliedLimit;       // per motor, amps
+        double lastChange = -1;
+
+        Group(String name, int priority, int minLimit, int maxLimit, int index, int firstMotor, SparkController[] motors) {
+            this.name = name;
+            this.priority = priority;
+            this.minLimit = minLimit;
+            this.maxLimit = maxLimit;
+            this.index = index;
+            this.firstMotor = firstMotor;
+            this.motors = motors;
+            this.appliedLimit = maxLimit;
+        }
+    }
+
+    private final ArrayList<Group> groups = new ArrayList<>();
+    private Group[] byPriority = new Group[0];
+    private double[] allocated = new double[0];
+    private int motorCount = 0;
+
+    private double budget;
+
+    private DoubleLogEntry totalEntry;
+    private DoubleLogEntry budgetEntry;
+    private StringLogEntry decisionEntry;
+
+    /**
+     * Adds a group of motors that share a priority and a per motor limit range. Groups have to be
+     * added before the sensor acquisition starts calling readInputs().
+     * @param priority Lower gets served first
+     * @param minLimit Per motor amps the group always keeps
+     * @param maxLimit Per motor amps the group never goes above, normally its old static limit
+     */
+    public PowerManager addGroup(String name, int priority, int minLimit, int maxLimit, SparkController... motors) {
+        groups.add(new Group(name, priority, minLimit, maxLimit, groups.size(), motorCount, motors));
+        motorCount += motors.length;
+        sortGroups();
+        return this;
+    }
+
+    /* Changes a group's priority, e.g. so the drive wins while we line up a shot */
+    public void setPriority(String name, int priority) {
+        for (Group group : groups) {
+            if (group.name.equals(name) && group.priority != priority) {
+                group.priority = priority;
+                sortGroups();
+            }
+        }
+    }
+
+    private void sortGroups() {
+        byPriority = groups.toArray(new Group[0]);
+        allocated = new double[byPriority.length];
+        Arrays.sort(byPriority, (a, b) -> Integer.compare(a.priority, b.priority));
+    }
+
+    /* Reads every motor's output current. Runs on a SensorAcquisition worker thread. */
+    public void readInputs() {
+        double[] groupCurrents = new double[groups.size()];
+        double[] motorCurrents = new double[motorCount];
+        double total = 0;
+        for (int g = 0; g < groups.size(); g++) {
+            Group group = groups.get(g);
+            for (int m = 0; m < group.motors.length; m++) {
+                motorCurrents[group.firstMotor + m] = group.motors[m].spark.getOutputCurrent();
+                groupCurrents[g] += motorCurrents[group.firstMotor + m];
+            }
+            total += groupCurrents[g];
+        }
+        inputs = new Inputs(groupCurrents, motorCurrents, total);
+    }
+
+    public Inputs getInputs() {
+        return inputs;
+    }
+
+    @Override
+    public void periodic() {
+        if (decisionEntry == null) {
+            totalEntry = new DoubleLogEntry(DataLogManager.getLog(), "/Power/TotalCurrent");
+            budgetEntry = new DoubleLogEntry(DataLogManager.getLog(), "/Power/Budget");
+            decisionEntry = new StringLogEntry(DataLogManager.getLog(), "/Power/Decision");
+            for (Group group : groups) {
+                group.motorEntries = new DoubleLogEntry[group.motors.length];
+                for (int m = 0; m < group.motors.length; m++) {
+                    group.motorEntries[m] = new DoubleLogEntry(DataLogManager.getLog(),
+                        "/Power/" + group.name + "/" + group.motors[m].canbusNumber + "/Current");
+                }
+            }
+        }
+
+        Inputs inputs = this.inputs;
+        if (inputs.groupCurrents().length != groups.size()) {
+            return;   // nothing read yet
+        }
+        budget = getBudget();
+        allocate(inputs);
+
+        double now = Timer.getFPGATimestamp();
+        for (int i = 0; i < byPriority.length; i++) {
+            Group group = byPriority[i];
+            int limit = (int) Math.floor(allocated[i] / group.motors.length);
+            boolean changed = Math.abs(limit - group.appliedLimit) >= Constants.Electical.limitHysteresis
+                // Always hand a group its full limit back once there's room, even inside the hysteresis
+                || (limit == group.maxLimit && group.appliedLimit != group.maxLimit);
+            if (changed && now - group.lastChange >= Constants.Electical.powerUpdateInterval) {
+                decisionEntry.append(String.format("%s %d -> %d A (draw %.0f A, total %.0f A, budget %.0f A)",
+                    group.name, group.appliedLimit, limit, inputs.groupCurrents()[group.index], inputs.totalCurrent(), budget));
+                for (SparkController motor : group.motors) {
+                    motor.spark.setSmartCurrentLimit(limit);
+                }
+                group.appliedLimit = limit;
+                group.lastChange = now;
+            }
+        }
+
+        for (int g = 0; g < groups.size(); g++) {
+            Group group = groups.get(g);
+            for (int m = 0; m < group.motors.length; m++) {
+                group.motorEntries[m].append(inputs.motorCurrents()[group.firstMotor + m]);
+            }
+        }
+        totalEntry.append(inputs.totalCurrent());
+        budgetEntry.append(budget);
+    }
+
+    /* Dashboard values, run by the loop governor */
+    public void report() {
+        SmartDashboard.putNumber("Total Current", inputs.totalCurrent());
+        SmartDashboard.putNumber("Current Budget", budget);
+    }
+
+    /* Full budget on a healthy battery, scaled down linearly between sagStartVoltage and brownoutVoltage */
+    private double getBudget() {
+        double voltage = BatteryMonitor.getVoltage();
+        double scale = (voltage - Constants.Electical.brownoutVoltage)
+            / (Constants.Electical.sagStartVoltage - Constants.Electical.brownoutVoltage);
+        scale = Math.max(Constants.Electical.minimumBudgetScale, Math.min(1.0, scale));
+        return Constants.Electical.totalCurrentBudget * scale;
+    }
+
+    /* Fills allocated[] (total amps per group, in byPriority order) */
+    private void allocate(Inputs inputs) {
+        double remaining = budget;
+
+        // Everyone keeps their floor
+        for (int i = 0; i < byPriority.length; i++) {
+            Group group = byPriority[i];
+            allocated[i] = group.minLimit * group.motors.length;
+            remaining -= allocated[i];
+        }
+
+        // Then what each group is asking for, in priority order. Asking for a bit over the current
+        // draw lets a group that is pinned at its limit grow back.
+        for (int i = 0; i < byPriority.length && remaining > 0; i++) {
+            Group group = byPriority[i];
+            double want = Math.min(group.maxLimit * group.motors.length,
+                inputs.groupCurrents()[group.index] * Constants.Electical.demandMargin + Constants.Electical.demandReserve * group.motors.length);
+            double give = Math.max(0, Math.min(want - allocated[i], remaining));
+            allocated[i] += give;
+            remaining -= give;
+        }
+
+        // Anything left goes back out so idle mechanisms aren't starved the moment they start
+        for (int i = 0; i < byPriority.length && remaining > 0; i++) {
+            Group group = byPriority[i];
+            double give = Math.min(group.maxLimit * group.motors.length - allocated[i], remaining);
+            allocated[i] += give;
+            remaining -= give;
+        }
+    }
+}
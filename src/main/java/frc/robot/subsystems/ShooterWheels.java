@@ -4,11 +4,23 @@ import com.revrobotics.CANSparkBase;
 import com.revrobotics.RelativeEncoder;
 import com.revrobotics.SparkPIDController;
 
+import edu.wpi.first.math.MathUtil;
 import edu.wpi.first.math.controller.SimpleMotorFeedforward;
+import edu.wpi.first.math.system.plant.DCMotor;
+import edu.wpi.first.units.Units;
+import edu.wpi.first.wpilibj.DataLogManager;
+import edu.wpi.first.wpilibj.RobotBase;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.simulation.FlywheelSim;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import edu.wpi.first.wpilibj2.command.sysid.SysIdRoutine;
 import frc.lib.Items.SparkMax.SparkController;
 import frc.lib.configs.Sparkmax.SparkControllerInfo;
+import frc.lib.util.BatteryMonitor;
+import frc.lib.util.MotorResponseModel;
+import frc.lib.util.SysIdTests;
 import frc.robot.Constants;
 
 public class ShooterWheels extends SubsystemBase {
@@ -24,6 +36,34 @@ public class ShooterWheels extends SubsystemBase {
 
     private SimpleMotorFeedforward feedForward;
 
+    private double goalVoltage = 0;
+
+    /* Recent velocities for the settling check, oldest at historyIndex once full */
+    private final double[] leftHistory = new double[Constants.Shooter.readyWindowLoops];
+    private final double[] rightHistory = new double[Constants.Shooter.readyWindowLoops];
+    private final double[] timeHistory = new double[Constants.Shooter.readyWindowLoops];
+    private int historyIndex = 0;
+    private int historyCount = 0;
+    private double settledGoal = 0;     // goal the settling below was measured for
+    private double settledSince = Double.NaN;
+
+    // ShooterWheelsSVA is a placeholder until the flywheels get a SysId fit; the response log shows how far off it is
+    private final MotorResponseModel leftResponse = new MotorResponseModel("LeftFlywheel", Constants.SVA.ShooterWheelsSVA);
+    private final MotorResponseModel rightResponse = new MotorResponseModel("RightFlywheel", Constants.SVA.ShooterWheelsSVA);
+
+    /* Latest sensor readings, published by readInputs() during the acquisition phase */
+    public record Inputs(double leftVelocity, double rightVelocity, double leftAppliedVolts, double rightAppliedVolts) {}
+
+    private volatile Inputs inputs;
+
+    private final SysIdRoutine sysIdRoutine;
+
+    /* Simulation only: what the flywheels were last told to do, and the plant the inputs come from */
+    private double simVolts = 0;
+    private FlywheelSim leftSim;
+    private FlywheelSim rightSim;
+    private volatile Inputs simulatedInputs = new Inputs(0, 0, 0, 0);
+
     public ShooterWheels(){
         this.leftFlyWheel = new SparkController(Constants.Setup.leftWheel, new SparkControllerInfo().shooterWheel(Constants.Setup.shooterInverts.left));
         this.rightFlyWheel = new SparkController(Constants.Setup.rightWheel, new SparkControllerInfo().shooterWheel(Constants.Setup.shooterInverts.right));
@@ -35,12 +75,127 @@ public class ShooterWheels extends SubsystemBase {
         this.rightController = rightFlyWheel.sparkControl;
 
         feedForward = new SimpleMotorFeedforward(Constants.SVA.ShooterWheelsSVA[0],Constants.SVA.ShooterWheelsSVA[1],Constants.SVA.ShooterWheelsSVA[2]);
+
+        // SysId - both flywheels together. URCL records them too, but LogAnalyzer can't decode URCL's raw frames.
+        sysIdRoutine = new SysIdRoutine(
+            new SysIdRoutine.Config(null, null, Units.Seconds.of(5.0)),
+            new SysIdRoutine.Mechanism(voltage -> runVolts(voltage.magnitude()),
+                log -> {
+                    log.motor("leftFlywheel")
+                        .voltage(Units.Volts.of(inputs.leftAppliedVolts()))
+                        .angularVelocity(Units.RotationsPerSecond.of(inputs.leftVelocity()));
+                    log.motor("rightFlywheel")
+                        .voltage(Units.Volts.of(inputs.rightAppliedVolts()))
+                        .angularVelocity(Units.RotationsPerSecond.of(inputs.rightVelocity()));
+                },
+                this));
+
+        readInputs();
+    }
+
+    /* Reads both flywheel encoders. Runs on a SensorAcquisition worker thread. */
+    public void readInputs() {
+        if (RobotBase.isSimulation()) {
+            inputs = simulatedInputs;
+            return;
+        }
+        inputs = new Inputs(
+            leftEncoder.getVelocity(), rightEncoder.getVelocity(),
+            leftFlyWheel.spark.getAppliedOutput() * leftFlyWheel.spark.getBusVoltage(),
+            rightFlyWheel.spark.getAppliedOutput() * rightFlyWheel.spark.getBusVoltage());
+    }
+
+    public Inputs getInputs() {
+        return inputs;
+    }
+
+    /**
+     * Sets the flywheel voltage goal, 0 or less to stop. Meant to be called every loop with whatever
+     * the shot needs right now.
+     */
+    public void setGoal(double volts) {
+        goalVoltage = Math.max(volts, 0);
+        if (goalVoltage > 0) {
+            setVoltage(goalVoltage);
+        } else {
+            setDutyCycle(0);
+        }
+    }
+
+    public double getGoal() {
+        return goalVoltage;
+    }
+
+    /**
+     * True once both flywheels have stopped accelerating at the current goal: spinning faster than
+     * Constants.Shooter.readyMinimumSpeed, with measured acceleration under readyAcceleration for
+     * readySettleTime. Goes by the encoders only, no model. False with no goal.
+     */
+    public boolean atGoal() {
+        return goalVoltage > 0 && !Double.isNaN(settledSince)
+            && Timer.getFPGATimestamp() - settledSince >= Constants.Shooter.readySettleTime;
+    }
+
+    /**
+     * Seconds until atGoal(): 0 once there or with no goal, the rest of the settle time while the
+     * wheels are settling, and NaN while they are still accelerating, since how long that takes
+     * needs a calibrated model.
+     */
+    public double timeToGoal() {
+        if (goalVoltage <= 0 || atGoal()) {
+            return 0;
+        }
+        if (Double.isNaN(settledSince)) {
+            return Double.NaN;
+        }
+        return Constants.Shooter.readySettleTime - (Timer.getFPGATimestamp() - settledSince);
+    }
+
+    /* Acceleration of both wheels over the last readyWindowLoops samples, and whether that counts as settled */
+    private void updateSettling(double now) {
+        leftHistory[historyIndex] = inputs.leftVelocity();
+        rightHistory[historyIndex] = inputs.rightVelocity();
+        timeHistory[historyIndex] = now;
+        historyIndex = (historyIndex + 1) % timeHistory.length;
+        historyCount = Math.min(historyCount + 1, timeHistory.length);
+
+        if (goalVoltage <= 0 || Math.abs(goalVoltage - settledGoal) > Constants.Shooter.readyRetargetVolts) {
+            settledGoal = goalVoltage;
+            settledSince = Double.NaN;
+        }
+        if (goalVoltage <= 0 || historyCount < timeHistory.length) {
+            return;
+        }
+        int oldest = historyIndex;   // the next slot to be written holds the oldest sample
+        double dt = now - timeHistory[oldest];
+        if (dt <= 0) {
+            return;
+        }
+        double leftAcceleration = (inputs.leftVelocity() - leftHistory[oldest]) / dt;
+        double rightAcceleration = (inputs.rightVelocity() - rightHistory[oldest]) / dt;
+        boolean settled = Math.abs(inputs.leftVelocity()) >= Constants.Shooter.readyMinimumSpeed
+            && Math.abs(inputs.rightVelocity()) >= Constants.Shooter.readyMinimumSpeed
+            && Math.abs(leftAcceleration) <= Constants.Shooter.readyAcceleration
+            && Math.abs(rightAcceleration) <= Constants.Shooter.readyAcceleration;
+        if (!settled) {
+            settledSince = Double.NaN;
+        } else if (Double.isNaN(settledSince)) {
+            settledSince = now;
+        }
     }
 
     @Override
     public void periodic(){
-        SmartDashboard.putNumber("LeftFlywheelVelocity", leftEncoder.getVelocity());
-        SmartDashboard.putNumber("RightFlywheelVelocity", rightEncoder.getVelocity());
+        double now = Timer.getFPGATimestamp();
+        updateSettling(now);
+        leftResponse.update(DataLogManager.getLog(), inputs.leftVelocity(), inputs.leftAppliedVolts(), now);
+        rightResponse.update(DataLogManager.getLog(), inputs.rightVelocity(), inputs.rightAppliedVolts(), now);
+    }
+
+    /* Dashboard values, run by the loop governor */
+    public void report() {
+        SmartDashboard.putNumber("LeftFlywheelVelocity", inputs.leftVelocity());
+        SmartDashboard.putNumber("RightFlywheelVelocity", inputs.rightVelocity());
     }
 
     public void setVoltage(double tangentialVelocity) {
@@ -50,14 +205,62 @@ public class ShooterWheels extends SubsystemBase {
             tangentialVelocity = Constants.Shooter.maxVoltage;
         }
         
+        // The battery may not be able to give us the full setpoint
+        tangentialVelocity = BatteryMonitor.limit(tangentialVelocity);
+
         leftController.setReference(tangentialVelocity, CANSparkBase.ControlType.kVoltage, 0, feedForward.calculate(tangentialVelocity)); // Before, we were using Constants.Electical.shooterHardcodedVoltage as an arbitrary feedforward. That was not ideal.
         rightController.setReference(tangentialVelocity, CANSparkBase.ControlType.kVoltage, 0, feedForward.calculate(tangentialVelocity));
+        // kVoltage adds the arbitrary feedforward to the setpoint
+        simVolts = MathUtil.clamp(tangentialVelocity + feedForward.calculate(tangentialVelocity),
+            -Constants.Electical.voltageComp, Constants.Electical.voltageComp);
+    }
+
+    /* Rebuilds the flywheel feedforward from {Ks, Kv, Ka}, and checks the response against the same gains */
+    public void setFeedforward(double[] sva) {
+        feedForward = new SimpleMotorFeedforward(sva[0], sva[1], sva[2]);
+        leftResponse.setGains(sva);
+        rightResponse.setGains(sva);
+    }
+
+    // SysId - raw voltage, no feedforward or minimum
+    public void runVolts(double volts) {
+        leftFlyWheel.setVoltage(volts);
+        rightFlyWheel.setVoltage(volts);
+        simVolts = volts;
+    }
+
+    public Command getSysIdCommand() {
+        return SysIdTests.all(sysIdRoutine);
+    }
+
+    public SparkController[] getMotors() {
+        return new SparkController[] {leftFlyWheel, rightFlyWheel};
     }
 
     public void setDutyCycle(double percent){
         percent = percent/100;
         leftController.setReference(percent, CANSparkBase.ControlType.kDutyCycle);
         rightController.setReference(percent, CANSparkBase.ControlType.kDutyCycle);
+        simVolts = percent * Constants.Electical.voltageComp;
+    }
+
+    /**
+     * Simulation only. Runs both flywheels through a NEO flywheel model for dt with the last
+     * commanded voltage; readInputs() picks the result up next loop.
+     */
+    public void simulate(double dt) {
+        if (leftSim == null) {
+            leftSim = new FlywheelSim(DCMotor.getNEO(1), Constants.Shooter.flywheelReduction, Constants.Simulation.flywheelMoi);
+            rightSim = new FlywheelSim(DCMotor.getNEO(1), Constants.Shooter.flywheelReduction, Constants.Simulation.flywheelMoi);
+        }
+        leftSim.setInputVoltage(simVolts);
+        rightSim.setInputVoltage(simVolts);
+        leftSim.update(dt);
+        rightSim.update(dt);
+        // Encoders are in wheel rotations per second
+        simulatedInputs = new Inputs(
+            leftSim.getAngularVelocityRadPerSec() / (2 * Math.PI), rightSim.getAngularVelocityRadPerSec() / (2 * Math.PI),
+            simVolts, simVolts);
     }
 
 }
@@ -1,5 +1,8 @@
 package frc.robot.subsystems;
 
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import com.kauailabs.navx.frc.AHRS;
 import com.pathplanner.lib.auto.AutoBuilder;
 import com.pathplanner.lib.util.PathPlannerLogging;
@@ -9,13 +12,17 @@ import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.geometry.Translation2d;
 import edu.wpi.first.math.kinematics.ChassisSpeeds;
 import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
-import edu.wpi.first.math.kinematics.SwerveDriveOdometry;
 import edu.wpi.first.math.kinematics.SwerveModulePosition;
 import edu.wpi.first.math.kinematics.SwerveModuleState;
 import edu.wpi.first.units.Measure;
 import edu.wpi.first.units.Voltage;
 import edu.wpi.first.units.Units;
+import edu.wpi.first.util.datalog.DoubleArrayLogEntry;
+import edu.wpi.first.util.datalog.IntegerLogEntry;
+import edu.wpi.first.wpilibj.DataLogManager;
 import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.RobotBase;
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.smartdashboard.Field2d;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.Command;
@@ -24,12 +31,25 @@ import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import edu.wpi.first.wpilibj2.command.WaitCommand;
 import edu.wpi.first.wpilibj2.command.sysid.SysIdRoutine;
 import frc.lib.configs.Sparkmax.SwerveModuleInfo;
+import frc.lib.math.SlipDetectingOdometry;
+import frc.lib.math.SwerveSetpointGenerator;
+import frc.lib.util.BatteryMonitor;
+import frc.lib.util.BootTracer;
+import frc.lib.util.SysIdTests;
 import frc.robot.Constants;
 
 public class Swerve extends SubsystemBase {
   private final AHRS gyro;
 
-  private SwerveDriveOdometry swerveOdometry;
+  private final SlipDetectingOdometry swerveOdometry = new SlipDetectingOdometry(
+      Constants.Swerve.modulePositions, Constants.Swerve.slipThreshold, Constants.Swerve.slipDropThreshold);
+  private final double[] moduleDistances = new double[4];
+  private final double[] moduleAngles = new double[4];
+  private final double[] slipResiduals = new double[4];
+  private double lastOdometryTime = -1;
+  private int lastSlipMask = 0;
+  private IntegerLogEntry slipMaskEntry;
+  private DoubleArrayLogEntry slipResidualEntry;
   private SwerveModule[] mSwerveMods;
 
   private boolean isX = false;
@@ -37,46 +57,84 @@ public class Swerve extends SubsystemBase {
   private boolean negativePitch = false;
 
   private Field2d field = new Field2d();
+  private List<Pose2d> activePath;
+  private List<Pose2d> drawnPath;
 
   private SysIdRoutine sysIdRoutine;
+  private SysIdRoutine steeringSysIdRoutine;
+
+  /* Latest navX readings, published by readGyroInputs() during the acquisition phase */
+  public record GyroInputs(double angleDegrees, float pitchDegrees, double rateDegreesPerSecond, double timestamp) {}
+
+  private volatile GyroInputs gyroInputs;
+
+  /* navX resets asked for on the main thread, done by readGyroInputs() on its own thread before the next read */
+  private static final int gyroZeroRequest = 1;
+  private static final int gyroInvertRequest = 2;
+  private final AtomicInteger gyroRequest = new AtomicInteger();
+
+  /* Simulation only: navX angle (before the angle adjustment) integrated from the simulated modules */
+  private volatile double simGyroAngle = 0;
+  private volatile double simGyroRate = 0;
+  private double simGyroAdjustment = 0;
+  private final SwerveModuleState[] simStates = new SwerveModuleState[4];
+
+  /* Limits each loop's change in module setpoints. Scratch arrays keep drive() allocation free. */
+  private final SwerveSetpointGenerator setpointGenerator = new SwerveSetpointGenerator(Constants.Swerve.modulePositions);
+  private final double[] measuredAngles = new double[4];
+  private final double[] measuredSpeeds = new double[4];
+
+  /* Yaw history ring buffer, about a second of loops. Main thread only, filled from gyroInputs in periodic() */
+  private final double[] yawHistory = new double[50];
+  private final double[] yawHistoryTimes = new double[50];
+  private int yawHistoryHead = 0;
+  private int yawHistoryCount = 0;
 
   public Swerve() {
-    gyro = new AHRS();
-    gyro.reset();
-    zeroGyro();
+    try (var span = BootTracer.begin("navX")) {
+      gyro = new AHRS();
+      gyro.reset();
+      zeroGyro();
+      readGyroInputs();   // acquisition hasn't started yet, apply the zero now
+    }
 
     mSwerveMods = new SwerveModule[4];
 
     for(int i = 0; i <= 3; i++){
-        mSwerveMods[i] = new SwerveModule(new SwerveModuleInfo(i));
+        final int moduleNumber = i;
+        mSwerveMods[i] = BootTracer.trace("Module " + i, () -> new SwerveModule(new SwerveModuleInfo(moduleNumber)));
     }
     
-    swerveOdometry = new SwerveDriveOdometry(Constants.Swerve.swerveKinematics, getAngle(), getPositions());
-
-    AutoBuilder.configureHolonomic(
-      this::getPose, 
-      this::resetOdometry, 
-      this::getSpeeds, 
-      this::driveRobotRelative, 
-      Constants.Swerve.pathFollowerConfig,
-      () -> {
-          // Boolean supplier that controls when the path will be mirrored for the red alliance
-          // This will flip the path being followed to the red side of the field.
-          // THE ORIGIN WILL REMAIN ON THE BLUE SIDE
-
-          var alliance = DriverStation.getAlliance();
-          if (alliance.isPresent()) {
-              return alliance.get() == DriverStation.Alliance.Red;
-          }
-          return false;
-      },
-      this
-    );
+    resetOdometry(new Pose2d());
+    resetSetpoint();
+
+    try (var span = BootTracer.begin("AutoBuilder")) {
+      AutoBuilder.configureHolonomic(
+        this::getPose, 
+        this::resetOdometry, 
+        this::getSpeeds, 
+        this::driveRobotRelative, 
+        Constants.Swerve.pathFollowerConfig,
+        () -> {
+            // Boolean supplier that controls when the path will be mirrored for the red alliance
+            // This will flip the path being followed to the red side of the field.
+            // THE ORIGIN WILL REMAIN ON THE BLUE SIDE
+
+            var alliance = DriverStation.getAlliance();
+            if (alliance.isPresent()) {
+                return alliance.get() == DriverStation.Alliance.Red;
+            }
+            return false;
+        },
+        this
+      );
+    }
 
     // Set up custom logging to add the current path to a field 2d widget
 
     //Check for later after current competitions
-    PathPlannerLogging.setLogActivePathCallback((poses) -> field.getObject("path").setPoses(poses));
+    // Only stored here, reportField() draws it when the loop governor lets it
+    PathPlannerLogging.setLogActivePathCallback((poses) -> activePath = poses);
 
     SmartDashboard.putData("Field", field);
 
@@ -86,7 +144,26 @@ public class Swerve extends SubsystemBase {
       conf,
       new SysIdRoutine.Mechanism(
         (voltage) -> this.runVolts(voltage),
-        null, // No log consumer, since data is recorded by URCL
+        // URCL records this too, but LogAnalyzer can't decode URCL's raw frames
+        log -> {
+          for (int i = 0; i < mSwerveMods.length; i++) {
+            SwerveModule.Inputs moduleInputs = mSwerveMods[i].getInputs();
+            log.motor("drive" + i)
+              .voltage(Units.Volts.of(moduleInputs.driveAppliedVolts()))
+              .linearPosition(Units.Meters.of(moduleInputs.drivePositionMeters()))
+              .linearVelocity(Units.MetersPerSecond.of(moduleInputs.driveVelocityMps()));
+          }
+        },
+        this
+      )
+    );
+
+    // SysId - steering motors, drive motors held at 0 V. Also recorded by URCL.
+    steeringSysIdRoutine = new SysIdRoutine(
+      new SysIdRoutine.Config(null, Units.Volts.of(4.0), Units.Seconds.of(5.0)),
+      new SysIdRoutine.Mechanism(
+        (voltage) -> this.runSteeringVolts(voltage),
+        null,
         this
       )
     );
@@ -94,31 +171,73 @@ public class Swerve extends SubsystemBase {
 
   @Override
   public void periodic(){
-    swerveOdometry.update(getAngle(), getPositions());
-    report();
+    double now = Timer.getFPGATimestamp();
+    recordYawHistory();
+    updateOdometry(now);
+    for (SwerveModule mod : mSwerveMods) {
+      mod.logResponse(DataLogManager.getLog(), now);
+    }
   }
 
   public void drive(
       Translation2d translation, double rotation, boolean fieldRelative, boolean isOpenLoop) {
-    SwerveModuleState[] swerveModuleStates =
-        Constants.Swerve.swerveKinematics.toSwerveModuleStates(
-            fieldRelative
-                ? ChassisSpeeds.fromFieldRelativeSpeeds(
-                    translation.getX(), translation.getY(), rotation, getAngle())
-                : new ChassisSpeeds(translation.getX(), translation.getY(), rotation));
-    SwerveDriveKinematics.desaturateWheelSpeeds(swerveModuleStates, Constants.Swerve.maxSpeed);
+    if (isX) {
       for (SwerveModule mod : mSwerveMods) {
-        if(isX){
-          mod.setDesiredState(mod.xState, isOpenLoop);
-        } else {
-          mod.setDesiredState(swerveModuleStates[mod.moduleNumber], isOpenLoop);
-        }
-      var modState = swerveModuleStates[mod.moduleNumber];
-      SmartDashboard.putNumber("Mod " + mod.moduleNumber + " desired angle: ", modState.angle.getDegrees());
-      SmartDashboard.putNumber("Mod " + mod.moduleNumber + " desired velocity: ", modState.speedMetersPerSecond);
+        mod.setDesiredState(mod.xState, isOpenLoop);
+      }
+      // Start from a standstill once we leave the X
+      resetSetpoint();
+      return;
+    }
+
+    double vx = translation.getX();
+    double vy = translation.getY();
+    if (fieldRelative) {
+      // Same rotation as ChassisSpeeds.fromFieldRelativeSpeeds, without the allocations
+      double yaw = getYawRadians();
+      double cos = Math.cos(yaw);
+      double sin = Math.sin(yaw);
+      double robotVx = vx * cos + vy * sin;
+      vy = -vx * sin + vy * cos;
+      vx = robotVx;
+    }
+    applySpeeds(vx, vy, rotation, isOpenLoop);
+  }
+
+  /* Runs robot relative speeds through the setpoint generator so every loop respects the module limits */
+  private void applySpeeds(double vx, double vy, double omega, boolean isOpenLoop) {
+    for (SwerveModule mod : mSwerveMods) {
+      measuredAngles[mod.moduleNumber] = mod.getInputs().angleDegrees();
+    }
+    setpointGenerator.generate(
+        vx, vy, omega,
+        Constants.Swerve.maxSpeed * BatteryMonitor.getHeadroom(),   // slow down evenly instead of saturating on a sagging battery
+        Constants.Swerve.maxAcceleration,
+        Constants.Swerve.maxModuleSteerRate,
+        measuredAngles,
+        0.02);
+    for (SwerveModule mod : mSwerveMods) {
+      mod.setDesiredState(setpointGenerator.getSpeed(mod.moduleNumber), setpointGenerator.getAngle(mod.moduleNumber), isOpenLoop);
+    }
+  }
+
+  /* Copies this loop's module setpoints into out as {speed, angle degrees} pairs, for logging. Doesn't allocate. */
+  public void getSetpoint(double[] out) {
+    for (int i = 0; i < mSwerveMods.length; i++) {
+      out[2 * i] = setpointGenerator.getSpeed(i);
+      out[2 * i + 1] = setpointGenerator.getAngle(i);
     }
   }
 
+  /* Makes the next setpoint start from the measured module states. Call when enabling. */
+  public void resetSetpoint() {
+    for (SwerveModule mod : mSwerveMods) {
+      measuredSpeeds[mod.moduleNumber] = mod.getInputs().driveVelocityMps();
+      measuredAngles[mod.moduleNumber] = mod.getInputs().angleDegrees();
+    }
+    setpointGenerator.reset(measuredSpeeds, measuredAngles);
+  }
+
   public void xPattern(){
     isX = !isX;
   }
@@ -143,16 +262,51 @@ public class Swerve extends SubsystemBase {
   public void driveRobotRelative(ChassisSpeeds robotRelativeSpeeds) {
     ChassisSpeeds targetSpeeds = ChassisSpeeds.discretize(robotRelativeSpeeds, 0.02);
 
-    SwerveModuleState[] targetStates = Constants.Swerve.swerveKinematics.toSwerveModuleStates(targetSpeeds);
-    setModuleStates(targetStates);
+    applySpeeds(targetSpeeds.vxMetersPerSecond, targetSpeeds.vyMetersPerSecond, targetSpeeds.omegaRadiansPerSecond, false);
+  }
+
+  /* Slip-aware odometry update. Slip events (which modules, and by how much) are logged when they change. */
+  private void updateOdometry(double now) {
+    readModulePositions();
+    double dt = lastOdometryTime < 0 ? 0.02 : now - lastOdometryTime;
+    lastOdometryTime = now;
+    int slipMask = swerveOdometry.update(getYawRadians(), moduleDistances, moduleAngles, dt);
+
+    if (slipMask != lastSlipMask) {
+      if (slipMaskEntry == null) {
+        slipMaskEntry = new IntegerLogEntry(DataLogManager.getLog(), "/Odometry/SlipMask");
+        slipResidualEntry = new DoubleArrayLogEntry(DataLogManager.getLog(), "/Odometry/SlipResiduals");
+      }
+      slipMaskEntry.append(slipMask);
+      lastSlipMask = slipMask;
+    }
+    if (slipMask != 0) {
+      for (int i = 0; i < 4; i++) {
+        slipResiduals[i] = swerveOdometry.getResidual(i);
+      }
+      slipResidualEntry.append(slipResiduals);
+    }
+  }
+
+  private void readModulePositions() {
+    for (SwerveModule mod : mSwerveMods) {
+      moduleDistances[mod.moduleNumber] = mod.getInputs().drivePositionMeters();
+      moduleAngles[mod.moduleNumber] = Math.toRadians(mod.getInputs().angleDegrees());
+    }
   }
 
   public Pose2d getPose() {
-    return swerveOdometry.getPoseMeters();
+    return swerveOdometry.getPose();
   }
 
   public void resetOdometry(Pose2d pose) {
-    swerveOdometry.resetPosition(getAngle(), getPositions(), pose);
+    readModulePositions();
+    swerveOdometry.reset(pose, getYawRadians(), moduleDistances);
+  }
+
+  /* Modules the odometry down-weighted or dropped last loop, bit per module */
+  public int getSlipMask() {
+    return lastSlipMask;
   }
 
   public SwerveModuleState[] getStates() {
@@ -175,16 +329,109 @@ public class Swerve extends SubsystemBase {
     return Constants.Swerve.swerveKinematics.toChassisSpeeds(getStates());
   }
 
+  /* Zeroes the yaw on the next sensor read */
   public void zeroGyro() {
-    gyro.zeroYaw();
-    gyro.setAngleAdjustment(0);
+    gyroRequest.set(gyroZeroRequest);
     negativePitch = false;
+    yawHistoryCount = 0;
+  }
+
+  /* Reads the navX, after applying any reset the main thread asked for. Runs on a SensorAcquisition worker thread. */
+  public void readGyroInputs() {
+    int request = gyroRequest.getAndSet(0);
+    if (RobotBase.isSimulation()) {
+      if (request == gyroZeroRequest) {
+        simGyroAngle = 0;
+        simGyroAdjustment = 0;
+      } else if (request == gyroInvertRequest) {
+        simGyroAdjustment = 180;
+      }
+      gyroInputs = new GyroInputs(simGyroAngle + simGyroAdjustment, 0, simGyroRate, Timer.getFPGATimestamp());
+      return;
+    }
+    if (request == gyroZeroRequest) {
+      gyro.zeroYaw();
+      gyro.setAngleAdjustment(0);
+    } else if (request == gyroInvertRequest) {
+      gyro.setAngleAdjustment(180);
+    }
+    gyroInputs = new GyroInputs(gyro.getAngle(), gyro.getPitch(), gyro.getRate(), Timer.getFPGATimestamp());
+  }
+
+  /**
+   * Simulation only. Steps every module, then turns the navX by the rotation the modules' states
+   * imply. readInputs() and readGyroInputs() pick the results up next loop.
+   */
+  public void simulate(double dt) {
+    for (int i = 0; i < mSwerveMods.length; i++) {
+      mSwerveMods[i].simulate(dt);
+    }
+    // Sim only, so the allocations here don't matter
+    for (int i = 0; i < mSwerveMods.length; i++) {
+      simStates[i] = mSwerveMods[i].getSimulatedState();
+    }
+    double omega = Constants.Swerve.swerveKinematics.toChassisSpeeds(simStates).omegaRadiansPerSecond;
+    // The navX is clockwise positive, which is what invertGyro undoes
+    double rate = Math.toDegrees(omega) * (Constants.Swerve.invertGyro ? -1 : 1);
+    simGyroRate = rate;
+    simGyroAngle += rate * dt;
+  }
+
+  /* Keeps a short yaw history so vision measurements can be matched to the yaw when the frame was taken */
+  private void recordYawHistory() {
+    GyroInputs inputs = gyroInputs;
+    if (yawHistoryCount > 0 && yawHistoryTimes[yawHistoryHead] == inputs.timestamp()) {
+      return;   // acquisition skipped this loop, nothing new
+    }
+    yawHistoryHead = (yawHistoryHead + 1) % yawHistory.length;
+    yawHistory[yawHistoryHead] = Math.toDegrees(getYawRadians());
+    yawHistoryTimes[yawHistoryHead] = inputs.timestamp();
+    yawHistoryCount = Math.min(yawHistoryCount + 1, yawHistory.length);
+  }
+
+  /**
+   * Yaw (CCW+, degrees, continuous) at an earlier FPGA timestamp, interpolated from the history
+   * recorded each loop. Falls back to the oldest/newest sample outside the recorded window.
+   */
+  public double getYawAt(double timestamp) {
+    int newer = yawHistoryHead;
+    for (int k = 1; k < yawHistoryCount; k++) {
+      int older = (yawHistoryHead - k + yawHistory.length) % yawHistory.length;
+      if (yawHistoryTimes[older] <= timestamp) {
+        double span = yawHistoryTimes[newer] - yawHistoryTimes[older];
+        double t = span > 0 ? (timestamp - yawHistoryTimes[older]) / span : 0;
+        return yawHistory[older] + (yawHistory[newer] - yawHistory[older]) * t;
+      }
+      newer = older;
+    }
+    return yawHistory[newer];
+  }
+
+  /* Yaw rate, CCW+ in radians per second */
+  public double getYawRate() {
+    double rate = Math.toRadians(gyroInputs.rateDegreesPerSecond());
+    return (Constants.Swerve.invertGyro) ? -rate : rate;
+  }
+
+  public GyroInputs getGyroInputs() {
+    return gyroInputs;
+  }
+
+  public SwerveModule[] getModules() {
+    return mSwerveMods;
+  }
+
+  /* Yaw, CCW+ in radians, continuous (not wrapped) */
+  public double getYawRadians() {
+    return Math.toRadians((Constants.Swerve.invertGyro)
+        ? 360 - gyroInputs.angleDegrees()
+        : gyroInputs.angleDegrees());
   }
 
   public Rotation2d getAngle() {
     return (Constants.Swerve.invertGyro)
-        ? Rotation2d.fromDegrees(360 - gyro.getAngle())
-        : Rotation2d.fromDegrees(gyro.getAngle());
+        ? Rotation2d.fromDegrees(360 - gyroInputs.angleDegrees())
+        : Rotation2d.fromDegrees(gyroInputs.angleDegrees());
   }
 
   public void resetToAbsolute() {
@@ -195,23 +442,28 @@ public class Swerve extends SubsystemBase {
 
   public float getPitch(){
     if (negativePitch){
-      return -gyro.getPitch();
+      return -gyroInputs.pitchDegrees();
     } else {
-      return gyro.getPitch();
+      return gyroInputs.pitchDegrees();
     }
   }
 
+  /* Turns the yaw around on the next sensor read */
   public void invertGyro(){
-    gyro.setAngleAdjustment(180);
+    gyroRequest.set(gyroInvertRequest);
     negativePitch = true;
+    yawHistoryCount = 0;
   }
 
   public AHRS getGyro(){
     return gyro;
   }
 
+  /* Dashboard values, run by the loop governor */
   public void report(){
     for (SwerveModule mod : mSwerveMods) {
+        SmartDashboard.putNumber("Mod " + mod.moduleNumber + " desired angle: ", setpointGenerator.getAngle(mod.moduleNumber));
+        SmartDashboard.putNumber("Mod " + mod.moduleNumber + " desired velocity: ", setpointGenerator.getSpeed(mod.moduleNumber));
         SmartDashboard.putNumber(
             "Mod " + mod.moduleNumber + " Cancoder", mod.getCanCoder().getDegrees());
         SmartDashboard.putNumber(
@@ -221,6 +473,16 @@ public class Swerve extends SubsystemBase {
       }
   
   }
+  /* Field2d robot pose and the active PathPlanner path, run by the loop governor */
+  public void reportField() {
+    field.setRobotPose(getPose());
+    List<Pose2d> path = activePath;
+    if (path != drawnPath) {
+      field.getObject("path").setPoses(path);
+      drawnPath = path;
+    }
+  }
+
 
   // SysId - function for setting voltage to motor.
   // This function just passes voltage value to each module.
@@ -230,18 +492,25 @@ public class Swerve extends SubsystemBase {
     }
   }
 
+  // SysId - steering only, the wheels don't roll
+  public void runSteeringVolts(Measure<Voltage> voltage) {
+    for (SwerveModule mod : mSwerveMods) {
+      mod.setVoltage(Units.Volts.of(0));
+      mod.setAngleVoltage(voltage);
+    }
+  }
+
+  // SysId - all 4 tests on the steering motors
+  public Command getSteeringTestCommand() {
+    return SysIdTests.all(steeringSysIdRoutine);
+  }
+
   // SysId - Method that builds a command to run all 4 SysId tests.
   public Command getTestCommand() {
     return new InstantCommand(
       () -> setModuleStates(new SwerveModuleState[]{new SwerveModuleState(0.0, 
          new Rotation2d(Constants.Setup.angleOffsets[0])),new SwerveModuleState(0.0, new Rotation2d(Constants.Setup.angleOffsets[1])),new SwerveModuleState(0.0, new Rotation2d(Constants.Setup.angleOffsets[2])),new SwerveModuleState(0.0, new Rotation2d(Constants.Setup.angleOffsets[3]))})).andThen(
           new WaitCommand(0.25)).andThen(
-          sysIdRoutine.quasistatic(SysIdRoutine.Direction.kForward)).andThen(
-          new WaitCommand(0.25)).andThen(
-          sysIdRoutine.quasistatic(SysIdRoutine.Direction.kReverse)).andThen(
-          new WaitCommand(0.25)).andThen(
-          sysIdRoutine.dynamic(SysIdRoutine.Direction.kForward)).andThen(
-          new WaitCommand(0.25)).andThen(
-          sysIdRoutine.dynamic(SysIdRoutine.Direction.kReverse));
+          SysIdTests.all(sysIdRoutine));
   }
 }
\ No newline at end of file
@@ -5,20 +5,25 @@ import com.revrobotics.CANSparkMax;
 import com.revrobotics.CANSparkBase.ControlType;
 import com.revrobotics.RelativeEncoder;
 import com.revrobotics.SparkPIDController;
+import edu.wpi.first.math.MathUtil;
 import edu.wpi.first.math.controller.SimpleMotorFeedforward;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.kinematics.SwerveModulePosition;
 import edu.wpi.first.math.kinematics.SwerveModuleState;
 import edu.wpi.first.units.Measure;
 import edu.wpi.first.units.Voltage;
+import edu.wpi.first.util.datalog.DataLog;
+import edu.wpi.first.wpilibj.RobotBase;
 import frc.robot.Constants;
 import frc.lib.Items.SparkMax.SparkController;
 import frc.lib.configs.Sparkmax.SwerveModuleInfo;
 import frc.lib.math.OnboardModuleState;
+import frc.lib.util.BatteryMonitor;
+import frc.lib.util.MotorResponseModel;
 
 public class SwerveModule {
   public int moduleNumber;
-  private Rotation2d lastAngle;
+  private double lastAngleDegrees;
   private Rotation2d angleOffset;
 
   private SparkController drive;
@@ -36,13 +41,30 @@ public class SwerveModule {
 
   public final SwerveModuleState xState;
 
-  private final SimpleMotorFeedforward feedforward =
+  /* Latest sensor readings, published by readInputs() during the acquisition phase */
+  public record Inputs(
+      double drivePositionMeters,
+      double driveVelocityMps,
+      double angleDegrees,
+      double canCoderRotations,
+      double driveAppliedVolts) {}
+
+  private volatile Inputs inputs;
+
+  private SimpleMotorFeedforward feedforward =
       new SimpleMotorFeedforward(
           Constants.SVA.driveMotorsSVA[0], Constants.SVA.driveMotorsSVA[1], Constants.SVA.driveMotorsSVA[2]);
 
+  private final MotorResponseModel driveResponse;
+
+  /* Simulation only: the commanded drive speed, and the module state the inputs come from */
+  private double simSpeedSetpoint = 0;
+  private volatile Inputs simulatedInputs = new Inputs(0, 0, 0, 0, 0);
+
   public SwerveModule(SwerveModuleInfo Info) {
     this.moduleNumber = Info.moduleNumber;
     this.angleOffset = Rotation2d.fromDegrees(Info.angleOffset);
+    driveResponse = new MotorResponseModel("Drive " + moduleNumber, Constants.SVA.driveMotorsSVA);
 
     this.drive = Info.drive;
     this.angle = Info.angle;
@@ -62,7 +84,8 @@ public class SwerveModule {
     driveEncoder = driveMotor.getEncoder();
     driveController = driveMotor.getPIDController();
 
-    lastAngle = getState().angle;
+    readInputs();
+    lastAngleDegrees = inputs.angleDegrees();
   }
 
   public void setDesiredState(SwerveModuleState desiredState, boolean isOpenLoop) {
@@ -73,7 +96,14 @@ public class SwerveModule {
     desiredState = OnboardModuleState.optimize(desiredState, getState().angle);
 
       setAngle(desiredState);
-      setSpeed(desiredState, isOpenLoop);
+      setSpeed(desiredState.speedMetersPerSecond, isOpenLoop);
+  }
+
+  /* For setpoints from SwerveSetpointGenerator, which are already optimized and rate limited. Doesn't allocate. */
+  public void setDesiredState(double speedMetersPerSecond, double angleDegrees, boolean isOpenLoop) {
+    angleController.setReference(angleDegrees, ControlType.kPosition);
+    lastAngleDegrees = angleDegrees;
+    setSpeed(speedMetersPerSecond, isOpenLoop);
   }
 
   void resetToAbsolute() {
@@ -81,47 +111,116 @@ public class SwerveModule {
     integratedAngleEncoder.setPosition(absolutePosition);
   }
 
-  private void setSpeed(SwerveModuleState desiredState, boolean isOpenLoop) {
+  private void setSpeed(double speedMetersPerSecond, boolean isOpenLoop) {
+    simSpeedSetpoint = speedMetersPerSecond;
     if (isOpenLoop) {
-      double percentOutput = desiredState.speedMetersPerSecond / Constants.Swerve.maxSpeed;
+      double percentOutput = speedMetersPerSecond / Constants.Swerve.maxSpeed;
       driveMotor.set(percentOutput);
     } else {
       driveController.setReference(
-          desiredState.speedMetersPerSecond,
+          speedMetersPerSecond,
           ControlType.kVelocity,
           0,
-          feedforward.calculate(desiredState.speedMetersPerSecond));
+          BatteryMonitor.limit(feedforward.calculate(speedMetersPerSecond)));
     }
   }
 
   // SysId - directly sets voltage value to motor
   public void setVoltage(Measure<Voltage> voltage) {
     driveController.setReference(voltage.magnitude(), ControlType.kVoltage);
+    simSpeedSetpoint = voltage.magnitude() / Constants.SVA.driveMotorsSVA[1];
+  }
+
+  // SysId - steering motor voltage
+  public void setAngleVoltage(Measure<Voltage> voltage) {
+    angleController.setReference(voltage.magnitude(), ControlType.kVoltage);
+  }
+
+  /* Rebuilds the drive feedforward from {Ks, Kv, Ka}, and checks the response against the same gains */
+  public void setDriveFeedforward(double[] sva) {
+    feedforward = new SimpleMotorFeedforward(sva[0], sva[1], sva[2]);
+    driveResponse.setGains(sva);
+  }
+
+  public SparkController getDriveMotor() {
+    return drive;
+  }
+
+  public SparkController getAngleMotor() {
+    return angle;
   }
 
   private void setAngle(SwerveModuleState desiredState) {
     // Prevent rotating module if speed is less then 1%. Prevents jittering.
-    Rotation2d angle =
+    double angle =
         (Math.abs(desiredState.speedMetersPerSecond) <= (Constants.Swerve.maxSpeed * 0.01))? 
-        lastAngle : desiredState.angle;
+        lastAngleDegrees : desiredState.angle.getDegrees();
+
+    angleController.setReference(angle, ControlType.kPosition);
+    lastAngleDegrees = angle;
+  }
+
+  /* Reads every sensor on the module. Runs on a SensorAcquisition worker thread. */
+  public void readInputs() {
+    if (RobotBase.isSimulation()) {
+      inputs = simulatedInputs;
+      return;
+    }
+    inputs = new Inputs(
+        driveEncoder.getPosition(),
+        driveEncoder.getVelocity(),
+        integratedAngleEncoder.getPosition(),
+        angleEncoder.getAbsolutePosition().refresh().getValueAsDouble(),
+        driveMotor.getAppliedOutput() * driveMotor.getBusVoltage());
+  }
+
+  public Inputs getInputs() {
+    return inputs;
+  }
+
+  /**
+   * Simulation only. The wheel reaches the commanded speed at Constants.Swerve.maxAcceleration and the
+   * module turns to the commanded angle at maxModuleSteerRate, with no slip. readInputs() picks the
+   * result up next loop.
+   */
+  void simulate(double dt) {
+    Inputs last = simulatedInputs;
+    double speed = last.driveVelocityMps()
+        + MathUtil.clamp(simSpeedSetpoint - last.driveVelocityMps(), -Constants.Swerve.maxAcceleration * dt, Constants.Swerve.maxAcceleration * dt);
+    double angle = last.angleDegrees()
+        + MathUtil.clamp(lastAngleDegrees - last.angleDegrees(), -Constants.Swerve.maxModuleSteerRate * dt, Constants.Swerve.maxModuleSteerRate * dt);
+    simulatedInputs = new Inputs(
+        last.drivePositionMeters() + speed * dt,
+        speed,
+        angle,
+        (angle + angleOffset.getDegrees()) / 360.0,
+        feedforward.calculate(speed));
+  }
+
+  /* The simulated module state simulate() just produced, before readInputs() publishes it */
+  SwerveModuleState getSimulatedState() {
+    Inputs simulated = simulatedInputs;
+    return new SwerveModuleState(simulated.driveVelocityMps(), Rotation2d.fromDegrees(simulated.angleDegrees()));
+  }
 
-    angleController.setReference(angle.getDegrees(), ControlType.kPosition);
-    lastAngle = angle;
+  /* Logs predicted vs actual drive velocity. Called once per loop by Swerve. */
+  void logResponse(DataLog log, double timestamp) {
+    driveResponse.update(log, inputs.driveVelocityMps(), inputs.driveAppliedVolts(), timestamp);
   }
 
   private Rotation2d getAngle() {
-    return Rotation2d.fromDegrees(integratedAngleEncoder.getPosition());
+    return Rotation2d.fromDegrees(inputs.angleDegrees());
   }
 
   public Rotation2d getCanCoder() {
-    return Rotation2d.fromRotations(angleEncoder.getAbsolutePosition().getValueAsDouble());
+    return Rotation2d.fromRotations(inputs.canCoderRotations());
   }
 
   public SwerveModuleState getState() {
-    return new SwerveModuleState(driveEncoder.getVelocity(), getAngle());
+    return new SwerveModuleState(inputs.driveVelocityMps(), getAngle());
   }
 
   public SwerveModulePosition getPostion() {
-    return new SwerveModulePosition(driveEncoder.getPosition(), getAngle());
+    return new SwerveModulePosition(inputs.drivePositionMeters(), getAngle());
   }
 }
\ No newline at end of file
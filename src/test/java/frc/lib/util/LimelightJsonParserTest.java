@@ -0,0 +1,139 @@
+package frc.lib.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+class LimelightJsonParserTest {
+    private static final double epsilon = 1e-9;
+
+    private static final String frame = "{\"Results\":{"
+        + "\"Classifier\":[],"
+        + "\"Detector\":[{\"class\":\"note\",\"classID\":0,\"conf\":0.87,\"ta\":0.012,\"tx\":-12.5,\"ty\":-3.25}],"
+        + "\"Fiducial\":[{\"fID\":7,\"fam\":\"36H11C\",\"t6r_ts\":[0.1,0.2,-1.5,0,12.5,0],\"ta\":0.004,\"tx\":1.5,\"ty\":2.5},"
+        + "{\"fID\":8,\"ta\":0.002,\"tx\":-4,\"ty\":0.5}],"
+        + "\"botpose\":[1.0,2.0,0.0,0.0,0.0,90.0],"
+        + "\"cl\":11.2,\"tl\":24.75,\"ts\":123456.5,\"v\":1}}";
+
+    @Test
+    void parsesAFullFrame() {
+        LimelightJsonParser parser = new LimelightJsonParser();
+        assertTrue(parser.parse(frame));
+        assertTrue(parser.valid);
+        assertEquals(24.75, parser.pipelineLatencyMs, epsilon);
+        assertEquals(11.2, parser.captureLatencyMs, epsilon);
+        assertEquals(123456.5, parser.timestampMs, epsilon);
+        assertArrayEquals(new double[] {1, 2, 0, 0, 0, 90}, parser.botpose, epsilon);
+
+        assertEquals(2, parser.fiducialCount);
+        assertEquals(7, parser.fiducialId[0]);
+        assertEquals(1.5, parser.fiducialTx[0], epsilon);
+        assertEquals(-4, parser.fiducialTx[1], epsilon);
+        assertEquals(-1.5, parser.fiducialRobotPose[2], epsilon);
+        assertEquals(12.5, parser.fiducialRobotPose[4], epsilon);
+        assertEquals(1, parser.findFiducial(8));
+        assertEquals(-1, parser.findFiducial(4));
+
+        assertEquals(1, parser.detectorCount);
+        assertEquals(0, parser.detectorClass[0]);
+        assertEquals(0.87, parser.detectorConfidence[0], epsilon);
+        assertEquals(-12.5, parser.detectorTx[0], epsilon);
+        assertEquals(-3.25, parser.detectorTy[0], epsilon);
+    }
+
+    @Test
+    void rejectsEveryTruncation() {
+        LimelightJsonParser parser = new LimelightJsonParser();
+        for (int length = 0; length < frame.length(); length++) {
+            assertFalse(parser.parse(frame.substring(0, length)), "accepted " + length + " characters");
+            assertFalse(parser.valid);
+            assertEquals(0, parser.fiducialCount);
+            assertEquals(0, parser.detectorCount);
+        }
+    }
+
+    @Test
+    void rejectsMalformedText() {
+        LimelightJsonParser parser = new LimelightJsonParser();
+        assertFalse(parser.parse(""));
+        assertFalse(parser.parse("[]"));
+        assertFalse(parser.parse("{\"tl\":}"));
+        assertFalse(parser.parse("{\"tl\":1e}"));
+        assertFalse(parser.parse("{\"tl\":-}"));
+        assertFalse(parser.parse("{\"Fiducial\":[{\"tx\":1,}]}"));
+        assertFalse(parser.parse("{\"name\":\"abc\\"));
+    }
+
+    @Test
+    void readsExponentsAndNegatives() {
+        LimelightJsonParser parser = new LimelightJsonParser();
+        assertTrue(parser.parse("{\"botpose\":[1e3,-2.5E-2,3.0e+1,-0,0.000125,-7]}"));
+        assertArrayEquals(new double[] {1000, -0.025, 30, 0, 0.000125, -7}, parser.botpose, epsilon);
+
+        assertTrue(parser.parse("{\"ts\":1.5e30,\"tl\":-1e-30}"));
+        assertEquals(1.5e30, parser.timestampMs, 1e15);
+        assertEquals(-1e-30, parser.pipelineLatencyMs, 1e-45);
+    }
+
+    @Test
+    void acceptsEmptyArraysAndObjects() {
+        LimelightJsonParser parser = new LimelightJsonParser();
+        assertTrue(parser.parse("{}"));
+        assertFalse(parser.valid);
+
+        assertTrue(parser.parse(" { \"Fiducial\" : [ ] , \"Detector\":[], \"Retro\":[{}], \"v\":0 } "));
+        assertEquals(0, parser.fiducialCount);
+        assertEquals(0, parser.detectorCount);
+        assertFalse(parser.valid);
+    }
+
+    @Test
+    void skipsUnknownValues() {
+        LimelightJsonParser parser = new LimelightJsonParser();
+        assertTrue(parser.parse("{\"pID\":0,\"flag\":true,\"none\":null,\"nested\":{\"a\":[1,{\"b\":\"}\"}]},\"tl\":5}"));
+        assertEquals(5, parser.pipelineLatencyMs, epsilon);
+    }
+
+    @Test
+    void dropsTargetsPastTheLimit() {
+        StringBuilder json = new StringBuilder("{\"Detector\":[");
+        for (int i = 0; i < LimelightJsonParser.maxTargets + 4; i++) {
+            json.append(i > 0 ? "," : "").append("{\"tx\":").append(i).append('}');
+        }
+        json.append("]}");
+
+        LimelightJsonParser parser = new LimelightJsonParser();
+        assertTrue(parser.parse(json));
+        assertEquals(LimelightJsonParser.maxTargets, parser.detectorCount);
+        assertEquals(LimelightJsonParser.maxTargets - 1, parser.detectorTx[LimelightJsonParser.maxTargets - 1], epsilon);
+    }
+
+    @Test
+    void reusedBufferHoldsOnlyTheLatestFrame() {
+        LimelightJsonParser parser = new LimelightJsonParser();
+        assertTrue(parser.parse(frame));
+
+        // Fewer targets, and a tag without the optional fields, must not show anything from the last frame
+        assertTrue(parser.parse("{\"Fiducial\":[{\"tx\":3}],\"v\":1}"));
+        assertEquals(1, parser.fiducialCount);
+        assertEquals(0, parser.detectorCount);
+        assertEquals(-1, parser.fiducialId[0]);
+        assertEquals(3, parser.fiducialTx[0], epsilon);
+        assertArrayEquals(new double[6], Arrays.copyOfRange(parser.fiducialRobotPose, 0, 6), epsilon);
+        assertEquals(-1, parser.findFiducial(7));
+
+        // A bad frame leaves nothing valid behind
+        assertFalse(parser.parse(frame.substring(0, frame.length() / 2)));
+        assertEquals(0, parser.fiducialCount);
+        assertEquals(-1, parser.findFiducial(7));
+
+        // And the next good one parses normally
+        assertTrue(parser.parse(frame));
+        assertEquals(2, parser.fiducialCount);
+    }
+}
@@ -0,0 +1,155 @@
+package frc.tools;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import edu.wpi.first.util.datalog.DataLogReader;
+import edu.wpi.first.util.datalog.DataLogRecord;
+
+/**
+ * Reports how much time each auto gained from the readiness-gated named commands, compared with the
+ * timed version that used fixed waits. Reads .wpilog files from the robot or from simulation; each
+ * run starts at an /Auto/Selected record, and the CommandTimer durations after it are added up until
+ * the next one.
+ *
+ * <p>Per run: gain = fixed waits the auto used to have (src/tools/auto-fixed-waits.properties)
+ * + time in AutoIntake, which used to block before each path and now runs alongside it
+ * - time in the gated commands (AutoReadyToShoot, AutoShoot).
+ * The old AutoReadyToShoot also waited for the pivot, so that part is counted against the gated
+ * version and the gain is a slight underestimate.
+ *
+ * <p>Usage: ./gradlew autoGainReport --args="path/to/log/or/directory ..."
+ */
+public class AutoGainReport {
+    private static final Path fixedWaitsFile = Path.of("src", "tools", "auto-fixed-waits.properties");
+    private static final String selectedEntry = "/Auto/Selected";
+    private static final String namedCommandPrefix = "/Auto/NamedCommands/";
+    private static final Set<String> gatedCommands = Set.of("AutoReadyToShoot", "AutoShoot");
+    private static final Set<String> parallelCommands = Set.of("AutoIntake");
+
+    private static class Run {
+        final String auto;
+        double gatedSeconds;
+        double parallelSeconds;
+        int gatedRuns;
+
+        Run(String auto) {
+            this.auto = auto;
+        }
+    }
+
+    /* Totals per auto over every run in every file */
+    private static class Summary {
+        int runs;
+        double gainSeconds;
+        double minGain = Double.POSITIVE_INFINITY;
+        double maxGain = Double.NEGATIVE_INFINITY;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: AutoGainReport <log file or directory> ...");
+            System.exit(2);
+        }
+
+        Properties fixedWaits = new Properties();
+        try (InputStream in = Files.newInputStream(fixedWaitsFile)) {
+            fixedWaits.load(in);
+        }
+
+        List<Path> files = new ArrayList<>();
+        for (String arg : args) {
+            try (Stream<Path> walk = Files.walk(Path.of(arg))) {
+                walk.filter(path -> path.toString().endsWith(".wpilog")).sorted().forEach(files::add);
+            }
+        }
+        if (files.isEmpty()) {
+            System.err.println("No .wpilog files found");
+            System.exit(1);
+        }
+
+        Map<String, Summary> summaries = new TreeMap<>();
+        for (Path file : files) {
+            List<Run> runs = read(file);
+            if (runs.isEmpty()) continue;
+            System.out.println("--- " + file.getFileName() + " ---");
+            for (Run run : runs) {
+                String waits = fixedWaits.getProperty(run.auto);
+                if (waits == null) {
+                    System.out.printf("  %-36s no timed version to compare with%n", run.auto);
+                    continue;
+                }
+                double gain = Double.parseDouble(waits) + run.parallelSeconds - run.gatedSeconds;
+                System.out.printf("  %-36s fixed waits %.2f s  gated %.2f s over %d commands  intake overlap %.2f s  gain %+.2f s%n",
+                    run.auto, Double.parseDouble(waits), run.gatedSeconds, run.gatedRuns, run.parallelSeconds, gain);
+
+                Summary summary = summaries.computeIfAbsent(run.auto, key -> new Summary());
+                summary.runs++;
+                summary.gainSeconds += gain;
+                summary.minGain = Math.min(summary.minGain, gain);
+                summary.maxGain = Math.max(summary.maxGain, gain);
+            }
+        }
+
+        System.out.println("=== Gain per auto ===");
+        summaries.forEach((auto, summary) -> System.out.printf("  %-36s %d runs  mean %+.2f s  min %+.2f s  max %+.2f s%n",
+            auto, summary.runs, summary.gainSeconds / summary.runs, summary.minGain, summary.maxGain));
+    }
+
+    static List<Run> read(Path file) {
+        List<Run> runs = new ArrayList<>();
+        try {
+            DataLogReader reader = new DataLogReader(file.toString());
+            if (!reader.isValid()) {
+                System.err.println(file + ": not a valid wpilog");
+                return runs;
+            }
+
+            int selected = -1;
+            Map<Integer, String> commands = new HashMap<>();
+            Run current = null;
+            for (DataLogRecord record : reader) {
+                if (record.isControl()) {
+                    if (record.isStart()) {
+                        DataLogRecord.StartRecordData data = record.getStartData();
+                        if (data.name.equals(selectedEntry)) {
+                            selected = data.entry;
+                        } else if (data.name.startsWith(namedCommandPrefix)) {
+                            commands.put(data.entry, data.name.substring(namedCommandPrefix.length()));
+                        }
+                    }
+                    continue;
+                }
+                if (record.getEntry() == selected) {
+                    current = new Run(record.getString());
+                    runs.add(current);
+                    continue;
+                }
+                String command = commands.get(record.getEntry());
+                if (command == null || current == null) continue;
+                if (gatedCommands.contains(command)) {
+                    current.gatedSeconds += record.getDouble();
+                    current.gatedRuns++;
+                } else if (parallelCommands.contains(command)) {
+                    current.parallelSeconds += record.getDouble();
+                }
+            }
+        } catch (IOException e) {
+            System.err.println(file + ": " + e.getMessage());
+        } catch (UncheckedIOException | IllegalArgumentException e) {
+            System.err.println(file + ": truncated or corrupt: " + e.getMessage());
+        }
+        return runs;
+    }
+}
@@ -0,0 +1,245 @@
+package frc.tools;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import frc.lib.util.CommandTimer;
+import frc.robot.Robot;
+
+/**
+ * Runs every PathPlanner auto headless in simulation, faster than real time, and reports how long
+ * each one takes. The robot is booted normally (Robot, RobotContainer, the auto chooser) with the
+ * HAL clock paused, and each 20 ms loop is released with SimHooks.stepTiming, so simulated time only
+ * moves as fast as the code can run.
+ *
+ * <p>HAL, the CommandScheduler and PathPlanner are all process-wide singletons, so every auto gets
+ * its own JVM. The parent lists the autos and runs up to one worker per core; each worker prints its
+ * results as tab separated lines that the parent collects into one report.
+ *
+ * <p>The mechanisms and drive run against the plant models stepped by Robot.simulationPeriodic:
+ * flywheel and arm sims for the shooter and pivot, a rate limited drive, and a lightbreak tripped by a
+ * simulated note. Notes are picked up by intake time wherever the robot is, there is no vision, and
+ * the model constants are estimates, so the times are against that plant, not a measured robot. Use
+ * them to compare autos and catch ones that stall or overrun, not as a match prediction.
+ *
+ * <p>Per auto:
+ * <ul>
+ *   <li>Simulated time until the auto command finished, and whether that fits in 15 s, on the simulated plant</li>
+ *   <li>Runs and time spent in each named command (CommandTimer)</li>
+ *   <li>Wall time per loop, which is the robot code's compute time since the clock is paused</li>
+ * </ul>
+ *
+ * <p>Usage: ./gradlew simulateAutos [--args="'Center, 4 Note' --workers 4"]
+ */
+public class AutoSimulationHarness {
+    private static final Path autosDirectory = Path.of("src", "main", "deploy", "pathplanner", "autos");
+    private static final double autoLength = 15.0;
+    private static final double simulationLimit = 20.0;   // keep going past 15 s to see by how much an auto overruns
+    private static final double disabledTime = 2.0;       // lets the chooser publish and ControlWarmup run first
+    private static final long workerTimeoutMinutes = 5;
+
+    record CommandResult(String name, int runs, int interrupted, double totalSeconds, double maxSeconds) {}
+
+    static class AutoResult {
+        final String auto;
+        boolean finished;
+        double seconds;
+        long loops;
+        double meanLoopMs;
+        double p99LoopMs;
+        double maxLoopMs;
+        double wallSeconds;
+        final List<CommandResult> commands = new ArrayList<>();
+        String error;
+
+        AutoResult(String auto) {
+            this.auto = auto;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 2 && args[0].equals("--worker")) {
+            runWorker(args[1]);
+            return;
+        }
+
+        int workers = Runtime.getRuntime().availableProcessors();
+        List<String> requested = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--workers") && i + 1 < args.length) {
+                workers = Integer.parseInt(args[++i]);
+            } else {
+                requested.add(args[i]);
+            }
+        }
+
+        List<String> autos;
+        try (Stream<Path> files = Files.list(autosDirectory)) {
+            autos = files.map(path -> path.getFileName().toString())
+                .filter(name -> name.endsWith(".auto"))
+                .map(name -> name.substring(0, name.length() - ".auto".length()))
+                .filter(name -> requested.isEmpty() || requested.contains(name))
+                .sorted()
+                .toList();
+        }
+        if (autos.isEmpty()) {
+            System.err.println("No autos found in " + autosDirectory.toAbsolutePath());
+            System.exit(1);
+        }
+
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(workers, autos.size())));
+        List<Future<AutoResult>> futures = new ArrayList<>();
+        for (String auto : autos) {
+            futures.add(pool.submit(() -> launchWorker(auto)));
+        }
+        List<AutoResult> results = new ArrayList<>();
+        for (Future<AutoResult> future : futures) {
+            results.add(future.get());
+        }
+        pool.shutdown();
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        boolean failed = false;
+        for (AutoResult result : results) {
+            System.out.print(format(result));
+            failed |= result.error != null;
+        }
+        double simulated = results.stream().mapToDouble(result -> result.seconds).sum();
+        System.out.printf("=== %d autos, %.1f s simulated in %.1f s wall (%.1fx real time) ===%n",
+            results.size(), simulated, elapsed, simulated / elapsed);
+        System.out.println("Auto times are against the Constants.Simulation plant models, not a measured robot");
+        System.exit(failed ? 1 : 0);
+    }
+
+    /* Parent side: runs one auto in a child JVM with the same classpath and native libraries */
+    private static AutoResult launchWorker(String auto) {
+        AutoResult result = new AutoResult(auto);
+        long start = System.nanoTime();
+        ProcessBuilder builder = new ProcessBuilder(
+            Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+            "-cp", System.getProperty("java.class.path"),
+            "-Djava.library.path=" + System.getProperty("java.library.path"),
+            AutoSimulationHarness.class.getName(), "--worker", auto)
+            .redirectErrorStream(true);
+
+        // Keep the tail of the output so a crash can be reported
+        ArrayDeque<String> tail = new ArrayDeque<>();
+        try {
+            Process process = builder.start();
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!parse(result, line)) {
+                        tail.addLast(line);
+                        if (tail.size() > 20) {
+                            tail.removeFirst();
+                        }
+                    }
+                }
+            }
+            if (!process.waitFor(workerTimeoutMinutes, TimeUnit.MINUTES)) {
+                process.destroyForcibly();
+                result.error = "worker timed out";
+            } else if (process.exitValue() != 0) {
+                result.error = "worker exited with " + process.exitValue() + System.lineSeparator() + String.join(System.lineSeparator(), tail);
+            }
+        } catch (IOException e) {
+            result.error = e.getMessage();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.error = "interrupted";
+        }
+        result.wallSeconds = (System.nanoTime() - start) / 1e9;
+        return result;
+    }
+
+    private static boolean parse(AutoResult result, String line) {
+        String[] fields = line.split("\t");
+        if (fields[0].equals("RESULT") && fields.length == 7) {
+            result.finished = Boolean.parseBoolean(fields[1]);
+            result.seconds = Double.parseDouble(fields[2]);
+            result.loops = Long.parseLong(fields[3]);
+            result.meanLoopMs = Double.parseDouble(fields[4]);
+            result.p99LoopMs = Double.parseDouble(fields[5]);
+            result.maxLoopMs = Double.parseDouble(fields[6]);
+            return true;
+        }
+        if (fields[0].equals("COMMAND") && fields.length == 6) {
+            result.commands.add(new CommandResult(fields[1], Integer.parseInt(fields[2]), Integer.parseInt(fields[3]),
+                Double.parseDouble(fields[4]), Double.parseDouble(fields[5])));
+            return true;
+        }
+        return false;
+    }
+
+    /* Worker side: boots the robot with the clock paused and steps it through one auto */
+    private static void runWorker(String auto) throws Exception {
+        SimulatedRobot sim = SimulatedRobot.boot();
+        Robot robot = sim.getRobot();
+        sim.step(disabledTime);
+        sim.selectAuto(auto);
+        sim.enable(true);
+        sim.step();   // autonomousInit runs in this loop
+
+        Histogram loopTimes = new Histogram(0.05, 200.0);
+        long loops = 0;
+        while (robot.isAutonomousRunning() && loops * SimulatedRobot.period < simulationLimit) {
+            sim.step();
+            loopTimes.add(sim.getLastLoopMs());
+            loops++;
+        }
+        boolean finished = !robot.isAutonomousRunning();
+        double seconds = loops * SimulatedRobot.period;
+
+        sim.disable();
+        sim.step();
+
+        System.out.printf(Locale.ROOT, "RESULT\t%b\t%.3f\t%d\t%.4f\t%.4f\t%.4f%n", finished && seconds <= autoLength, seconds, loops,
+            loopTimes.getMean(), loopTimes.percentile(0.99), loopTimes.getMax());
+        for (Map.Entry<String, CommandTimer.Stats> entry : CommandTimer.getTotals().entrySet()) {
+            CommandTimer.Stats stats = entry.getValue();
+            System.out.printf(Locale.ROOT, "COMMAND\t%s\t%d\t%d\t%.4f\t%.4f%n", entry.getKey(), stats.runs(), stats.interrupted(),
+                stats.totalSeconds(), stats.maxSeconds());
+        }
+        System.out.flush();
+        // HAL and NetworkTables threads would keep the JVM alive
+        System.exit(0);
+    }
+
+    private static String format(AutoResult result) {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("--- %s (%.1f s wall) ---%n", result.auto, result.wallSeconds));
+        if (result.error != null) {
+            out.append("  error: ").append(result.error).append(System.lineSeparator());
+            return out.toString();
+        }
+        out.append(String.format("  Duration %.2f s  %s%n", result.seconds,
+            result.finished ? "finishes in " + (int) autoLength + " s"
+                : result.seconds >= simulationLimit ? "DID NOT FINISH" : "OVER " + (int) autoLength + " s"));
+        out.append(String.format("  Loop compute: %d loops  mean %.2f ms  p99 %.2f ms  max %.2f ms%n",
+            result.loops, result.meanLoopMs, result.p99LoopMs, result.maxLoopMs));
+
+        List<CommandResult> used = new ArrayList<>(result.commands.stream().filter(command -> command.runs() > 0).toList());
+        used.sort((a, b) -> Double.compare(b.totalSeconds(), a.totalSeconds()));
+        for (CommandResult command : used) {
+            out.append(String.format("    %-24s %2d runs  %6.2f s total  %6.2f s max%s%n",
+                command.name(), command.runs(), command.totalSeconds(), command.maxSeconds(),
+                command.interrupted() > 0 ? "  (" + command.interrupted() + " interrupted)" : ""));
+        }
+        return out.toString();
+    }
+}
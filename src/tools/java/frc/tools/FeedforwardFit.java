@@ -0,0 +1,144 @@
+package frc.tools;
+
+/**
+ * Streaming least squares fit of the SysId feedforward models. The simple motor model is
+ * V = Ks*sgn(v) + Kv*v + Ka*a; the arm model adds Kg*cos(angle), with the angle measured from level.
+ * Only the normal equation sums are kept, so any amount of data fits in a few doubles.
+ * Acceleration comes from differencing consecutive velocity samples.
+ */
+public class FeedforwardFit {
+    private static final double minVelocity = 1e-3;   // samples slower than this don't tell us which way Ks acts
+
+    private final boolean arm;
+    private final int terms;
+
+    /* X^T X and X^T y for x = {sgn(v), v, a} or {sgn(v), v, a, cos(angle)} */
+    private final double[][] xtx;
+    private final double[] xty;
+    private final double[] x;
+    private double yy;
+    private long samples;
+
+    private double lastVelocity;
+    private double lastTime = -1;
+
+    /* Simple motor model */
+    public FeedforwardFit() {
+        this(false);
+    }
+
+    /**
+     * @param arm Fit the arm model, with a Kg*cos(angle) term. Samples must then come with an angle.
+     */
+    public FeedforwardFit(boolean arm) {
+        this.arm = arm;
+        terms = arm ? 4 : 3;
+        xtx = new double[terms][terms];
+        xty = new double[terms];
+        x = new double[terms];
+    }
+
+    public boolean isArm() {
+        return arm;
+    }
+
+    /**
+     * @param volts Applied voltage at this sample
+     * @param velocity Measured velocity at this sample
+     * @param time Seconds
+     */
+    public void add(double volts, double velocity, double time) {
+        add(volts, velocity, 0, time);
+    }
+
+    /**
+     * @param volts Applied voltage at this sample
+     * @param velocity Measured velocity at this sample
+     * @param angleRadians Angle from level, only used by the arm model
+     * @param time Seconds
+     */
+    public void add(double volts, double velocity, double angleRadians, double time) {
+        double dt = time - lastTime;
+        boolean valid = lastTime >= 0 && dt > 0 && dt < 0.1 && Math.abs(velocity) > minVelocity;
+        double accel = valid ? (velocity - lastVelocity) / dt : 0;
+        lastVelocity = velocity;
+        lastTime = time;
+        if (!valid) {
+            return;
+        }
+
+        x[0] = Math.signum(velocity);
+        x[1] = velocity;
+        x[2] = accel;
+        if (arm) {
+            x[3] = Math.cos(angleRadians);
+        }
+        for (int i = 0; i < terms; i++) {
+            for (int j = i; j < terms; j++) {
+                xtx[i][j] += x[i] * x[j];
+            }
+            xty[i] += x[i] * volts;
+        }
+        yy += volts * volts;
+        samples++;
+    }
+
+    public long getSamples() {
+        return samples;
+    }
+
+    /**
+     * @return {Ks, Kv, Ka, r squared}, or {Ks, Kv, Ka, Kg, r squared} for the arm model. Null if
+     *     there isn't enough data to solve.
+     */
+    public double[] solve() {
+        if (samples < 10) {
+            return null;
+        }
+        double[][] m = new double[terms][terms + 1];
+        for (int i = 0; i < terms; i++) {
+            for (int j = 0; j < terms; j++) {
+                m[i][j] = i <= j ? xtx[i][j] : xtx[j][i];
+            }
+            m[i][terms] = xty[i];
+        }
+        // Gauss-Jordan elimination with partial pivoting
+        for (int col = 0; col < terms; col++) {
+            int pivot = col;
+            for (int row = col + 1; row < terms; row++) {
+                if (Math.abs(m[row][col]) > Math.abs(m[pivot][col])) {
+                    pivot = row;
+                }
+            }
+            if (Math.abs(m[pivot][col]) < 1e-12) {
+                return null;
+            }
+            double[] swap = m[col]; m[col] = m[pivot]; m[pivot] = swap;
+            for (int row = 0; row < terms; row++) {
+                if (row == col) continue;
+                double factor = m[row][col] / m[col][col];
+                for (int k = col; k <= terms; k++) {
+                    m[row][k] -= factor * m[col][k];
+                }
+            }
+        }
+        double[] result = new double[terms + 1];
+        for (int i = 0; i < terms; i++) {
+            result[i] = m[i][terms] / m[i][i];
+        }
+
+        // r^2 from the sums: SSres = y'y - 2 b'X'y + b'X'Xb
+        double explained = 0;
+        double xtxb = 0;
+        for (int i = 0; i < terms; i++) {
+            explained += result[i] * xty[i];
+            for (int j = 0; j < terms; j++) {
+                xtxb += result[i] * (i <= j ? xtx[i][j] : xtx[j][i]) * result[j];
+            }
+        }
+        double residual = yy - 2 * explained + xtxb;
+        // The model has no intercept, so this is the uncentered r^2
+        result[terms] = yy > 0 ? 1 - residual / yy : 0;
+        return result;
+    }
+}
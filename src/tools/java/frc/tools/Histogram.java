@@ -0,0 +1,69 @@
+package frc.tools;
+
+/**
+ * Fixed-bin histogram so a distribution can be built while streaming through a log, no matter how
+ * long the log is. Values past the last bin land in it, and the true max is kept separately.
+ */
+public class Histogram {
+    private final double binWidth;
+    private final long[] bins;
+    private long count;
+    private double sum;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public Histogram(double binWidth, double maxValue) {
+        this.binWidth = binWidth;
+        this.bins = new long[(int) Math.ceil(maxValue / binWidth) + 1];
+    }
+
+    public void add(double value) {
+        int bin = (int) (value / binWidth);
+        bins[Math.max(0, Math.min(bins.length - 1, bin))]++;
+        count++;
+        sum += value;
+        max = Math.max(max, value);
+    }
+
+    public void merge(Histogram other) {
+        for (int i = 0; i < bins.length; i++) {
+            bins[i] += other.bins[i];
+        }
+        count += other.count;
+        sum += other.sum;
+        max = Math.max(max, other.max);
+    }
+
+    /* Upper edge of the bin holding the given fraction (0 to 1) of samples */
+    public double percentile(double fraction) {
+        long target = (long) Math.ceil(fraction * count);
+        long seen = 0;
+        for (int i = 0; i < bins.length; i++) {
+            seen += bins[i];
+            if (seen >= target) {
+                return Math.min((i + 1) * binWidth, max);
+            }
+        }
+        return max;
+    }
+
+    /* Samples strictly above the threshold, to bin resolution */
+    public long countAbove(double threshold) {
+        long above = 0;
+        for (int i = (int) Math.ceil(threshold / binWidth); i < bins.length; i++) {
+            above += bins[i];
+        }
+        return above;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMean() {
+        return count == 0 ? 0 : sum / count;
+    }
+
+    public double getMax() {
+        return count == 0 ? 0 : max;
+    }
+}
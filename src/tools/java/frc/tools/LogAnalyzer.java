@@ -0,0 +1,268 @@
+package frc.tools;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import edu.wpi.first.util.datalog.DataLogReader;
+import edu.wpi.first.util.datalog.DataLogRecord;
+
+/**
+ * Mines .wpilog files from the robot (DataLogManager and URCL share the same log). Each file is
+ * memory-mapped by DataLogReader and walked record by record, and every signal we care about is
+ * folded into fixed-size statistics as it goes past, so a file is never held in memory. Files are
+ * analyzed in parallel, one per core.
+ *
+ * <p>Reports per file:
+ * <ul>
+ *   <li>Loop time distribution from /Robot/LoopTimeMs</li>
+ *   <li>CAN utilization from /Robot/CANUtilization</li>
+ *   <li>Peak and mean current for every double entry whose name ends in Current, which includes
+ *       PowerManager's per-motor /Power/group/id/Current</li>
+ *   <li>Ks/Kv/Ka least squares fits from MotorResponseModel (/Response/name/Volts + Actual) and
+ *       SysIdRoutine logs (voltage-motor-mechanism + velocity-motor-mechanism). Motors in
+ *       {@link #armMotors} are fitted with the arm model, adding Kg from position-motor-mechanism.</li>
+ * </ul>
+ *
+ * <p>Only double entries are read. URCL's raw Spark status frames are not decoded, so anything that
+ * is only in URCL (the steering and elevator SysId runs, per-motor voltage on the other Sparks) has
+ * to go through the SysId log itself, or be opened in AdvantageScope. The drive, flywheel and pivot
+ * SysId routines log their own voltage, position and velocity for this reason.
+ *
+ * <p>Usage: ./gradlew analyzeLogs --args="path/to/log/or/directory ..."
+ */
+public class LogAnalyzer {
+    private static final double loopBudgetMs = 20.0;
+    private static final double currentWarning = 40.0;   // amps, the old static limit on most motors
+
+    private static final Pattern responseEntry = Pattern.compile("^/Response/(.+)/(Volts|Actual)$");
+    private static final Pattern sysIdEntry = Pattern.compile("^(voltage|position|velocity)-([^-]+)-(.+)$");
+
+    /* SysId motor names fitted with the arm model. Their position has to be logged relative to level. */
+    private static final Set<String> armMotors = Set.of("pivot");
+
+    /* Pairs a voltage signal (and for arms, a position) with a velocity signal logged in the same loop */
+    private static class FitInput {
+        final FeedforwardFit fit;
+        double volts;
+        double voltsTime = -1;
+        double angle;
+        double angleTime = -1;
+
+        FitInput(boolean arm) {
+            fit = new FeedforwardFit(arm);
+        }
+
+        void volts(double value, double time) {
+            volts = value;
+            voltsTime = time;
+        }
+
+        /* Radians from level */
+        void angle(double value, double time) {
+            angle = value;
+            angleTime = time;
+        }
+
+        void velocity(double value, double time) {
+            if (voltsTime < 0 || Math.abs(time - voltsTime) >= 0.005) {
+                return;
+            }
+            if (!fit.isArm()) {
+                fit.add(volts, value, time);
+            } else if (angleTime >= 0 && Math.abs(time - angleTime) < 0.005) {
+                fit.add(volts, value, angle, time);
+            }
+        }
+    }
+
+    static class Report {
+        final Path file;
+        long bytes;
+        long records;
+        double seconds;
+        String error;
+        final Histogram loopTimes = new Histogram(0.1, 200.0);
+        final Histogram canUtilization = new Histogram(0.5, 100.0);
+        final Map<String, Histogram> currents = new TreeMap<>();
+        final Map<String, FitInput> fits = new TreeMap<>();
+
+        Report(Path file) {
+            this.file = file;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: LogAnalyzer <log file or directory> ...");
+            System.exit(2);
+        }
+
+        List<Path> files = new ArrayList<>();
+        for (String arg : args) {
+            try (Stream<Path> walk = Files.walk(Path.of(arg))) {
+                walk.filter(path -> path.toString().endsWith(".wpilog")).sorted().forEach(files::add);
+            }
+        }
+        if (files.isEmpty()) {
+            System.err.println("No .wpilog files found");
+            System.exit(1);
+        }
+
+        long start = System.nanoTime();
+        List<Report> reports = files.parallelStream().map(LogAnalyzer::analyze).toList();
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        Histogram allLoops = new Histogram(0.1, 200.0);
+        long totalBytes = 0;
+        for (Report report : reports) {
+            System.out.println(format(report));
+            allLoops.merge(report.loopTimes);
+            totalBytes += report.bytes;
+        }
+
+        System.out.printf("=== %d logs, %.1f MB in %.2f s (%.0f MB/s) ===%n",
+            reports.size(), totalBytes / 1e6, elapsed, totalBytes / 1e6 / elapsed);
+        if (allLoops.getCount() > 0) {
+            System.out.println("All loops: " + formatLoops(allLoops));
+        }
+    }
+
+    static Report analyze(Path file) {
+        Report report = new Report(file);
+        long start = System.nanoTime();
+        try {
+            report.bytes = Files.size(file);
+            DataLogReader reader = new DataLogReader(file.toString());
+            if (!reader.isValid()) {
+                report.error = "not a valid wpilog";
+                return report;
+            }
+
+            Map<Integer, Consumer<DataLogRecord>> handlers = new HashMap<>();
+            for (DataLogRecord record : reader) {
+                report.records++;
+                if (record.isControl()) {
+                    if (record.isStart()) {
+                        DataLogRecord.StartRecordData data = record.getStartData();
+                        Consumer<DataLogRecord> handler = handlerFor(report, data.name, data.type);
+                        if (handler != null) {
+                            handlers.put(data.entry, handler);
+                        }
+                    } else if (record.isFinish()) {
+                        handlers.remove(record.getFinishEntry());
+                    }
+                    continue;
+                }
+                Consumer<DataLogRecord> handler = handlers.get(record.getEntry());
+                if (handler != null) {
+                    handler.accept(record);
+                }
+            }
+        } catch (IOException e) {
+            report.error = e.getMessage();
+        } catch (UncheckedIOException | IllegalArgumentException e) {
+            report.error = "truncated or corrupt: " + e.getMessage();
+        }
+        report.seconds = (System.nanoTime() - start) / 1e9;
+        return report;
+    }
+
+    /* Decides what to do with an entry when it starts. Returns null for entries we ignore. */
+    private static Consumer<DataLogRecord> handlerFor(Report report, String name, String type) {
+        if (!type.equals("double")) {
+            return null;
+        }
+        if (name.equals("/Robot/LoopTimeMs")) {
+            return record -> report.loopTimes.add(record.getDouble());
+        }
+        if (name.equals("/Robot/CANUtilization")) {
+            return record -> report.canUtilization.add(record.getDouble());
+        }
+        if (name.endsWith("Current")) {
+            Histogram histogram = report.currents.computeIfAbsent(name, key -> new Histogram(1.0, 250.0));
+            return record -> histogram.add(record.getDouble());
+        }
+
+        Matcher response = responseEntry.matcher(name);
+        if (response.matches()) {
+            FitInput input = report.fits.computeIfAbsent(response.group(1), key -> new FitInput(false));
+            return response.group(2).equals("Volts")
+                ? record -> input.volts(record.getDouble(), record.getTimestamp() / 1e6)
+                : record -> input.velocity(record.getDouble(), record.getTimestamp() / 1e6);
+        }
+        Matcher sysId = sysIdEntry.matcher(name);
+        if (sysId.matches()) {
+            boolean arm = armMotors.contains(sysId.group(2));
+            FitInput input = report.fits.computeIfAbsent("sysid " + sysId.group(2) + " (" + sysId.group(3) + ")",
+                key -> new FitInput(arm));
+            switch (sysId.group(1)) {
+                case "voltage":
+                    return record -> input.volts(record.getDouble(), record.getTimestamp() / 1e6);
+                case "position":
+                    // SysIdRoutineLog stores angles in rotations
+                    return arm ? record -> input.angle(record.getDouble() * 2 * Math.PI, record.getTimestamp() / 1e6) : null;
+                default:
+                    // Arm gains in deg/s, the units PivotSVA is tuned in
+                    double scale = arm ? 360.0 : 1.0;
+                    return record -> input.velocity(record.getDouble() * scale, record.getTimestamp() / 1e6);
+            }
+        }
+        return null;
+    }
+
+    private static String format(Report report) {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("--- %s (%.1f MB, %d records, %.2f s) ---%n",
+            report.file.getFileName(), report.bytes / 1e6, report.records, report.seconds));
+        if (report.error != null) {
+            out.append("  error: ").append(report.error).append(System.lineSeparator());
+        }
+
+        if (report.loopTimes.getCount() > 0) {
+            out.append("  Loop: ").append(formatLoops(report.loopTimes)).append(System.lineSeparator());
+        }
+        if (report.canUtilization.getCount() > 0) {
+            out.append(String.format("  CAN: mean %.1f%%  p95 %.1f%%  max %.1f%%%n",
+                report.canUtilization.getMean(), report.canUtilization.percentile(0.95), report.canUtilization.getMax()));
+        }
+
+        if (!report.currents.isEmpty()) {
+            out.append("  Current (peak / mean / samples over ").append((int) currentWarning).append(" A):").append(System.lineSeparator());
+            report.currents.forEach((name, histogram) -> out.append(String.format("    %-40s %6.1f A  %6.1f A  %d%n",
+                name, histogram.getMax(), histogram.getMean(), histogram.countAbove(currentWarning))));
+        }
+
+        report.fits.forEach((name, input) -> {
+            double[] gains = input.fit.solve();
+            if (gains == null) {
+                return;
+            }
+            if (input.fit.isArm()) {
+                out.append(String.format("  Arm feedforward %-24s Ks %.4f  Kv %.4f  Ka %.4f  Kg %.4f  r2 %.3f  (%d samples)%n",
+                    name, gains[0], gains[1], gains[2], gains[3], gains[4], input.fit.getSamples()));
+            } else {
+                out.append(String.format("  Feedforward %-28s Ks %.4f  Kv %.4f  Ka %.4f  r2 %.3f  (%d samples)%n",
+                    name, gains[0], gains[1], gains[2], gains[3], input.fit.getSamples()));
+            }
+        });
+        return out.toString();
+    }
+
+    private static String formatLoops(Histogram loops) {
+        return String.format("%d loops  mean %.2f ms  p50 %.1f  p90 %.1f  p99 %.1f  max %.1f ms  overruns %d",
+            loops.getCount(), loops.getMean(), loops.percentile(0.5), loops.percentile(0.9),
+            loops.percentile(0.99), loops.getMax(), loops.countAbove(loopBudgetMs));
+    }
+}
@@ -0,0 +1,193 @@
+package frc.tools;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+
+import edu.wpi.first.wpilibj.XboxController;
+import edu.wpi.first.wpilibj.simulation.DriverStationSim;
+import edu.wpi.first.wpilibj.simulation.XboxControllerSim;
+import frc.robot.Robot;
+
+/**
+ * Loop performance regression check. Boots the robot in simulation, runs an auto and a minute of
+ * teleop with scripted controller inputs, and measures every loop's wall time and the bytes the robot
+ * thread allocated. The results are compared against a checked-in baseline and the run fails (exit
+ * code 1) if any phase got slower or allocates more than the tolerances allow.
+ *
+ * <p>Wall time depends on the machine, so the baseline should come from the machine that runs the
+ * check. Allocation doesn't, and is the more reliable of the two.
+ *
+ * <p>Usage: ./gradlew checkLoopPerformance [--args="--update-baseline"]. A missing baseline, or a
+ * value missing from it, fails the check; it is only ever written by an explicit --update-baseline
+ * run, whose numbers should be reviewed and committed. Part of ./gradlew check, so build runs it.
+ */
+public class LoopPerformanceSuite {
+    private static final Path baselineFile = Path.of("src", "tools", "loop-performance-baseline.properties");
+    private static final String auto = "Center, 4 Note";
+
+    private static final double warmupSeconds = 5.0;      // disabled, ControlWarmup gets the JIT going
+    private static final double autoSeconds = 15.0;
+    private static final double teleopSeconds = 60.0;
+
+    /* Tolerances: a phase fails if it's over baseline * ratio + slack */
+    private static final double timeRatio = 1.5;
+    private static final double timeSlackMs = 0.5;
+    private static final double bytesRatio = 1.10;
+    private static final double bytesSlack = 256;
+
+    /* One button held for part of every cycle of the script */
+    private record Press(XboxControllerSim controller, int button, double every, double at, double hold) {
+        boolean isDown(double t) {
+            double phase = t % every;
+            return phase >= at && phase < at + hold;
+        }
+    }
+
+    private static class PhaseResult {
+        final String name;
+        final Histogram loopMs = new Histogram(0.05, 200.0);
+        long loops;
+        long totalBytes;
+
+        PhaseResult(String name) {
+            this.name = name;
+        }
+
+        void add(double ms, long bytes) {
+            loopMs.add(ms);
+            totalBytes += bytes;
+            loops++;
+        }
+
+        double meanBytes() {
+            return loops == 0 ? 0 : (double) totalBytes / loops;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        boolean updateBaseline = args.length > 0 && args[0].equals("--update-baseline");
+
+        SimulatedRobot sim = SimulatedRobot.boot();
+        Robot robot = sim.getRobot();
+        sim.step(warmupSeconds);
+
+        List<PhaseResult> results = new ArrayList<>();
+        results.add(runAuto(sim, robot));
+        results.add(runTeleop(sim));
+        sim.disable();
+        sim.step();
+
+        for (PhaseResult result : results) {
+            System.out.printf(Locale.ROOT, "%-7s %5d loops  p50 %.2f ms  p99 %.2f ms  max %.2f ms  %.0f bytes/loop%n",
+                result.name, result.loops, result.loopMs.percentile(0.5), result.loopMs.percentile(0.99),
+                result.loopMs.getMax(), result.meanBytes());
+        }
+
+        if (updateBaseline) {
+            writeBaseline(results);
+            System.out.println("Wrote baseline to " + baselineFile + ", commit it to start checking against it");
+            System.exit(0);
+        }
+        if (!Files.exists(baselineFile)) {
+            System.err.println("No baseline at " + baselineFile + ". Measure one with --args=--update-baseline and commit it.");
+            System.exit(1);
+        }
+        System.exit(compare(results, readBaseline()) ? 0 : 1);
+    }
+
+    private static PhaseResult runAuto(SimulatedRobot sim, Robot robot) {
+        PhaseResult result = new PhaseResult("auto");
+        sim.selectAuto(auto);
+        sim.enable(true);
+        sim.step();   // autonomousInit
+        for (double t = 0; t < autoSeconds && robot.isAutonomousRunning(); t += SimulatedRobot.period) {
+            sim.step();
+            result.add(sim.getLastLoopMs(), sim.getLastLoopBytes());
+        }
+        sim.disable();
+        sim.step();
+        return result;
+    }
+
+    /* Driving around while cycling intake, shooting, aiming and the elevator, roughly like a match */
+    private static PhaseResult runTeleop(SimulatedRobot sim) {
+        PhaseResult result = new PhaseResult("teleop");
+        XboxControllerSim driver = new XboxControllerSim(0);
+        XboxControllerSim operator = new XboxControllerSim(1);
+        List<Press> presses = List.of(
+            new Press(operator, XboxController.Button.kLeftBumper.value, 10.0, 0.0, 0.5),    // intake
+            new Press(operator, XboxController.Button.kRightBumper.value, 10.0, 4.0, 0.5),   // shoot
+            new Press(driver, XboxController.Button.kA.value, 10.0, 2.0, 2.0),              // auto-aim
+            new Press(driver, XboxController.Button.kRightBumper.value, 10.0, 6.0, 2.0),    // shoot while moving
+            new Press(driver, XboxController.Button.kLeftBumper.value, 20.0, 15.0, 3.0),    // vacuum
+            new Press(operator, XboxController.Button.kB.value, 10.0, 8.5, 0.1));           // aim bot
+
+        sim.enable(false);
+        sim.step();   // teleopInit
+        for (double t = 0; t < teleopSeconds; t += SimulatedRobot.period) {
+            driver.setLeftY(0.8 * Math.sin(t * 0.7));
+            driver.setLeftX(0.8 * Math.cos(t * 0.5));
+            driver.setRightX(0.5 * Math.sin(t * 1.3));
+            operator.setRightY(Math.sin(t * 0.2) > 0.9 ? 0.5 : 0);
+            operator.setPOV(t % 20.0 < 0.1 ? 0 : t % 20.0 >= 10.0 && t % 20.0 < 10.1 ? 180 : -1);
+            for (Press press : presses) {
+                press.controller().setRawButton(press.button(), press.isDown(t));
+            }
+            DriverStationSim.notifyNewData();
+
+            sim.step();
+            result.add(sim.getLastLoopMs(), sim.getLastLoopBytes());
+        }
+        return result;
+    }
+
+    private static boolean compare(List<PhaseResult> results, Properties baseline) {
+        boolean passed = true;
+        for (PhaseResult result : results) {
+            passed &= check(baseline, result.name + ".p50Ms", result.loopMs.percentile(0.5), timeRatio, timeSlackMs);
+            passed &= check(baseline, result.name + ".p99Ms", result.loopMs.percentile(0.99), timeRatio, timeSlackMs);
+            passed &= check(baseline, result.name + ".bytesPerLoop", result.meanBytes(), bytesRatio, bytesSlack);
+        }
+        System.out.println(passed ? "Loop performance within baseline" : "LOOP PERFORMANCE REGRESSION");
+        return passed;
+    }
+
+    private static boolean check(Properties baseline, String key, double value, double ratio, double slack) {
+        String stored = baseline.getProperty(key);
+        if (stored == null) {
+            System.out.printf(Locale.ROOT, "  %-20s %.2f  not in baseline  FAIL%n", key, value);
+            return false;
+        }
+        double limit = Double.parseDouble(stored) * ratio + slack;
+        boolean ok = value <= limit;
+        System.out.printf(Locale.ROOT, "  %-20s %.2f  baseline %s  limit %.2f  %s%n", key, value, stored, limit, ok ? "ok" : "FAIL");
+        return ok;
+    }
+
+    private static Properties readBaseline() throws IOException {
+        Properties baseline = new Properties();
+        try (InputStream in = Files.newInputStream(baselineFile)) {
+            baseline.load(in);
+        }
+        return baseline;
+    }
+
+    private static void writeBaseline(List<PhaseResult> results) throws IOException {
+        Properties baseline = new Properties();
+        for (PhaseResult result : results) {
+            baseline.setProperty(result.name + ".p50Ms", String.format(Locale.ROOT, "%.3f", result.loopMs.percentile(0.5)));
+            baseline.setProperty(result.name + ".p99Ms", String.format(Locale.ROOT, "%.3f", result.loopMs.percentile(0.99)));
+            baseline.setProperty(result.name + ".bytesPerLoop", String.format(Locale.ROOT, "%.0f", result.meanBytes()));
+        }
+        try (OutputStream out = Files.newOutputStream(baselineFile)) {
+            baseline.store(out, "Loop performance baseline, regenerate with ./gradlew checkLoopPerformance --args=--update-baseline");
+        }
+    }
+}
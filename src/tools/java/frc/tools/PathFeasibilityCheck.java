@@ -0,0 +1,272 @@
+package frc.tools;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pathplanner.lib.path.PathPlannerPath;
+import com.pathplanner.lib.path.PathPlannerTrajectory;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import frc.robot.Constants;
+
+/**
+ * Checks every PathPlanner path, and every auto's chain of paths, against what the swerve modules
+ * can actually do. Each trajectory is sampled every few milliseconds into primitive arrays, then one
+ * batched kinematics pass works out every module's ground speed and acceleration at every sample.
+ * Samples past Constants.Swerve.maxSpeed or maxAcceleration (which already includes the drive
+ * current limit) are saturated, and runs of them are reported as infeasible segments. That's where
+ * the path follower falls behind and the auto loses time.
+ *
+ * <p>Paths on their own start from rest at their preview pose. In an auto, each path starts with the
+ * speed and rotation the previous one ended with, the same way PathPlanner generates them at runtime.
+ * Trajectories are generated and checked in parallel.
+ *
+ * <p>Exits 1 if anything is infeasible, which fails ./gradlew check (and build). Usage: ./gradlew checkPathFeasibility
+ */
+public class PathFeasibilityCheck {
+    private static final Path pathsDirectory = Path.of("src", "main", "deploy", "pathplanner", "paths");
+    private static final Path autosDirectory = Path.of("src", "main", "deploy", "pathplanner", "autos");
+
+    private static final double sampleDt = 0.005;
+    private static final double tolerance = 1.02;        // 2% over a limit is sampling noise, not a problem
+    private static final double minSegmentTime = 0.02;   // ignore single-sample blips
+
+    /* One trajectory to check: a path on its own, or a path inside an auto */
+    private record Job(String name, PathPlannerPath path, ChassisSpeeds startSpeeds, Rotation2d startRotation) {}
+
+    private record Segment(double start, double end, int module, String limit, double worst) {}
+
+    private static class Result {
+        final String name;
+        double duration;
+        final double[] peakSpeed = new double[4];
+        final double[] peakAcceleration = new double[4];
+        final int[] saturatedSamples = new int[4];
+        int samples;
+        final List<Segment> segments = new ArrayList<>();
+        String error;
+
+        Result(String name) {
+            this.name = name;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        List<Job> jobs = new ArrayList<>();
+        try (Stream<Path> files = Files.list(pathsDirectory)) {
+            for (Path file : files.filter(p -> p.toString().endsWith(".path")).sorted().toList()) {
+                String name = stripExtension(file);
+                PathPlannerPath path = PathPlannerPath.fromPathFile(name);
+                jobs.add(new Job(name, path, new ChassisSpeeds(), path.getPreviewStartingHolonomicPose().getRotation()));
+            }
+        }
+        List<List<String>> autos = new ArrayList<>();
+        List<String> autoNames = new ArrayList<>();
+        try (Stream<Path> files = Files.list(autosDirectory)) {
+            for (Path file : files.filter(p -> p.toString().endsWith(".auto")).sorted().toList()) {
+                autoNames.add(stripExtension(file));
+                autos.add(pathsInAuto(file));
+            }
+        }
+
+        // Standalone paths are independent; chained ones are generated in order, then checked in parallel
+        for (int a = 0; a < autos.size(); a++) {
+            ChassisSpeeds speeds = new ChassisSpeeds();
+            Rotation2d rotation = null;
+            for (String name : autos.get(a)) {
+                PathPlannerPath path = PathPlannerPath.fromPathFile(name);
+                if (rotation == null) {
+                    rotation = path.getPreviewStartingHolonomicPose().getRotation();
+                }
+                jobs.add(new Job(autoNames.get(a) + " / " + name, path, speeds, rotation));
+                PathPlannerTrajectory trajectory = path.getTrajectory(speeds, rotation);
+                PathPlannerTrajectory.State end = trajectory.getEndState();
+                rotation = end.targetHolonomicRotation;
+                speeds = robotRelative(end);
+            }
+        }
+
+        long start = System.nanoTime();
+        List<Result> results = jobs.parallelStream().map(PathFeasibilityCheck::check).toList();
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        boolean failed = false;
+        long totalSamples = 0;
+        for (Result result : results) {
+            System.out.println(format(result));
+            failed |= result.error != null || !result.segments.isEmpty();
+            totalSamples += result.samples;
+        }
+        System.out.printf(Locale.ROOT, "=== %d trajectories, %d samples in %.2f s. Limits: %.2f m/s, %.2f m/s/s per module ===%n",
+            results.size(), totalSamples, elapsed, Constants.Swerve.maxSpeed, Constants.Swerve.maxAcceleration);
+        System.out.println(failed ? "INFEASIBLE PATHS" : "All paths feasible");
+        System.exit(failed ? 1 : 0);
+    }
+
+    static Result check(Job job) {
+        Result result = new Result(job.name());
+        try {
+            PathPlannerTrajectory trajectory = job.path().getTrajectory(job.startSpeeds(), job.startRotation());
+            result.duration = trajectory.getTotalTimeSeconds();
+            int n = (int) Math.ceil(result.duration / sampleDt) + 1;
+            result.samples = n;
+
+            // Field relative chassis motion at each sample
+            double[] vx = new double[n];
+            double[] vy = new double[n];
+            double[] theta = new double[n];
+            for (int k = 0; k < n; k++) {
+                PathPlannerTrajectory.State state = trajectory.sample(Math.min(k * sampleDt, result.duration));
+                vx[k] = state.velocityMps * state.heading.getCos();
+                vy[k] = state.velocityMps * state.heading.getSin();
+                theta[k] = state.targetHolonomicRotation.getRadians();
+            }
+            double[] omega = new double[n];
+            for (int k = 1; k < n; k++) {
+                omega[k] = angleDifference(theta[k], theta[k - 1]) / sampleDt;
+            }
+            omega[0] = n > 1 ? omega[1] : 0;
+
+            double[][] speed = new double[4][n];
+            double[][] acceleration = new double[4][n];
+            moduleKinematics(vx, vy, omega, theta, n, speed, acceleration);
+            findSaturation(result, speed, acceleration, n);
+        } catch (RuntimeException e) {
+            result.error = e.toString();
+        }
+        return result;
+    }
+
+    /**
+     * The kernel: for every module and sample, the module's field relative ground velocity is the
+     * chassis velocity plus omega x (module offset rotated into the field). Speed is its length, and
+     * acceleration is the change between samples, so centripetal effects are included.
+     */
+    static void moduleKinematics(double[] vx, double[] vy, double[] omega, double[] theta, int n,
+            double[][] speed, double[][] acceleration) {
+        Translation2d[] modules = Constants.Swerve.modulePositions;
+        double[] cos = new double[n];
+        double[] sin = new double[n];
+        for (int k = 0; k < n; k++) {
+            cos[k] = Math.cos(theta[k]);
+            sin[k] = Math.sin(theta[k]);
+        }
+        for (int m = 0; m < modules.length; m++) {
+            double rx = modules[m].getX();
+            double ry = modules[m].getY();
+            double[] moduleSpeed = speed[m];
+            double[] moduleAcceleration = acceleration[m];
+            double lastX = 0;
+            double lastY = 0;
+            for (int k = 0; k < n; k++) {
+                double fieldRx = rx * cos[k] - ry * sin[k];
+                double fieldRy = rx * sin[k] + ry * cos[k];
+                double mx = vx[k] - omega[k] * fieldRy;
+                double my = vy[k] + omega[k] * fieldRx;
+                moduleSpeed[k] = Math.hypot(mx, my);
+                moduleAcceleration[k] = k == 0 ? 0 : Math.hypot(mx - lastX, my - lastY) / sampleDt;
+                lastX = mx;
+                lastY = my;
+            }
+        }
+    }
+
+    private static void findSaturation(Result result, double[][] speed, double[][] acceleration, int n) {
+        double speedLimit = Constants.Swerve.maxSpeed * tolerance;
+        double accelerationLimit = Constants.Swerve.maxAcceleration * tolerance;
+        for (int m = 0; m < speed.length; m++) {
+            for (int k = 0; k < n; k++) {
+                result.peakSpeed[m] = Math.max(result.peakSpeed[m], speed[m][k]);
+                result.peakAcceleration[m] = Math.max(result.peakAcceleration[m], acceleration[m][k]);
+            }
+            collectSegments(result, m, "speed", speed[m], speedLimit, n);
+            collectSegments(result, m, "acceleration", acceleration[m], accelerationLimit, n);
+        }
+    }
+
+    /* Turns runs of samples over the limit into segments */
+    private static void collectSegments(Result result, int module, String limit, double[] values, double max, int n) {
+        int start = -1;
+        double worst = 0;
+        for (int k = 0; k <= n; k++) {
+            boolean over = k < n && values[k] > max;
+            if (over) {
+                result.saturatedSamples[module]++;
+                if (start < 0) {
+                    start = k;
+                    worst = 0;
+                }
+                worst = Math.max(worst, values[k]);
+            } else if (start >= 0) {
+                double startTime = start * sampleDt;
+                double endTime = k * sampleDt;
+                if (endTime - startTime >= minSegmentTime) {
+                    result.segments.add(new Segment(startTime, endTime, module, limit, worst));
+                }
+                start = -1;
+            }
+        }
+    }
+
+    private static String format(Result result) {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format(Locale.ROOT, "--- %s (%.2f s) ---%n", result.name, result.duration));
+        if (result.error != null) {
+            out.append("  error: ").append(result.error).append(System.lineSeparator());
+            return out.toString();
+        }
+        for (int m = 0; m < 4; m++) {
+            out.append(String.format(Locale.ROOT, "  Mod %d  peak %.2f m/s  %.2f m/s/s  saturated %.1f%%%n",
+                m, result.peakSpeed[m], result.peakAcceleration[m],
+                100.0 * result.saturatedSamples[m] / Math.max(result.samples, 1)));
+        }
+        for (Segment segment : result.segments) {
+            out.append(String.format(Locale.ROOT, "  INFEASIBLE %.2f-%.2f s  Mod %d %s %.2f%n",
+                segment.start(), segment.end(), segment.module(), segment.limit(), segment.worst()));
+        }
+        return out.toString();
+    }
+
+    /* Paths an auto follows, in order, through any command groups */
+    private static List<String> pathsInAuto(Path file) throws IOException {
+        List<String> paths = new ArrayList<>();
+        collectPaths(new ObjectMapper().readTree(file.toFile()).path("command"), paths);
+        return paths;
+    }
+
+    private static void collectPaths(JsonNode command, List<String> paths) {
+        JsonNode data = command.path("data");
+        if (command.path("type").asText().equals("path")) {
+            paths.add(data.path("pathName").asText());
+        } else {
+            for (JsonNode child : data.path("commands")) {
+                collectPaths(child, paths);
+            }
+        }
+    }
+
+    /* End state as robot relative speeds, what the next path in an auto starts with */
+    private static ChassisSpeeds robotRelative(PathPlannerTrajectory.State state) {
+        double vx = state.velocityMps * state.heading.getCos();
+        double vy = state.velocityMps * state.heading.getSin();
+        return ChassisSpeeds.fromFieldRelativeSpeeds(vx, vy, 0, state.targetHolonomicRotation);
+    }
+
+    private static double angleDifference(double a, double b) {
+        return Math.IEEEremainder(a - b, 2 * Math.PI);
+    }
+
+    private static String stripExtension(Path file) {
+        String name = file.getFileName().toString();
+        return name.substring(0, name.lastIndexOf('.'));
+    }
+}
@@ -0,0 +1,132 @@
+package frc.tools;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CompletableFuture;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.wpilibj.TimedRobot;
+import edu.wpi.first.wpilibj.simulation.DriverStationSim;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+import frc.robot.Robot;
+
+/**
+ * Boots the real Robot headless with the HAL clock paused, for the offline tools. Each step()
+ * releases one 20 ms loop, so simulated time only moves as fast as the robot code does. The robot's
+ * loopFunc is wrapped to measure each loop's wall time and allocations on the robot thread itself.
+ * Sensor inputs come from the plant models Robot.simulationPeriodic steps (see Constants.Simulation),
+ * so readiness checks like the flywheels reaching speed or the lightbreak seeing a note behave as on
+ * the robot, within the accuracy of those models.
+ *
+ * <p>HAL and the CommandScheduler are process-wide, so there can only be one of these per JVM.
+ */
+public class SimulatedRobot {
+    public static final double period = TimedRobot.kDefaultPeriod;
+
+    private static final com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    /* Written by the robot thread at the end of each loop */
+    private static volatile long lastLoopNanos;
+    private static volatile long lastLoopBytes;
+    private static volatile long completedLoops;
+
+    private static class MeasuredRobot extends Robot {
+        @Override
+        protected void loopFunc() {
+            long bytes = threads.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            super.loopFunc();
+            lastLoopNanos = System.nanoTime() - start;
+            lastLoopBytes = threads.getCurrentThreadAllocatedBytes() - bytes;
+            completedLoops++;
+        }
+    }
+
+    private final Robot robot;
+
+    private SimulatedRobot(Robot robot) {
+        this.robot = robot;
+    }
+
+    /** Starts the HAL and the robot disabled, and returns once robotInit has finished */
+    public static SimulatedRobot boot() throws Exception {
+        if (!HAL.initialize(500, 0)) {
+            throw new IllegalStateException("Failed to initialize the HAL");
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+        SimHooks.pauseTiming();
+        DriverStationSim.setDsAttached(true);
+        DriverStationSim.setEnabled(false);
+        DriverStationSim.notifyNewData();
+
+        // Same as RobotBase.startRobot: the robot is built and run on one thread
+        CompletableFuture<Robot> booted = new CompletableFuture<>();
+        Thread robotThread = new Thread(() -> {
+            try {
+                Robot robot = new MeasuredRobot();
+                booted.complete(robot);
+                robot.startCompetition();
+            } catch (Throwable t) {
+                t.printStackTrace();
+                System.exit(1);
+            }
+        }, "Robot");
+        robotThread.setDaemon(true);
+        robotThread.start();
+        Robot robot = booted.get();
+        SimHooks.waitForProgramStart();
+        return new SimulatedRobot(robot);
+    }
+
+    public Robot getRobot() {
+        return robot;
+    }
+
+    /**
+     * Releases the next loop. stepTiming first waits for the loop released last time to finish, so
+     * after this returns getLastLoopMs/Bytes describe that loop.
+     */
+    public void step() {
+        SimHooks.stepTiming(period);
+    }
+
+    public void step(double seconds) {
+        for (double t = 0; t < seconds; t += period) {
+            step();
+        }
+    }
+
+    /** Wall time of the last completed loop in milliseconds */
+    public double getLastLoopMs() {
+        return lastLoopNanos / 1e6;
+    }
+
+    /** Bytes the robot thread allocated in the last completed loop. Sensor workers and NetworkTables aren't counted. */
+    public long getLastLoopBytes() {
+        return lastLoopBytes;
+    }
+
+    public long getCompletedLoops() {
+        return completedLoops;
+    }
+
+    /** Picks an auto the same way the dashboard does, then gives SmartDashboard a couple of loops to apply it */
+    public void selectAuto(String name) {
+        NetworkTableInstance.getDefault().getTable("SmartDashboard").getSubTable("Auto Mode")
+            .getEntry("selected").setString(name);
+        step();
+        step();
+    }
+
+    public void enable(boolean autonomous) {
+        DriverStationSim.setAutonomous(autonomous);
+        DriverStationSim.setEnabled(true);
+        DriverStationSim.notifyNewData();
+    }
+
+    public void disable() {
+        DriverStationSim.setEnabled(false);
+        DriverStationSim.notifyNewData();
+    }
+}